@@ -13,7 +13,6 @@ import androidx.appcompat.app.AppCompatActivity;
 import com.android.volley.RequestQueue;
 import com.android.volley.VolleyError;
 import com.android.volley.toolbox.JsonObjectRequest;
-import com.android.volley.toolbox.Volley;
 
 import org.json.JSONException;
 import org.json.JSONObject;
@@ -24,6 +23,7 @@ import fr.gr3.strovo.activities.Accueil;
 import fr.gr3.strovo.activities.Inscription;
 import fr.gr3.strovo.utils.PasswordHasher;
 import fr.gr3.strovo.api.StrovoApi;
+import fr.gr3.strovo.database.ParcoursDatabase;
 import fr.gr3.strovo.utils.Keys;
 
 /**
@@ -64,7 +64,7 @@ public class MainActivity extends AppCompatActivity {
         email = findViewById(R.id.email);
         motDePasse = findViewById(R.id.mot_de_passe);
 
-        requestQueue = Volley.newRequestQueue(this);
+        requestQueue = StrovoApi.getInstance().getRequestQueue(this);
     }
 
 
@@ -102,7 +102,7 @@ public class MainActivity extends AppCompatActivity {
      */
     private void login(String email, String password) {
         JsonObjectRequest request = StrovoApi.getInstance().login(email, password,
-                this::onLoginSuccess, this::onLoginError);
+                response -> onLoginSuccess(email, response), this::onLoginError);
 
         // Ajoute la requête de suppression à la file d'attente des requêtes HTTP
         requestQueue.add(request);
@@ -110,18 +110,35 @@ public class MainActivity extends AppCompatActivity {
 
     /**
      * Exécuté lorsque l'identification de l'utilisateur est réussie.
+     * @param email adresse mail de l'utilisateur connecté
      */
-    private void onLoginSuccess(JSONObject response) {
+    private void onLoginSuccess(String email, JSONObject response) {
         try {
             String token = response.getString("value");
+            if (!email.equals(preferences.getString(Keys.ACCOUNT_KEY, null))) {
+                clearLocalParcours();
+            }
             // Enregistre le token dans les préférences
-            preferences.edit().putString(Keys.TOKEN_KEY, token).apply();
+            preferences.edit()
+                    .putString(Keys.TOKEN_KEY, token)
+                    .putString(Keys.ACCOUNT_KEY, email)
+                    .apply();
             switchToAccueil(token);
         } catch (JSONException e) {
             throw new RuntimeException(e);
         }
     }
 
+    /**
+     * Supprime les parcours d'un autre utilisateur enregistrés sur le téléphone.
+     * La base est vidée avant toute lecture de l'accueil, ses accès passant par le même thread.
+     */
+    private void clearLocalParcours() {
+        StrovoApi.getInstance().clearParcoursCache();
+        ParcoursDatabase database = ParcoursDatabase.getInstance(this);
+        ParcoursDatabase.execute(database::clear);
+    }
+
     /**
      * Exécuté lorsque l'identification de l'utilisateur est en echec.
      */
@@ -4,59 +4,60 @@ import android.Manifest;
 import android.app.Activity;
 import android.app.DatePickerDialog;
 import android.app.Dialog;
-import android.content.Context;
 import android.content.Intent;
 import android.content.pm.PackageManager;
-import android.net.ConnectivityManager;
-import android.net.NetworkInfo;
 import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
 import android.text.InputType;
 import android.util.Log;
 import android.view.View;
 import android.widget.Button;
 import android.widget.DatePicker;
 import android.widget.EditText;
-import android.widget.ListView;
 import android.widget.TextView;
 import android.widget.Toast;
 
 import androidx.activity.result.ActivityResult;
 import androidx.activity.result.ActivityResultLauncher;
 import androidx.activity.result.contract.ActivityResultContracts;
+import androidx.annotation.NonNull;
 import androidx.appcompat.app.AppCompatActivity;
 import androidx.appcompat.widget.SearchView;
+import androidx.recyclerview.widget.DividerItemDecoration;
+import androidx.recyclerview.widget.LinearLayoutManager;
+import androidx.recyclerview.widget.RecyclerView;
 
-import com.android.volley.Request;
 import com.android.volley.RequestQueue;
 import com.android.volley.VolleyError;
-import com.android.volley.toolbox.JsonArrayRequest;
 import com.android.volley.toolbox.JsonObjectRequest;
 import com.android.volley.toolbox.StringRequest;
-import com.android.volley.toolbox.Volley;
 
-import org.json.JSONArray;
-import org.json.JSONException;
-import org.json.JSONObject;
 
-import java.io.BufferedReader;
-import java.io.FileInputStream;
-import java.io.FileNotFoundException;
+import java.io.File;
 import java.io.IOException;
-import java.io.InputStreamReader;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Calendar;
-import java.util.Date;
-import java.util.HashMap;
+import java.util.Collections;
 import java.util.List;
-import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 
 import fr.gr3.strovo.utils.parcours.ParcoursAdapter;
+import fr.gr3.strovo.utils.parcours.ParcoursCollection;
+import fr.gr3.strovo.utils.parcours.ParcoursQuery;
 import fr.gr3.strovo.R;
+import fr.gr3.strovo.api.ParcoursListRequest;
 import fr.gr3.strovo.api.StrovoApi;
+import fr.gr3.strovo.api.outbox.ParcoursOutbox;
+import fr.gr3.strovo.database.ParcoursDatabase;
 import fr.gr3.strovo.api.model.Parcours;
+import fr.gr3.strovo.api.model.ParcoursList;
 import fr.gr3.strovo.utils.Keys;
+import fr.gr3.strovo.utils.parcours.RecordingJournal;
 
 /**
  * Classe représentant l'activité principale de l'application, correspondant à l'écran d'accueil.
@@ -65,14 +66,26 @@ import fr.gr3.strovo.utils.Keys;
  */
 public class Accueil extends AppCompatActivity {
 
+    /** Marge retranchée à la date de dernière synchronisation, en millisecondes */
+    private static final long SYNC_MARGIN = 60000;
+
+    /** Nombre de parcours restant à afficher avant de charger la page suivante */
+    private static final int PAGE_PREFETCH = 5;
+
+    /** Délai entre la dernière frappe et la recherche, en millisecondes */
+    private static final long SEARCH_DELAY = 150;
+
+    /** Thread des recherches par nom */
+    private static final Executor SEARCH_EXECUTOR = Executors.newSingleThreadExecutor();
+
     /** Composant graphique de la recherche */
     private SearchView rechercheNom;
 
-    /** Copie de parcoursList */
+    /** Parcours chargés, avant la recherche et les filtres */
     private List<Parcours> parcoursListOrigine;
 
     /** Composant graphique de la liste des parcours */
-    private ListView listViewParcours;
+    private RecyclerView listViewParcours;
 
     /** Composant graphique du choix de la date dans le filtre */
     private DatePickerDialog picker;
@@ -80,9 +93,6 @@ public class Accueil extends AppCompatActivity {
     /** Composant graphique du TextView quand aucun parcours est retourné. */
     private TextView emptyParcoursText;
 
-    /** Liste des parcours de l'utilisateur */
-    private List<Parcours> parcoursList;
-
     /** Adaptateur pour la liste des parcours */
     private ParcoursAdapter adapter;
 
@@ -95,6 +105,27 @@ public class Accueil extends AppCompatActivity {
     /** Token de connexion de l'utilisateur */
     private String token;
 
+    /** Parcours chargés depuis l'API */
+    private final ParcoursCollection parcoursCollection = new ParcoursCollection();
+
+    /** Indique si une page de parcours est en cours de chargement */
+    private boolean loadingPage;
+
+    /** Base de données locale des parcours */
+    private ParcoursDatabase database;
+
+    /** Handler du thread principal, diffère la recherche pendant la saisie */
+    private final Handler handler = new Handler(Looper.getMainLooper());
+
+    /** Recherche différée */
+    private final Runnable searchTask = this::searchParcours;
+
+    /** Numéro de la dernière recherche, les résultats des recherches précédentes sont ignorés */
+    private int searchGeneration;
+
+    /** Filtres choisis dans la fenêtre des filtres, sans le nom recherché */
+    private ParcoursQuery filter = new ParcoursQuery();
+
 
     /**
      * Méthode appelée lors de la création de l'activité.
@@ -113,6 +144,10 @@ public class Accueil extends AppCompatActivity {
         initializeViews();
         setupEventListeners();
 
+        // Affiche les parcours enregistrés localement en attendant la réponse de l'API
+        database = ParcoursDatabase.getInstance(this);
+        loadParcoursFromDatabase();
+
         courseActivityLauncher= registerForActivityResult(
                 new ActivityResultContracts.StartActivityForResult(),
                 this::couseActivityDone);
@@ -124,79 +159,149 @@ public class Accueil extends AppCompatActivity {
     protected void onResume() {
         super.onResume();
 
-        if (isNetworkAvailable()) {
-            loadParcoursFromFile();
-            sendParcoursToApi();
+        // Reprend un parcours interrompu par l'arrêt de l'application
+        recoverJournal();
 
-        }
+        // Reprend l'envoi des parcours enregistrés sans connexion
+        startOutbox();
         // Appelle la méthode pour récupérer les données de l'API
-        getParcoursFromApi();
+        if (parcoursCollection.getLastSync() == 0) {
+            getParcoursPageFromApi(0);
+        } else {
+            getParcoursChangesFromApi();
+        }
     }
 
 
     /**
-     * Récupère les données des parcours depuis l'API en utilisant la bibliothèque Volley.
+     * Récupère une page de parcours depuis l'API en utilisant la bibliothèque Volley.
+     * La première page en cache est affichée immédiatement puis remplacée si elle a changé.
+     * @param page numéro de la page
      */
-    private void getParcoursFromApi() {
-        JsonArrayRequest request = StrovoApi.getInstance().getParcours(token,
-                this::onGetParcoursSuccess, this::onGetParcoursError);
+    private void getParcoursPageFromApi(int page) {
+        loadingPage = true;
+        long requestTime = System.currentTimeMillis();
+        ParcoursListRequest request = StrovoApi.getInstance().getParcoursPage(token, page,
+                response -> onGetParcoursPageSuccess(page, requestTime, response),
+                this::onGetParcoursError);
+        // Etiquette la requête pour l'annuler à la destruction de l'activité
+        request.setTag(this);
 
         // Ajoute la requête à la file d'attente
-        requestQueue.add(request);
+        StrovoApi.getInstance().add(this, request);
     }
 
     /**
-     * Exécuté lorsque la récupération des parcours est réussie.
+     * Charge la page suivante des parcours, lorsque la fin de la liste approche.
      */
-    private void onGetParcoursSuccess(JSONArray response) {
-        parseJsonResponse(response);
+    private void loadNextPage() {
+        if (!loadingPage && parcoursCollection.getLastSync() != 0 && !parcoursCollection.isComplete()) {
+            getParcoursPageFromApi(parcoursCollection.getNextPage());
+        }
+    }
 
-        // Vérifie si la liste des parcours est vide
-        if (parcoursList.isEmpty()) {
-            emptyParcoursText.setVisibility(View.VISIBLE);
+    /**
+     * Récupère depuis l'API les parcours modifiés depuis la dernière synchronisation.
+     */
+    private void getParcoursChangesFromApi() {
+        long requestTime = System.currentTimeMillis();
+        // La marge couvre un décalage entre l'horloge du téléphone et celle de l'API
+        long since = parcoursCollection.getLastSync() - SYNC_MARGIN;
+        ParcoursListRequest request = StrovoApi.getInstance().getParcoursSince(token, since,
+                response -> onGetParcoursChangesSuccess(requestTime, response),
+                this::onGetParcoursError);
+        request.setTag(this);
+
+        StrovoApi.getInstance().add(this, request);
+    }
+
+    /**
+     * Charge les parcours de la base de données locale.
+     */
+    private void loadParcoursFromDatabase() {
+        ParcoursDatabase.execute(() -> {
+            List<Parcours> localParcours = database.getSummaries();
+            runOnUiThread(() -> {
+                // Une réponse de l'API déjà reçue est plus récente que la base
+                if (!isDestroyed() && parcoursCollection.getNextPage() == 0) {
+                    parcoursCollection.applyChanges(localParcours, Collections.emptyList());
+                    showParcours();
+                }
+            });
+        });
+    }
+
+    /**
+     * Exécuté lorsque la récupération d'une page de parcours est réussie.
+     */
+    private void onGetParcoursPageSuccess(int page, long requestTime, ParcoursList response) {
+        loadingPage = false;
+        List<Parcours> items = response.getParcours();
+        List<String> removedIds = parcoursCollection.mergePage(page, items);
+        ParcoursDatabase.execute(() -> {
+            database.delete(removedIds);
+            database.saveSummaries(items);
+        });
+        if (page == 0) {
+            parcoursCollection.setLastSync(requestTime);
         }
+        showParcours();
     }
 
     /**
-     * Exécuté lorsque la récupération des parcours est réussie.
+     * Exécuté lorsque la récupération des parcours modifiés est réussie.
+     */
+    private void onGetParcoursChangesSuccess(long requestTime, ParcoursList response) {
+        List<Parcours> changed = response.getParcours();
+        List<String> deletedIds = response.getDeletedIds();
+        parcoursCollection.applyChanges(changed, deletedIds);
+        parcoursCollection.setLastSync(requestTime);
+        ParcoursDatabase.execute(() -> {
+            database.delete(deletedIds);
+            database.saveSummaries(changed);
+        });
+        showParcours();
+    }
+
+    /**
+     * Exécuté lorsque la récupération des parcours a échoué.
      */
     private void onGetParcoursError(VolleyError error) {
+        loadingPage = false;
+        // La première page a pu être délivrée depuis le cache sans être revalidée
+        if (parcoursCollection.getNextPage() <= 1) {
+            parcoursCollection.setLastSync(0);
+        }
         // Si token de connexion invalide
         if (error.networkResponse != null && error.networkResponse.statusCode == 403) {
             finish(); // Renvoie vers la page de connexion
-        } else {
-            adapter.clear();
+        } else if (adapter.getItemCount() == 0) {
+            // Sinon la liste en cache reste affichée
             emptyParcoursText.setVisibility(View.VISIBLE);
         }
     }
 
     /**
-     * Analyse la réponse JSON de l'API et peuple la liste des parcours.
-     * @param response Un objet de type JSONArray
+     * Affiche les parcours chargés, en conservant la recherche et le filtre en cours.
      */
-    private void parseJsonResponse(JSONArray response) {
-        parcoursList.clear();
-
-
-        for (int i = 0; i < response.length(); i++) {
-            try {
-                JSONObject parcoursJson = response.getJSONObject(i);
-                Parcours parcours = new Parcours(
-                        parcoursJson.getString("id"),
-                        parcoursJson.getString("name"),
-                        parcoursJson.getString("description"),
-                        new Date(String.valueOf(new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSS").parse(parcoursJson.getString("date"))))
-                );
-                adapter.add(parcours);
-            } catch (JSONException e) {
-                e.printStackTrace();
-            } catch (ParseException e) {
-                throw new RuntimeException(e);
-            }
+    private void showParcours() {
+        parcoursListOrigine = new ArrayList<>(parcoursCollection.getParcours());
+        if (rechercheNom.getQuery().length() > 0 || !filter.hasNoRange()) {
+            // Applique de nouveau la recherche à la liste complétée
+            searchParcours();
+        } else {
+            showList(parcoursListOrigine);
         }
+    }
 
-        parcoursListOrigine = new ArrayList<>(parcoursList);
-        adapter.notifyDataSetChanged();
+    /**
+     * Remplace la liste affichée. Les différences avec la liste affichée sont calculées
+     * en arrière-plan, puis seuls les éléments modifiés sont mis à jour à l'écran.
+     * @param parcoursToShow parcours à afficher, non modifiés ensuite
+     */
+    private void showList(List<Parcours> parcoursToShow) {
+        adapter.submitList(parcoursToShow, () -> emptyParcoursText.setVisibility(
+                adapter.getItemCount() == 0 ? View.VISIBLE : View.INVISIBLE));
     }
 
     /**
@@ -205,7 +310,17 @@ public class Accueil extends AppCompatActivity {
      */
     public void deleteParcoursFromApi(Parcours parcours) {
         StringRequest request = StrovoApi.getInstance().deleteParcours(token, parcours.getId(),
-                response -> adapter.remove(parcours),
+                response -> {
+                    ParcoursDatabase.execute(() ->
+                            database.delete(Collections.singletonList(parcours.getId())));
+                    parcoursCollection.remove(parcours.getId());
+                    // La liste d'origine a pu être affichée, elle est remplacée et non modifiée
+                    parcoursListOrigine = new ArrayList<>(parcoursCollection.getParcours());
+                    // Conserve la recherche ou le filtre en cours
+                    List<Parcours> parcoursToShow = new ArrayList<>(adapter.getCurrentList());
+                    parcoursToShow.remove(parcours);
+                    showList(parcoursToShow);
+                },
                 error -> Log.e("DELETE Error", error.toString()));
 
         // Ajoute la requête de suppression à la file d'attente des requêtes HTTP
@@ -245,14 +360,28 @@ public class Accueil extends AppCompatActivity {
         emptyParcoursText.setVisibility(View.INVISIBLE);
 
         // Initialisation de la liste des parcours
-        parcoursList = new ArrayList<>();
+        parcoursListOrigine = new ArrayList<>();
 
         // Création d'un adaptateur personnalisé pour la liste des parcours
-        adapter = new ParcoursAdapter(this, R.layout.vue_item_liste, parcoursList);
+        adapter = new ParcoursAdapter(R.layout.vue_item_liste, new ParcoursAdapter.OnParcoursClickListener() {
+            @Override
+            public void onClick(Parcours parcours) {
+                switchToSynthese(token, parcours.getId());
+            }
+
+            @Override
+            public void onLongClick(Parcours parcours) {
+                showModifParcoursPopup(parcours);
+            }
+        });
+        LinearLayoutManager layoutManager = new LinearLayoutManager(this);
+        listViewParcours.setLayoutManager(layoutManager);
+        listViewParcours.addItemDecoration(
+                new DividerItemDecoration(this, layoutManager.getOrientation()));
         listViewParcours.setAdapter(adapter);
 
-        // Initialise la file d'attente des requêtes HTTP avec Volley
-        requestQueue = Volley.newRequestQueue(this);
+        // Récupère la file d'attente des requêtes HTTP partagée par l'application
+        requestQueue = StrovoApi.getInstance().getRequestQueue(this);
     }
 
     /**
@@ -261,17 +390,33 @@ public class Accueil extends AppCompatActivity {
     private void setupEventListeners() {
         // Configuration de l'écouteur de la barre de recherche
         searchBarListener();
-        // Configuration de l'écouteur du clic sur un élément de la liste
-        itemListListener();
+        // Chargement des pages suivantes au défilement de la liste
+        scrollListener();
     }
 
     @Override
     protected void onDestroy() {
         super.onDestroy();
-        if (requestQueue != null) {
-            // Annuler toutes les requêtes en cours associées à cette activité
-            requestQueue.cancelAll(this);
-        }
+        handler.removeCallbacks(searchTask);
+        // Annuler toutes les requêtes en cours associées à cette activité
+        StrovoApi.getInstance().cancelAll(this);
+    }
+
+    /**
+     * Configure l'écouteur du défilement de la liste, qui charge la page suivante des parcours
+     * lorsque la fin de la liste approche.
+     */
+    private void scrollListener() {
+        listViewParcours.addOnScrollListener(new RecyclerView.OnScrollListener() {
+            @Override
+            public void onScrolled(@NonNull RecyclerView recyclerView, int dx, int dy) {
+                // Aussi appelé après chaque mise à jour de la liste affichée
+                LinearLayoutManager layoutManager = (LinearLayoutManager) recyclerView.getLayoutManager();
+                if (layoutManager.findLastVisibleItemPosition() >= adapter.getItemCount() - PAGE_PREFETCH) {
+                    loadNextPage();
+                }
+            }
+        });
     }
 
     /**
@@ -287,29 +432,37 @@ public class Accueil extends AppCompatActivity {
 
             @Override
             public boolean onQueryTextChange(String newText) {
-                // Filtrer la liste des parcours en fonction du texte saisi
-                List<Parcours> filteredList = new ArrayList<>();
-                if (newText.isEmpty()) {
+                // La recherche est lancée une fois la saisie interrompue
+                handler.removeCallbacks(searchTask);
+                if (newText.isEmpty() && filter.hasNoRange()) {
                     // Si la chaîne de recherche est vide, afficher la liste complète des parcours
-                    filteredList.addAll(parcoursListOrigine);
+                    searchGeneration++;
+                    showList(parcoursListOrigine);
                 } else {
-                    for (Parcours parcours : parcoursListOrigine) { // Utiliser parcoursListOrigine ici
-                        if (parcours.getName().toLowerCase().contains(newText.toLowerCase())) {
-                            filteredList.add(parcours);
-                        }
-                    }
+                    handler.postDelayed(searchTask, SEARCH_DELAY);
                 }
-                // Mettre à jour l'adaptateur avec la liste filtrée
-                adapter.clear();
-                adapter.addAll(filteredList);
-                adapter.notifyDataSetChanged();
-
-
                 return true;
             }
         });
     }
 
+    /**
+     * Recherche les parcours par nom et selon les filtres hors du thread principal, puis affiche
+     * le résultat s'il n'a pas été dépassé par une saisie plus récente.
+     */
+    private void searchParcours() {
+        ParcoursQuery query = filter.withName(rechercheNom.getQuery().toString());
+        int generation = ++searchGeneration;
+        SEARCH_EXECUTOR.execute(() -> {
+            List<Parcours> result = parcoursCollection.query(query);
+            runOnUiThread(() -> {
+                if (!isDestroyed() && generation == searchGeneration) {
+                    showList(result);
+                }
+            });
+        });
+    }
+
     /**
      * Méthode exécutée lorsque l'utilisateur clique sur le bouton des filtres.
      */
@@ -325,6 +478,14 @@ public class Accueil extends AppCompatActivity {
         // Récupère les éléments de la fenêtre contextuelle
         EditText inputDateMin = dialog.findViewById(R.id.inputDureeMin);
         EditText inputDateMax = dialog.findViewById(R.id.inputDureeMax);
+        EditText inputDistanceMin = dialog.findViewById(R.id.inputDistanceMin);
+        EditText inputDistanceMax = dialog.findViewById(R.id.inputDistanceMax);
+        EditText inputTempsMin = dialog.findViewById(R.id.inputTempsMin);
+        EditText inputTempsMax = dialog.findViewById(R.id.inputTempsMax);
+        EditText inputVitesseMin = dialog.findViewById(R.id.inputVitesseMin);
+        EditText inputVitesseMax = dialog.findViewById(R.id.inputVitesseMax);
+        EditText inputDeniveleMin = dialog.findViewById(R.id.inputDeniveleMin);
+        EditText inputDeniveleMax = dialog.findViewById(R.id.inputDeniveleMax);
 
         // Gestion du clic sur les champs de date pour afficher le calendrier
         inputDateMin.setInputType(InputType.TYPE_NULL);
@@ -351,46 +512,42 @@ public class Accueil extends AppCompatActivity {
             @Override
             public void onClick(View v) {
                 SimpleDateFormat simpleDateFormat = new SimpleDateFormat("dd/MM/yyyy");
-                Date dateMin = null, dateMax = null;
 
                 try {
+                    // Les dates sont lues une seule fois, le filtre est ensuite résolu par l'index
+                    long from = Long.MIN_VALUE;
+                    long to = Long.MAX_VALUE;
                     if (!inputDateMin.getText().toString().isEmpty()) {
-                        dateMin = simpleDateFormat.parse(inputDateMin.getText().toString());
+                        from = simpleDateFormat.parse(inputDateMin.getText().toString()).getTime();
                     }
                     if (!inputDateMax.getText().toString().isEmpty()) {
-                        dateMax = simpleDateFormat.parse(inputDateMax.getText().toString());
+                        // Inclut les parcours enregistrés pendant la journée de la date maximale
+                        to = simpleDateFormat.parse(inputDateMax.getText().toString()).getTime()
+                                + TimeUnit.DAYS.toMillis(1) - 1;
                     }
-
-                    // Si aucune date n'est sélectionnée, réinitialiser la liste à tous les parcours
-                    if (dateMin == null && dateMax == null) {
-                        parcoursList.clear();
-                        parcoursList.addAll(parcoursListOrigine);
-                        adapter.notifyDataSetChanged();
+                    // La fenêtre ne construit que la requête, exécutée par le moteur de requêtes
+                    filter = new ParcoursQuery()
+                            .withDate(from, to)
+                            .withRange(ParcoursQuery.Field.DISTANCE,
+                                    readBound(inputDistanceMin, 1000, Double.NEGATIVE_INFINITY),
+                                    readBound(inputDistanceMax, 1000, Double.POSITIVE_INFINITY))
+                            .withRange(ParcoursQuery.Field.DURATION,
+                                    readBound(inputTempsMin, 60000, Double.NEGATIVE_INFINITY),
+                                    readBound(inputTempsMax, 60000, Double.POSITIVE_INFINITY))
+                            .withRange(ParcoursQuery.Field.SPEED,
+                                    readBound(inputVitesseMin, 1, Double.NEGATIVE_INFINITY),
+                                    readBound(inputVitesseMax, 1, Double.POSITIVE_INFINITY))
+                            .withRange(ParcoursQuery.Field.ELEVATION,
+                                    readBound(inputDeniveleMin, 1, Double.NEGATIVE_INFINITY),
+                                    readBound(inputDeniveleMax, 1, Double.POSITIVE_INFINITY));
+
+                    // Sans filtre ni recherche, affiche tous les parcours
+                    handler.removeCallbacks(searchTask);
+                    if (filter.hasNoRange() && rechercheNom.getQuery().length() == 0) {
+                        searchGeneration++;
+                        showList(parcoursListOrigine);
                     } else {
-                        // Définir dateMax à aujourd'hui si seulement dateMin est sélectionné
-                        if (dateMin != null && dateMax == null) {
-                            dateMax = new Date();
-                        }
-
-                        // Filtrer les parcours par les dates fournies
-                        List<Parcours> parcoursToShow = new ArrayList<>();
-                        for (Parcours parcours : parcoursListOrigine) {
-                            Date date = parcours.getDate();
-                            if (dateMin != null && date.getTime() >= dateMin.getTime() &&
-                                    dateMax != null && date.getTime() <= dateMax.getTime()) {
-                                parcoursToShow.add(parcours);
-                            }
-                        }
-
-                        if(parcoursToShow.size() < 1) {
-                            emptyParcoursText.setVisibility(View.VISIBLE);
-                        } else {
-                            emptyParcoursText.setVisibility(View.INVISIBLE);
-                        }
-
-                        parcoursList.clear();
-                        adapter.addAll(parcoursToShow);
-                        adapter.notifyDataSetChanged();
+                        searchParcours();
                     }
                 } catch (ParseException e) {
                     e.printStackTrace();
@@ -414,62 +571,70 @@ public class Accueil extends AppCompatActivity {
     }
 
     /**
-     * Configure l'écouteur du clic sur un élément de la liste.
+     * Lit une borne saisie dans la fenêtre des filtres.
+     * @param input champ de saisie
+     * @param unit nombre d'unités du parcours dans l'unité saisie (1000 pour des km en m)
+     * @param defaultValue valeur si le champ est vide ou invalide
+     * @return la borne dans l'unité du parcours
      */
-    private void itemListListener() {
-        listViewParcours.setOnItemLongClickListener((parent, view, position, id) -> {
-            /* Lorsque l'utilisateur maintient un élément de la liste enfoncé, ouvre une boîte
-             * de dialogue pour supprimer le parcours
-             */
-            final Dialog dialog = new Dialog(Accueil.this);
-            Parcours parcours = parcoursList.get(position);
-            // Définis le contenu de la fenêtre contextuelle
-            dialog.setContentView(R.layout.popup_modif_parcours);
-
-            // Récupère les éléments de la fenêtre contextuelle
-            EditText newDescriptionInput = dialog.findViewById(R.id.nouvelleDescription);
-            Button deleteButton = dialog.findViewById(R.id.btnSupprimer);
-            Button cancelButton = dialog.findViewById(R.id.btnAnnuler);
-            Button editButton = dialog.findViewById(R.id.btnModifier);
-
-            newDescriptionInput.setText(parcours.getDescription());
-
-            // Gestion du clic sur le bouton "Supprimer"
-            deleteButton.setOnClickListener(v -> {
-                /* Lorsque l'utilisateur clique sur "Supprimer",
-                 * supprime le parcours de l'API et de la liste
-                 */
-                deleteParcoursFromApi(parcours);
-                dialog.dismiss();
-            });
+    private static double readBound(EditText input, double unit, double defaultValue) {
+        String text = input.getText().toString().trim().replace(',', '.');
+        if (text.isEmpty()) {
+            return defaultValue;
+        }
+        try {
+            return Double.parseDouble(text) * unit;
+        } catch (NumberFormatException e) {
+            return defaultValue;
+        }
+    }
 
-            // Lorsque l'utilisateur clique sur "Annuler", ferme la boîte de dialogue
-            cancelButton.setOnClickListener(v -> dialog.dismiss());
+    /**
+     * Affiche la boîte de dialogue de modification ou de suppression d'un parcours,
+     * lorsque l'utilisateur maintient un élément de la liste enfoncé.
+     * @param parcours parcours maintenu
+     */
+    private void showModifParcoursPopup(Parcours parcours) {
+        final Dialog dialog = new Dialog(Accueil.this);
+        // Définis le contenu de la fenêtre contextuelle
+        dialog.setContentView(R.layout.popup_modif_parcours);
 
-            editButton.setOnClickListener(v -> {
-                /* Lorsque l'utilisateur clique sur "Modifier la description",
-                 * modifie la description du parcours
-                 */
-                String newDescriptionValue = newDescriptionInput.getText().toString();
+        // Récupère les éléments de la fenêtre contextuelle
+        EditText newDescriptionInput = dialog.findViewById(R.id.nouvelleDescription);
+        Button deleteButton = dialog.findViewById(R.id.btnSupprimer);
+        Button cancelButton = dialog.findViewById(R.id.btnAnnuler);
+        Button editButton = dialog.findViewById(R.id.btnModifier);
 
-                // Si la description est différente de l'ancienne
-                if(!newDescriptionValue.equals(parcours.getDescription())) {
-                    parcours.setDescription(newDescriptionValue);
-                    updateParcoursFromApi(parcours);
-                }
-                dialog.dismiss();
-            });
+        newDescriptionInput.setText(parcours.getDescription());
 
-            // Affiche la fenêtre contextuelle
-            dialog.show();
-            return true;
+        // Gestion du clic sur le bouton "Supprimer"
+        deleteButton.setOnClickListener(v -> {
+            /* Lorsque l'utilisateur clique sur "Supprimer",
+             * supprime le parcours de l'API et de la liste
+             */
+            deleteParcoursFromApi(parcours);
+            dialog.dismiss();
         });
 
-        listViewParcours.setOnItemClickListener((parent, view, position, id) -> {
-            /* Lorsque l'utilisateur clique sur un élément de la liste */
-            Parcours parcours = parcoursList.get(position);
-            switchToSynthese(token, parcours.getId());
+        // Lorsque l'utilisateur clique sur "Annuler", ferme la boîte de dialogue
+        cancelButton.setOnClickListener(v -> dialog.dismiss());
+
+        editButton.setOnClickListener(v -> {
+            /* Lorsque l'utilisateur clique sur "Modifier la description",
+             * modifie la description du parcours
+             */
+            String newDescriptionValue = newDescriptionInput.getText().toString();
+
+            // Si la description est différente de l'ancienne
+            if(!newDescriptionValue.equals(parcours.getDescription())) {
+                parcours.setDescription(newDescriptionValue);
+                updateParcoursFromApi(parcours);
+            }
+            dialog.dismiss();
         });
+
+        // Affiche la fenêtre contextuelle
+        dialog.show();
     }
 
     /**
@@ -478,7 +643,11 @@ public class Accueil extends AppCompatActivity {
      */
     private void updateParcoursFromApi(Parcours parcours) {
         JsonObjectRequest request = StrovoApi.getInstance().updateParcours(token, parcours,
-                response -> showError("Description modifiée"),
+                response -> {
+                    ParcoursDatabase.execute(() ->
+                            database.updateDescription(parcours.getId(), parcours.getDescription()));
+                    showError("Description modifiée");
+                },
                 error -> Log.e("UPDATE Error", error.toString())
         );
 
@@ -591,73 +760,56 @@ public class Accueil extends AppCompatActivity {
         startActivity(intention);
     }
 
-    private List<JSONObject> parcoursList2 = new ArrayList<>();
-
-    private void loadParcoursFromFile() {
-
+    /**
+     * Démarre la file d'envoi des parcours enregistrés sans connexion.
+     */
+    private void startOutbox() {
         try {
-            FileInputStream fis = openFileInput("parcoursTemp");
-            BufferedReader reader = new BufferedReader(new InputStreamReader(fis));
-
-            String ligne;
-            while ((ligne = reader.readLine()) != null) {
-                try {
-                    JSONObject jsonParcours = new JSONObject(ligne);
-                    parcoursList2.add(jsonParcours);
-                } catch (JSONException e) {
-                    Log.e("Accueil", "Erreur lors de la conversion de la ligne en JSONObject", e);
-                }
-            }
-            reader.close();
-
-        } catch (FileNotFoundException e) {
-            Log.d("Accueil", "Aucun parcours à envoyer.");
+            ParcoursOutbox.getInstance(this).start();
         } catch (IOException e) {
-            Log.e("Accueil", "Erreur lors de la lecture du fichier des parcours", e);
+            Log.e("Accueil", "Impossible d'ouvrir la file d'envoi des parcours", e);
         }
     }
 
-    private void sendParcoursToApi() {
-        List<JSONObject> parcoursToRemove = parcoursList2;
-
-        for (JSONObject jsonParcours : parcoursToRemove) {
-            JsonObjectRequest request = new JsonObjectRequest(Request.Method.POST, StrovoApi.ADD_PARCOURS, jsonParcours,
-                    response -> {
-                        parcoursList2.remove(jsonParcours);
-                    }, error -> {
-                        Log.e("Accueil", "Erreur lors de l'envoi du parcours à l'API", error);
-                    }) {
-                @Override
-                public Map<String, String> getHeaders() {
-                    return createAuthorizationHeader(token);
+    /**
+     * Reprend le parcours du journal d'enregistrement laissé par un arrêt brutal de l'application.
+     * Le parcours reconstruit rejoint la file d'envoi des parcours avec le compte enregistré dans
+     * le journal : le parcours d'un autre utilisateur attend la prochaine connexion de celui-ci.
+     * La lecture du journal et l'écriture dans la file se font hors du thread principal.
+     */
+    private void recoverJournal() {
+        File file = new File(getFilesDir(), RecordingJournal.FILE_NAME);
+        ParcoursDatabase.execute(() -> {
+            if (!file.exists()) {
+                return;
+            }
+            RecordingJournal.Recovery recovery;
+            try {
+                recovery = RecordingJournal.recover(file);
+                if (recovery == null) {
+                    // Enregistrement toujours en cours
+                    return;
                 }
-            };
-
-            requestQueue.add(request);
-        }
-        parcoursList2.clear();
-        deleteFile("parcoursTemp");
-        Log.d("Accueil", "Tous les parcours ont été envoyés, fichier supprimé.");
-
-    }
-
-
-
-
-
-    public Map<String, String> createAuthorizationHeader(String token) {
-        Map<String, String> headers = new HashMap<>();
-        headers.put("Authorization", token);
-        return headers;
-    }
-
-    private boolean isNetworkAvailable() {
-        ConnectivityManager connectivityManager = (ConnectivityManager) getSystemService(Context.CONNECTIVITY_SERVICE);
-        NetworkInfo activeNetworkInfo = connectivityManager.getActiveNetworkInfo();
-        return activeNetworkInfo != null && activeNetworkInfo.isConnected();
+            } catch (IOException e) {
+                Log.e("Accueil", "Impossible de reprendre le journal d'enregistrement", e);
+                file.delete();
+                return;
+            }
+            Parcours parcours = recovery.getParcours();
+            if (!parcours.getTrack().isEmpty()) {
+                try {
+                    ParcoursOutbox.getInstance(this).enqueue(parcours, recovery.getAccount());
+                    Log.d("Accueil", "Parcours interrompu repris depuis le journal.");
+                } catch (IOException e) {
+                    // Le journal est conservé pour une prochaine reprise
+                    Log.e("Accueil", "Impossible d'ajouter le parcours repris à la file d'envoi", e);
+                    return;
+                }
+            }
+            file.delete();
+        });
     }
 
-
     /** Crée un toast pour afficher l'erreur. */
     private void showError(String message) {
         Toast.makeText(this, message, Toast.LENGTH_LONG).show();
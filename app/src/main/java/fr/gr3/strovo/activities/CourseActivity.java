@@ -3,30 +3,30 @@ package fr.gr3.strovo.activities;
 import android.Manifest;
 import android.app.Activity;
 import android.app.Dialog;
+import android.content.ComponentName;
 import android.content.Context;
 import android.content.Intent;
+import android.content.ServiceConnection;
 import android.content.pm.PackageManager;
 import android.graphics.Color;
 import android.location.Location;
-import android.location.LocationListener;
-import android.location.LocationManager;
-import android.location.LocationProvider;
 import android.os.Bundle;
 import android.os.Handler;
+import android.os.IBinder;
 import android.preference.PreferenceManager;
 import android.util.Log;
 import android.view.MotionEvent;
 import android.view.View;
 import android.widget.Button;
 import android.widget.EditText;
+import android.widget.TextView;
 import android.widget.Toast;
 
 import androidx.annotation.Nullable;
 import androidx.appcompat.app.AppCompatActivity;
+import androidx.core.content.ContextCompat;
 
 import com.android.volley.RequestQueue;
-import com.android.volley.toolbox.JsonObjectRequest;
-import com.android.volley.toolbox.Volley;
 
 import org.json.JSONException;
 import org.json.JSONObject;
@@ -40,22 +40,22 @@ import org.osmdroid.views.overlay.compass.CompassOverlay;
 import org.osmdroid.views.overlay.mylocation.GpsMyLocationProvider;
 import org.osmdroid.views.overlay.mylocation.MyLocationNewOverlay;
 
-import java.io.FileNotFoundException;
-import java.io.FileOutputStream;
 import java.io.IOException;
-import java.util.Date;
+import java.util.List;
+import java.util.Locale;
 
 import fr.gr3.strovo.R;
+import fr.gr3.strovo.api.ParcoursUploadRequest;
 import fr.gr3.strovo.api.StrovoApi;
 import fr.gr3.strovo.api.model.InterestPoint;
+import fr.gr3.strovo.api.outbox.ParcoursOutbox;
 import fr.gr3.strovo.api.model.Parcours;
-import fr.gr3.strovo.utils.parcours.ParcoursManager;
+import fr.gr3.strovo.services.RecordingService;
+import fr.gr3.strovo.utils.parcours.ParcoursStatistics;
+import fr.gr3.strovo.utils.parcours.RecordingJournal;
 import fr.gr3.strovo.utils.Keys;
 
-public class CourseActivity extends AppCompatActivity {
-
-    /** Fournisseur de localisation de l'utilisateur. */
-    private static final String LOCATION_PROVIDER = LocationManager.GPS_PROVIDER;
+public class CourseActivity extends AppCompatActivity implements RecordingService.RecordingListener {
 
     /** Carte à afficher à l'écran. */
     private MapView map;
@@ -63,14 +63,14 @@ public class CourseActivity extends AppCompatActivity {
     /** Bouton d'arrêt d'enregistrement */
     private Button stopButton;
 
-    /** Gestionnaire du parcours de l'utilisateur. */
-    private ParcoursManager parcoursManager;
+    /** Champ de texte affichant les statistiques du parcours en cours */
+    private TextView statisticsText;
 
-    /** Ecouteur de localisation de l'utilisateur. */
-    private LocationListener locationListener;
+    /** Service d'enregistrement du parcours, null tant que l'activité n'y est pas liée. */
+    private RecordingService recordingService;
 
-    /** Gestionnaire de la localisation de l'utilisateur. */
-    private LocationManager locationManager;
+    /** Parcours enregistré, disponible une fois l'enregistrement arrêté. */
+    private Parcours parcours;
 
     /** Element graphique: Tracé du parcours */
     private Polyline polyline;
@@ -99,6 +99,25 @@ public class CourseActivity extends AppCompatActivity {
     /** Token de connexion de l'utilisateur */
     private String token;
 
+    /** Connexion au service d'enregistrement */
+    private final ServiceConnection serviceConnection = new ServiceConnection() {
+        @Override
+        public void onServiceConnected(ComponentName name, IBinder service) {
+            recordingService = ((RecordingService.RecordingBinder) service).getService();
+            recordingService.setListener(CourseActivity.this);
+
+            // Redessine le tracé déjà enregistré si l'activité a été recréée
+            polyline.setPoints(recordingService.getRecordedPoints());
+            showStatistics(recordingService.getStatistics());
+            map.invalidate();
+        }
+
+        @Override
+        public void onServiceDisconnected(ComponentName name) {
+            recordingService = null;
+        }
+    };
+
     /**
      * Méthode appelée lors de la création de l'activité.
      * Initialise les composants graphiques, configure les écouteurs d'événements
@@ -118,14 +137,11 @@ public class CourseActivity extends AppCompatActivity {
         String parcoursName = intent.getStringExtra(Keys.PARCOURS_NAME_KEY);
         String parcoursDescription = intent.getStringExtra(Keys.PARCOURS_DESCRIPTION_KEY);
 
-        requestQueue = Volley.newRequestQueue(this);
+        requestQueue = StrovoApi.getInstance().getRequestQueue(this);
         map = initMap();
 
         stopButton = findViewById(R.id.btnArreter);
-
-        parcoursManager = new ParcoursManager(parcoursName, parcoursDescription, new Date());
-        locationListener = initLocationListener();
-        locationManager = initLocationManager();
+        statisticsText = findViewById(R.id.statistiquesCourse);
 
         // Initialisation des éléments graphiques
         polyline = initPolyline();
@@ -140,10 +156,24 @@ public class CourseActivity extends AppCompatActivity {
         map.getOverlays().add(compassOverlay);
         map.getOverlays().add(myLocationNewOverlay);
 
-        parcoursManager.start();
+        startRecordingService(parcoursName, parcoursDescription);
         stopParcoursListener();
     }
 
+    /**
+     * Démarre le service d'enregistrement du parcours et s'y lie.
+     * Si un enregistrement est déjà en cours, le service conserve le parcours existant.
+     * @param parcoursName nom du parcours
+     * @param parcoursDescription description du parcours
+     */
+    private void startRecordingService(String parcoursName, String parcoursDescription) {
+        Intent serviceIntent = new Intent(this, RecordingService.class);
+        serviceIntent.putExtra(Keys.PARCOURS_NAME_KEY, parcoursName);
+        serviceIntent.putExtra(Keys.PARCOURS_DESCRIPTION_KEY, parcoursDescription);
+        ContextCompat.startForegroundService(this, serviceIntent);
+        bindService(serviceIntent, serviceConnection, Context.BIND_AUTO_CREATE);
+    }
+
     /**
      * Initialise la carte qui sera affichée à l'écran.
      * @return la carte initilisée
@@ -198,96 +228,70 @@ public class CourseActivity extends AppCompatActivity {
      * Méthode exécutée lorsque l'utilisateur clique sur le bouton d'arrêt du parcours.
      */
     public void clicStopParcours(View view) {
-        parcoursManager.stop();
-        Parcours parcours = parcoursManager.getParcours();
-        locationListener = null;
-        locationManager = null;
-        if(parcours.getCoordinates().size() == 0){
+        if (recordingService == null) {
+            return;
+        }
+        recordingService.setListener(null);
+        recordingService.stopRecording(this::onRecordingStopped);
+        unbindService(serviceConnection);
+        recordingService = null;
+    }
+
+    /**
+     * Exécuté lorsque le service a terminé l'enregistrement du parcours.
+     * @param parcours parcours enregistré
+     */
+    private void onRecordingStopped(Parcours parcours) {
+        this.parcours = parcours;
+        if(parcours.getTrack().isEmpty()){
+            deleteJournal();
             switchToAccueil(null);
             showError("Erreur géolocalisation : Le parcours n'a pas été enregistré");
         } else {
-            try {
-                addParcoursToApi();
-            } catch (JSONException ignore) {
-
-            }
+            addParcoursToApi();
         }
     }
 
-    /** Initialise l'écouteur de localisation de l'utilisateur.
-     * @return la l'écouteur initilisé
+    /**
+     * Exécuté lorsque le service d'enregistrement a reçu un lot de positions.
+     * Le tracé, les statistiques et le centre de la carte sont mis à jour une seule fois par lot.
+     * @param locations positions reçues
      */
-    private LocationListener initLocationListener() {
-        // Initialisation du gestionnaire de localisation et du listener
-
-        locationManager = (LocationManager) getSystemService(Context.LOCATION_SERVICE);
-        locationListener = new LocationListener() {
-            // Méthode exécutée lors de la détection d'un changement de position de l'utilisateur
-            @Override
-            public void onLocationChanged(Location location) {
-                GeoPoint point = new GeoPoint(location.getLatitude(), location.getLongitude());
-                // Si course lancée
-                if (parcoursManager.isRunning()) {
-                    // Met à jour le parcours
-                    parcoursManager.addLocation(location);
-                    polyline.addPoint(point);
-                    Log.d("LOGG APPLI", "Ajout dun nouveau point");
-                }
-                // Centre la map sur la position de l'utilisateur
-                map.getController().setCenter(point);
-            }
-
-            @Override
-            public void onProviderDisabled(String provider) {
-                // Mise en pause du parcours lorsque la localisation est désactivée
-                if (parcoursManager.isRunning()) {
-                    parcoursManager.pause();
-                    Toast.makeText(getApplicationContext(), "Localisation désactivée. Le parcours est mis en pause.", Toast.LENGTH_SHORT).show();
-                }
-            }
-
-            @Override
-            public void onProviderEnabled(String provider) {
-                // Reprendre le parcours lorsque la localisation est réactivée
-                if (parcoursManager.isPaused()) {
-                    parcoursManager.resume();
-                    Toast.makeText(getApplicationContext(), "Localisation réactivée. Le parcours reprend.", Toast.LENGTH_SHORT).show();
-                }
-            }
-
-            @Override
-            public void onStatusChanged(String fournisseur, int status, Bundle extras) {
-                switch (status) {
-                    case LocationProvider.AVAILABLE:
-                        Toast.makeText(getApplicationContext(), fournisseur + " état disponible", Toast.LENGTH_SHORT).show();
-                        break;
-                    case LocationProvider.OUT_OF_SERVICE:
-                        Toast.makeText(getApplicationContext(), fournisseur + " état indisponible", Toast.LENGTH_SHORT).show();
-                        break;
-                    case LocationProvider.TEMPORARILY_UNAVAILABLE:
-                        Toast.makeText(getApplicationContext(), fournisseur + " état temporairement indisponible", Toast.LENGTH_SHORT).show();
-                        break;
-                    default:
-                        Toast.makeText(getApplicationContext(), fournisseur + " état : " + status, Toast.LENGTH_SHORT).show();
-                }
+    @Override
+    public void onLocationsRecorded(List<Location> locations) {
+        // Si course lancée
+        if (recordingService != null && recordingService.isRecording()) {
+            // Met à jour le tracé
+            for (Location location : locations) {
+                polyline.addPoint(new GeoPoint(location.getLatitude(), location.getLongitude()));
             }
-        };
-        return locationListener;
-
+            showStatistics(recordingService.getStatistics());
+        }
+        // Centre la map sur la dernière position de l'utilisateur
+        Location last = locations.get(locations.size() - 1);
+        map.getController().setCenter(new GeoPoint(last.getLatitude(), last.getLongitude()));
+    }
 
+    /**
+     * Exécuté lorsque la localisation est activée ou désactivée pendant l'enregistrement.
+     * @param enabled true si la localisation est activée, false sinon
+     */
+    @Override
+    public void onProviderStateChanged(boolean enabled) {
+        Toast.makeText(getApplicationContext(),
+                enabled ? R.string.localisationReactivee : R.string.localisationDesactivee,
+                Toast.LENGTH_SHORT).show();
     }
 
-    /** Initialise le gestionnaire de localisation de l'utilisateur.
-     * @return le gestionnaire initilisé
+    /**
+     * Affiche les statistiques du parcours en cours d'enregistrement.
+     * @param statistics statistiques à afficher
      */
-    private LocationManager initLocationManager() {
-        LocationManager locationManager = (LocationManager) getApplicationContext().getSystemService(Context.LOCATION_SERVICE);
-        // Vérification des permissions
-        if (checkSelfPermission(Manifest.permission.ACCESS_FINE_LOCATION) == PackageManager.PERMISSION_GRANTED) {
-            // Défini une mise à jour automatique du gestionnaire de localisation
-            locationManager.requestLocationUpdates(LOCATION_PROVIDER, 3000, 2, locationListener);
-        }
-        return locationManager;
+    private void showStatistics(ParcoursStatistics statistics) {
+        statisticsText.setText(String.format(getString(R.string.statistiquesCourse),
+                String.format(Locale.getDefault(), "%.2f", statistics.getDistance() / 1000),
+                String.format(Locale.getDefault(), "%.1f", statistics.getCurrentSpeed() * 3.6),
+                String.valueOf((int) statistics.getElevationGain())));
     }
 
     /** Initialise le tracé du parcours.
@@ -301,32 +305,39 @@ public class CourseActivity extends AppCompatActivity {
     }
 
     /**
-     * Met en pause le parcours sur la carte.
+     * Met en pause l'affichage de la carte.
+     * L'enregistrement se poursuit dans le service.
      */
     @Override
     protected void onPause() {
         super.onPause();
         map.onPause();
-
-        // Met le parcours en pause lorsque l'activité est mise en pause
-        if (parcoursManager.isRunning()) {
-            parcoursManager.pause();
-        }
     }
 
     /**
-     * Reprend le parcours et l'affiche sur la carte.
-     *
+     * Reprend l'affichage de la carte.
      */
     @Override
     protected void onResume() {
         super.onResume();
         map.onResume();
+    }
 
-        // Reprend le parcours lorsque l'activité reprend
-        if (parcoursManager.isPaused()) {
-            parcoursManager.resume();
+    /**
+     * Se désabonne du service d'enregistrement, qui continue de fonctionner sans l'activité
+     * lorsqu'elle est seulement recréée. Si l'utilisateur quitte l'écran, l'enregistrement est abandonné.
+     */
+    @Override
+    protected void onDestroy() {
+        if (recordingService != null) {
+            if (isFinishing()) {
+                recordingService.stopRecording(null);
+            }
+            recordingService.setListener(null);
+            unbindService(serviceConnection);
+            recordingService = null;
         }
+        super.onDestroy();
     }
 
     /**
@@ -335,7 +346,7 @@ public class CourseActivity extends AppCompatActivity {
      */
     private void addInterestPoint(InterestPoint interestPoint) {
         // Ajoute le point d'intérêt au parcours
-        parcoursManager.addInterestPoint(interestPoint);
+        recordingService.addInterestPoint(interestPoint);
 
         // Affiche le point d'intérêt sur la carte
         Marker marker = new Marker(map);
@@ -376,9 +387,13 @@ public class CourseActivity extends AppCompatActivity {
                 return;
             }
 
+            if (recordingService == null || recordingService.getLastLocation() == null) {
+                return;
+            }
+
             if (!inputLibelle.getText().toString().isEmpty()) {
                 // Ajoute un point d'intérêt sur la position actuelle de l'utilisateur
-                Location currentLocation = locationManager.getLastKnownLocation(LocationManager.GPS_PROVIDER);
+                Location currentLocation = recordingService.getLastLocation();
                 GeoPoint point = new GeoPoint(currentLocation.getLatitude(), currentLocation.getLongitude());
                 InterestPoint interestPoint = new InterestPoint(point,
                         inputLibelle.getText().toString(), inputDescription.getText().toString());
@@ -398,12 +413,12 @@ public class CourseActivity extends AppCompatActivity {
 
     /**
      * Envoie une requête POST à l'API pour ajouter un nouveau parcours.
+     * En cas d'échec, le parcours rejoint la file d'envoi avec la même clé d'idempotence :
+     * un parcours reçu par l'API malgré l'échec n'est pas créé une seconde fois.
      */
 
-    public void addParcoursToApi() throws JSONException {
-        FileOutputStream fichier = null;
-        Parcours parcours = parcoursManager.getParcours();
-        JsonObjectRequest request = StrovoApi.getInstance().addParcours(token, parcoursManager.getParcours(),
+    public void addParcoursToApi() {
+        ParcoursUploadRequest request = StrovoApi.getInstance().addParcours(token, parcours,
                 this::onAddParcoursSuccess,
                 error -> saveInFile()
         );
@@ -418,6 +433,7 @@ public class CourseActivity extends AppCompatActivity {
         try {
             // On récupère l'objet Parcours de la réponse
             String parcoursId = response.getString("id");
+            deleteJournal();
             switchToAccueil(parcoursId);
         } catch (JSONException e) {
             e.printStackTrace();
@@ -441,32 +457,30 @@ public class CourseActivity extends AppCompatActivity {
         Toast.makeText(this, message, Toast.LENGTH_LONG).show();
     }
 
+    /**
+     * Ajoute le parcours à la file d'envoi, qui l'enverra à l'API au retour de la connexion.
+     */
     private void saveInFile(){
         try {
-            // Récupère le parcours actuel.
-            Parcours parcours = parcoursManager.getParcours();
             Log.d("CourseActivity", "Sauvegarde du parcours en cours...");
-
-            // Convertit le parcours en JSON.
-            JSONObject jsonParcours = parcours.toJson();
-
-            // Ouvre le fichier en mode append.
-            FileOutputStream fichier = openFileOutput("parcoursTemp", Context.MODE_APPEND);
-
-            // Écrit le JSON dans le fichier.
-            String jsonText = jsonParcours.toString() + "\n"; // Ajoute un saut de ligne pour séparer les entrées.
-            fichier.write(jsonText.getBytes());
-
-            // Ferme le fichier.
-            fichier.close();
+            String account = PreferenceManager.getDefaultSharedPreferences(this)
+                    .getString(Keys.ACCOUNT_KEY, null);
+            ParcoursOutbox.getInstance(this).enqueue(parcours, account);
+            deleteJournal();
 
             // Log pour confirmer la sauvegarde.
             Log.d("CourseActivity", "Parcours sauvegardé avec succès.");
             switchToAccueil(parcours.getId());
-        } catch (FileNotFoundException e) {
-            Log.e("CourseActivity", "Fichier non trouvé pour la sauvegarde", e);
-        } catch (IOException | JSONException e) {
+        } catch (IOException e) {
+            // Le journal est conservé, le parcours sera repris au retour à l'accueil
             Log.e("CourseActivity", "Erreur lors de la sauvegarde du parcours", e);
         }
     }
+
+    /**
+     * Supprime le journal d'enregistrement, une fois le parcours reçu par l'API ou mis en file.
+     */
+    private void deleteJournal() {
+        deleteFile(RecordingJournal.FILE_NAME);
+    }
 }
\ No newline at end of file
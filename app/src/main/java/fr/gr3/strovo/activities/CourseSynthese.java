@@ -3,6 +3,7 @@ package fr.gr3.strovo.activities;
 import android.content.Intent;
 import android.graphics.Color;
 import android.os.Bundle;
+import android.util.Log;
 import android.view.View;
 import android.widget.Button;
 import android.widget.TextView;
@@ -10,33 +11,28 @@ import android.widget.Toast;
 
 import androidx.appcompat.app.AppCompatActivity;
 
-import com.android.volley.RequestQueue;
-import com.android.volley.toolbox.JsonObjectRequest;
-import com.android.volley.toolbox.Volley;
 
-import org.json.JSONArray;
-import org.json.JSONException;
-import org.json.JSONObject;
 import org.osmdroid.util.GeoPoint;
 import org.osmdroid.views.MapView;
 import org.osmdroid.views.overlay.Marker;
-import org.osmdroid.views.overlay.Polyline;
 
 import org.osmdroid.views.overlay.ScaleBarOverlay;
 import org.osmdroid.views.overlay.compass.CompassOverlay;
 
-import java.text.ParseException;
+import java.io.IOException;
 import java.text.SimpleDateFormat;
-import java.util.ArrayList;
-import java.util.Date;
-import java.util.List;
 import java.util.Locale;
 
 import fr.gr3.strovo.R;
+import fr.gr3.strovo.api.ParcoursByIdRequest;
 import fr.gr3.strovo.api.StrovoApi;
 import fr.gr3.strovo.api.model.Parcours;
 import fr.gr3.strovo.api.model.InterestPoint;
+import fr.gr3.strovo.database.ParcoursDatabase;
 import fr.gr3.strovo.utils.Keys;
+import fr.gr3.strovo.utils.parcours.Track;
+import fr.gr3.strovo.utils.parcours.TrackFile;
+import fr.gr3.strovo.utils.parcours.TrackOverlay;
 
 /**
  * Activité pour afficher un résumé d'un parcours.
@@ -51,7 +47,7 @@ public class CourseSynthese extends AppCompatActivity {
     /**
      * Élément graphique représentant le tracé du parcours sur la carte.
      */
-    private Polyline polyline;
+    private TrackOverlay trackOverlay;
 
     /** Element graphique: barre d'échelle */
     private ScaleBarOverlay scaleBarOverlay;
@@ -104,14 +100,12 @@ public class CourseSynthese extends AppCompatActivity {
      */
     private TextView parcoursSpeed;
 
-    /**
-     * File d'attente pour effectuer les requêtes HTTP.
-     */
-    private RequestQueue requestQueue;
-
     /** Token de connexion de l'utilisateur */
     private String token;
 
+    /** Tag de log */
+    private static final String TAG = "CourseSynthese";
+
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
@@ -125,12 +119,12 @@ public class CourseSynthese extends AppCompatActivity {
         parcoursId = intent.getStringExtra(Keys.PARCOURS_ID_KEY);
 
         // Initialisation des éléments graphiques
-        polyline = initPolyline();
+        trackOverlay = new TrackOverlay(Color.RED, 5);
         scaleBarOverlay = new ScaleBarOverlay(map);
         compassOverlay = new CompassOverlay(getApplicationContext(), map);
         compassOverlay.enableCompass();
 
-        map.getOverlays().add(polyline);
+        map.getOverlays().add(trackOverlay);
         map.getOverlays().add(scaleBarOverlay);
         map.getOverlays().add(compassOverlay);
 
@@ -143,7 +137,7 @@ public class CourseSynthese extends AppCompatActivity {
             }
         });
 
-        getParcoursByIdFromApi(parcoursId);
+        loadParcours(parcoursId);
     }
 
     /**
@@ -188,9 +182,6 @@ public class CourseSynthese extends AppCompatActivity {
         parcoursElevation = findViewById(R.id.elevationTextView);
         parcoursTime = findViewById(R.id.timeTextView);
         parcoursSpeed = findViewById(R.id.speedTextView);
-
-        // Initialise la file d'attente des requêtes HTTP avec Volley
-        requestQueue = Volley.newRequestQueue(this);
     }
 
     /**
@@ -205,14 +196,43 @@ public class CourseSynthese extends AppCompatActivity {
         return map;
     }
 
-    /** Initialise le tracé du parcours.
-     * @return le tracé
+    /**
+     * Charge le parcours depuis la mémoire, puis la base de données locale, puis l'API
+     * s'il n'y a pas encore été enregistré.
+     * @param parcoursId l'identifiant du parcours à charger
      */
-    private Polyline initPolyline() {
-        Polyline polyline = new Polyline();
-        polyline.getOutlinePaint().setColor(Color.RED);
-        polyline.getOutlinePaint().setStrokeWidth(5);
-        return polyline;
+    private void loadParcours(String parcoursId) {
+        // Parcours déjà consulté depuis le lancement de l'application
+        Parcours cached = StrovoApi.getInstance().getCachedParcours(parcoursId);
+        if (cached != null) {
+            chargerParcours(cached, cached.getTrack());
+            return;
+        }
+
+        ParcoursDatabase database = ParcoursDatabase.getInstance(this);
+        ParcoursDatabase.execute(() -> {
+            Parcours parcours = database.getParcours(parcoursId);
+            TrackFile track = null;
+            if (parcours != null) {
+                try {
+                    // Seul l'en-tête est lu, les positions le sont au dessin de la carte
+                    track = database.openTrack(parcoursId);
+                } catch (IOException e) {
+                    Log.w(TAG, "Tracé local illisible : " + parcoursId, e);
+                }
+            }
+            TrackFile localTrack = track;
+            runOnUiThread(() -> {
+                if (isDestroyed()) {
+                    return;
+                }
+                if (localTrack != null) {
+                    chargerParcours(parcours, localTrack);
+                } else {
+                    getParcoursByIdFromApi(parcoursId);
+                }
+            });
+        });
     }
 
     /**
@@ -221,83 +241,51 @@ public class CourseSynthese extends AppCompatActivity {
      * @param parcoursId l'identifiant du parcours à récupérer
      */
     private void getParcoursByIdFromApi(String parcoursId) {
-        JsonObjectRequest request = StrovoApi.getInstance().getParcoursById(token, parcoursId,
+        ParcoursByIdRequest request = StrovoApi.getInstance().getParcoursById(token, parcoursId,
                 this::onGetParcoursByIdSuccess,
                 error -> showError(getString(R.string.errRecupInfosParcours))
         );
+        // Etiquette la requête pour l'annuler à la destruction de l'activité
+        request.setTag(this);
 
         // Ajouter la demande à la file d'attente de Volley pour l'exécuter
-        requestQueue.add(request);
+        StrovoApi.getInstance().add(this, request);
     }
 
     /**
      * Exécuté lorsque la récupération du parcours est réussie.
+     * @param parcours parcours décodé sur le thread réseau
      */
-    private void onGetParcoursByIdSuccess(JSONObject response) {
-        try {
-            // Créé un nouvel objet Parcours avec les données extraites
-            Parcours parcours = fetchParcours(response);
-
-            // Charge les éléments graphiques de la synthèse
-            chargerParcours(parcours);
-        } catch (JSONException e) {
-            e.printStackTrace();
-        } catch (ParseException e) {
-            throw new RuntimeException(e);
-        }
-    }
-
-    /**
-     * Récupère les données du parcours renvoyé par l'API.
-     * @param response les données du parcours retourné par l'API
-     * @return l'objet parcours.
-     */
-    private Parcours fetchParcours(JSONObject response) throws JSONException, ParseException {
-        SimpleDateFormat formatter = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSS");
-        // Récupère les différentes propriétés de l'objet JSON
-        String name = response.isNull("name") ? null : response.getString("name");
-        String description = response.isNull("description") ? null : response.getString("description");
-        Date date = response.isNull("date") ? null : formatter.parse(response.getString("date"));
-        long time = response.isNull("time") ? 0 : response.getLong("time");
-        float averageSpeed = response.isNull("speed") ? 0 : (float) response.getDouble("speed");
-        float distance = response.isNull("distance") ? 0 : (float) response.getDouble("distance");
-        double elevation = response.isNull("elevation") ? 0 : response.getDouble("elevation");
-
-        // Conversion des points d'intérêt (si présents)
-        List<InterestPoint> interestPoints = new ArrayList<>();
-        JSONArray interestPointsJson = response.isNull("interestPoints") ? null : response.getJSONArray("interestPoints");
-        if (interestPointsJson != null) {
-            for (int i = 0; i < interestPointsJson.length(); i++) {
-                JSONObject interestPointJson = interestPointsJson.getJSONObject(i);
-                interestPoints.add(InterestPoint.fromJson(interestPointJson));
-            }
+    private void onGetParcoursByIdSuccess(Parcours parcours) {
+        // Enregistre le parcours pour les prochains affichages
+        if (parcours.getId() == null) {
+            parcours.setId(parcoursId);
         }
-
-        List<double[]> coordinates = new ArrayList<>();
-        JSONArray coordinatesJson = response.isNull("coordinates") ? null : response.getJSONArray("coordinates");
-        if (coordinatesJson != null) {
-            for (int i = 0; i < coordinatesJson.length(); i++) {
-                JSONArray coordinate = coordinatesJson.getJSONArray(i);
-                coordinates.add(new double[] {coordinate.getDouble(0), coordinate.getDouble(1)});
+        ParcoursDatabase database = ParcoursDatabase.getInstance(this);
+        ParcoursDatabase.execute(() -> {
+            try {
+                database.saveParcours(parcours);
+            } catch (IOException e) {
+                Log.e(TAG, "Impossible d'enregistrer le parcours", e);
             }
-        }
+        });
 
-        return new Parcours(name, description, date, time, averageSpeed, distance, elevation, interestPoints, coordinates);
+        // Charge les éléments graphiques de la synthèse
+        chargerParcours(parcours, parcours.getTrack());
     }
 
     /**
      * Affiche les informations associées au parcours sur l'interface graphique.
      * @param parcours le parcours à afficher
+     * @param track le tracé du parcours
      */
-    private void chargerParcours(Parcours parcours) {
-        List<double[]> coordinates = parcours.getCoordinates();
+    private void chargerParcours(Parcours parcours, Track track) {
         // Affiche le parcours sur la map
-        for (double[] coordinate: coordinates) {
-            GeoPoint point = new GeoPoint(coordinate[0], coordinate[1]);
-            polyline.addPoint(point);
-        }
+        trackOverlay.setTrack(track);
         map.invalidate();
-        map.getController().setCenter(new GeoPoint(coordinates.get(0)[0], coordinates.get(0)[1]));
+        if (!track.isEmpty()) {
+            map.getController().setCenter(new GeoPoint(track.getLatitude(0), track.getLongitude(0)));
+        }
 
         // Affiche les points d'intérêts
         for (InterestPoint interestPoint : parcours.getInterestPoints()) {
@@ -355,6 +343,13 @@ public class CourseSynthese extends AppCompatActivity {
         map.onPause();
     }
 
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        // Annule la récupération du parcours si elle est encore en cours
+        StrovoApi.getInstance().cancelAll(this);
+    }
+
     /** Crée un toast pour afficher l'erreur. */
     private void showError(String message) {
         Toast.makeText(this, message, Toast.LENGTH_LONG).show();
@@ -10,7 +10,6 @@ import androidx.appcompat.app.AppCompatActivity;
 import com.android.volley.RequestQueue;
 import com.android.volley.VolleyError;
 import com.android.volley.toolbox.JsonObjectRequest;
-import com.android.volley.toolbox.Volley;
 
 import org.json.JSONException;
 import org.json.JSONObject;
@@ -57,7 +56,7 @@ public class Inscription extends AppCompatActivity {
         firstname = findViewById(R.id.prenom);
         lastname = findViewById(R.id.nom);
 
-        requestQueue = Volley.newRequestQueue(this);
+        requestQueue = StrovoApi.getInstance().getRequestQueue(this);
     }
 
     /** Crée un toast pour afficher l'erreur. */
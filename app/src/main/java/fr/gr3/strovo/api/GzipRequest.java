@@ -0,0 +1,278 @@
+package fr.gr3.strovo.api;
+
+import com.android.volley.AuthFailureError;
+import com.android.volley.Cache;
+import com.android.volley.NetworkResponse;
+import com.android.volley.ParseError;
+import com.android.volley.Request;
+import com.android.volley.Response;
+import com.android.volley.VolleyError;
+import com.android.volley.VolleyLog;
+import com.android.volley.toolbox.HttpHeaderParser;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Requête authentifiée vers l'API avec compression gzip.
+ * Les réponses compressées sont acceptées et décompressées avant d'être analysées.
+ * Si {@link StrovoApi#COMPRESS_REQUESTS} est activé, les corps de requête dépassant
+ * {@link #COMPRESSION_THRESHOLD} octets sont aussi compressés.
+ * Les sous-classes fournissent le corps et l'analyse de la réponse.
+ * Des requêtes identiques peuvent suivre une requête en cours : elles ne sont pas envoyées
+ * et reçoivent sa réponse (voir {@link StrovoApi#add}).
+ * @param <T> type de la réponse analysée
+ */
+public abstract class GzipRequest<T> extends Request<T> {
+
+    /** Taille à partir de laquelle le corps de la requête est compressé, en octets */
+    public static final int COMPRESSION_THRESHOLD = 1024;
+
+    /** Verrou protégeant les écouteurs, qui peuvent être annulés depuis un autre thread */
+    private final Object lock = new Object();
+
+    /** Jeton de connexion de l'utilisateur, null si la requête n'est pas authentifiée */
+    private final String token;
+
+    /** Ecouteur exécuté en cas de succès */
+    private Response.Listener<T> listener;
+
+    /** Requêtes identiques recevant la réponse de cette requête */
+    private final List<GzipRequest<T>> followers = new ArrayList<>();
+
+    /** Indique si les écouteurs de la requête ont été retirés, sa réponse restant attendue par ses suiveuses */
+    private boolean detached;
+
+    /** Indique si le corps a été préparé */
+    private boolean bodyPrepared;
+
+    /** Corps de la requête, éventuellement compressé */
+    private byte[] body;
+
+    /** Indique si le corps est compressé */
+    private boolean bodyCompressed;
+
+    /**
+     * Construit une requête.
+     * @param method méthode HTTP
+     * @param url adresse de la requête
+     * @param token jeton de connexion de l'utilisateur, null si la requête n'est pas authentifiée
+     * @param listener Response.Listener exécuté en cas de succès
+     * @param errorListener Response.ErrorListener exécuté en cas d'échec
+     */
+    protected GzipRequest(int method, String url, String token, Response.Listener<T> listener,
+                          Response.ErrorListener errorListener) {
+        super(method, url, errorListener);
+        this.token = token;
+        this.listener = listener;
+    }
+
+    /**
+     * Construit le corps de la requête, appelé une seule fois sur le thread réseau.
+     * @return le corps non compressé, null si la requête n'a pas de corps
+     * @throws IOException si le corps ne peut pas être construit
+     */
+    protected byte[] createBody() throws IOException {
+        return null;
+    }
+
+    /**
+     * Analyse le corps décompressé de la réponse, sur le thread réseau.
+     * @param data corps décompressé
+     * @param response réponse reçue, pour les en-têtes et le cache
+     * @return la réponse analysée
+     */
+    protected abstract Response<T> parseResponse(byte[] data, NetworkResponse response);
+
+    /**
+     * Renvoie la clé de cache d'une requête.
+     * Le jeton fait partie de la clé pour que deux utilisateurs ne partagent pas leurs réponses.
+     * @param url adresse de la requête
+     * @param token jeton de connexion de l'utilisateur, null si la requête n'est pas authentifiée
+     * @return la clé de cache
+     */
+    public static String cacheKey(String url, String token) {
+        return token == null ? url : url + "#" + token;
+    }
+
+    @Override
+    public String getCacheKey() {
+        String key = cacheKey(getUrl(), token);
+        // Même préfixe que la clé par défaut de Volley pour les méthodes autres que GET
+        return getMethod() == Method.GET ? key : getMethod() + "-" + key;
+    }
+
+    /**
+     * Construit une entrée de cache conservée longtemps mais toujours revalidée.
+     * La réponse en cache est affichée immédiatement, puis une requête conditionnelle
+     * (If-None-Match / If-Modified-Since) est envoyée ; si la réponse n'a pas changé,
+     * le serveur répond 304 et la réponse n'est pas analysée une seconde fois.
+     * Les directives no-cache et no-store de l'API sont ignorées : le cache est privé
+     * à l'application et toujours revalidé.
+     * @param response réponse reçue
+     * @param maxAge durée de conservation de l'entrée, en millisecondes
+     * @return l'entrée de cache
+     */
+    protected static Cache.Entry revalidatedCacheEntry(NetworkResponse response, long maxAge) {
+        long now = System.currentTimeMillis();
+        Map<String, String> headers = response.headers;
+
+        Cache.Entry entry = new Cache.Entry();
+        entry.data = response.data;
+        entry.etag = headers.get("ETag");
+        String date = headers.get("Date");
+        entry.serverDate = date == null ? 0 : HttpHeaderParser.parseDateAsEpoch(date);
+        String lastModified = headers.get("Last-Modified");
+        entry.lastModified = lastModified == null ? 0 : HttpHeaderParser.parseDateAsEpoch(lastModified);
+        entry.softTtl = 0;
+        entry.ttl = now + maxAge;
+        entry.responseHeaders = headers;
+        entry.allResponseHeaders = response.allHeaders;
+        return entry;
+    }
+
+    @Override
+    public Map<String, String> getHeaders() throws AuthFailureError {
+        Map<String, String> headers = token == null
+                ? new HashMap<>()
+                : StrovoApi.getInstance().createAuthorizationHeader(token);
+        headers.put(HttpCompression.ACCEPT_ENCODING, HttpCompression.GZIP);
+        // Les en-têtes sont lus avant le corps, qui est donc préparé ici
+        prepareBody();
+        if (bodyCompressed) {
+            headers.put(HttpCompression.CONTENT_ENCODING, HttpCompression.GZIP);
+        }
+        return headers;
+    }
+
+    @Override
+    public final byte[] getBody() {
+        prepareBody();
+        return body;
+    }
+
+    /**
+     * Construit le corps de la requête s'il ne l'a pas déjà été, et le compresse si besoin.
+     */
+    private void prepareBody() {
+        if (bodyPrepared) {
+            return;
+        }
+        bodyPrepared = true;
+        try {
+            body = createBody();
+            if (StrovoApi.COMPRESS_REQUESTS && body != null && body.length >= COMPRESSION_THRESHOLD) {
+                body = HttpCompression.gzip(body);
+                bodyCompressed = true;
+            }
+        } catch (IOException e) {
+            VolleyLog.wtf("Erreur lors de la construction du corps de la requête : %s", e);
+            body = null;
+            bodyCompressed = false;
+        }
+    }
+
+    @Override
+    protected final Response<T> parseNetworkResponse(NetworkResponse response) {
+        byte[] data;
+        try {
+            data = HttpCompression.decode(response.data, response.headers);
+        } catch (IOException e) {
+            return Response.error(new ParseError(e));
+        }
+        return parseResponse(data, response);
+    }
+
+    @Override
+    protected void deliverResponse(T response) {
+        Response.Listener<T> listener;
+        List<GzipRequest<T>> followers;
+        synchronized (lock) {
+            listener = this.listener;
+            followers = new ArrayList<>(this.followers);
+        }
+        if (listener != null) {
+            listener.onResponse(response);
+        }
+        for (GzipRequest<T> follower : followers) {
+            follower.deliverResponse(response);
+        }
+    }
+
+    @Override
+    public void deliverError(VolleyError error) {
+        boolean detached;
+        List<GzipRequest<T>> followers;
+        synchronized (lock) {
+            detached = this.detached;
+            followers = new ArrayList<>(this.followers);
+        }
+        if (!detached) {
+            super.deliverError(error);
+        }
+        for (GzipRequest<T> follower : followers) {
+            follower.deliverError(error);
+        }
+    }
+
+    /**
+     * Ajoute une requête identique, qui recevra la réponse de cette requête sans être envoyée.
+     * @param follower requête identique
+     * @return false si cette requête est annulée ou a déjà délivré une réponse
+     */
+    boolean addFollower(GzipRequest<T> follower) {
+        synchronized (lock) {
+            // Une réponse déjà délivrée (depuis le cache) ne le serait pas à la suiveuse
+            if (isCanceled() || hasHadResponseDelivered()) {
+                return false;
+            }
+            followers.add(follower);
+            return true;
+        }
+    }
+
+    /**
+     * Annule les requêtes suiveuses portant une étiquette. Si cette requête porte aussi
+     * l'étiquette, elle est annulée lorsqu'aucune suiveuse n'attend sa réponse ; sinon
+     * seuls ses écouteurs sont retirés et la requête continue pour ses suiveuses.
+     * @param tag étiquette des requêtes à annuler
+     * @return true si cette requête doit être annulée
+     */
+    boolean cancelFollowers(Object tag) {
+        synchronized (lock) {
+            Iterator<GzipRequest<T>> iterator = followers.iterator();
+            while (iterator.hasNext()) {
+                GzipRequest<T> follower = iterator.next();
+                if (follower.getTag() == tag) {
+                    follower.cancel();
+                    iterator.remove();
+                }
+            }
+            if (getTag() != tag) {
+                return false;
+            }
+            if (followers.isEmpty()) {
+                return true;
+            }
+            listener = null;
+            detached = true;
+            return false;
+        }
+    }
+
+    @Override
+    public void cancel() {
+        super.cancel();
+        synchronized (lock) {
+            listener = null;
+            for (GzipRequest<T> follower : followers) {
+                follower.cancel();
+            }
+            followers.clear();
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package fr.gr3.strovo.api;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Locale;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Compression gzip des corps de requête et de réponse HTTP.
+ */
+public final class HttpCompression {
+
+    /** Nom de l'encodage gzip dans les en-têtes HTTP */
+    public static final String GZIP = "gzip";
+
+    /** En-tête indiquant l'encodage d'un corps */
+    public static final String CONTENT_ENCODING = "Content-Encoding";
+
+    /** En-tête indiquant les encodages acceptés pour la réponse */
+    public static final String ACCEPT_ENCODING = "Accept-Encoding";
+
+    /** Taille du tampon de lecture */
+    private static final int BUFFER_SIZE = 8192;
+
+    private HttpCompression() { }
+
+    /**
+     * Compresse des données au format gzip.
+     * @param data données à compresser
+     * @return les données compressées
+     * @throws IOException si la compression échoue
+     */
+    public static byte[] gzip(byte[] data) throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream(data.length / 4 + 64);
+        try (GZIPOutputStream gzip = new GZIPOutputStream(output, BUFFER_SIZE)) {
+            gzip.write(data);
+        }
+        return output.toByteArray();
+    }
+
+    /**
+     * Décompresse des données au format gzip.
+     * @param data données compressées
+     * @return les données décompressées
+     * @throws IOException si les données ne sont pas au format gzip
+     */
+    public static byte[] gunzip(byte[] data) throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream(data.length * 4);
+        try (GZIPInputStream gzip = new GZIPInputStream(new ByteArrayInputStream(data), BUFFER_SIZE)) {
+            byte[] buffer = new byte[BUFFER_SIZE];
+            int read;
+            while ((read = gzip.read(buffer)) != -1) {
+                output.write(buffer, 0, read);
+            }
+        }
+        return output.toByteArray();
+    }
+
+    /**
+     * Décode le corps d'une réponse selon son en-tête Content-Encoding.
+     * Un corps déjà décompressé par la couche HTTP est retourné tel quel.
+     * @param data corps de la réponse
+     * @param headers en-têtes de la réponse, peut être null
+     * @return le corps décompressé
+     * @throws IOException si le corps compressé est invalide
+     */
+    public static byte[] decode(byte[] data, Map<String, String> headers) throws IOException {
+        if (data == null || !isGzip(headers) || !hasGzipMagic(data)) {
+            return data;
+        }
+        return gunzip(data);
+    }
+
+    /**
+     * @param headers en-têtes HTTP, peut être null
+     * @return true si les en-têtes indiquent un corps compressé en gzip
+     */
+    public static boolean isGzip(Map<String, String> headers) {
+        if (headers == null) {
+            return false;
+        }
+        for (Map.Entry<String, String> header : headers.entrySet()) {
+            if (CONTENT_ENCODING.equalsIgnoreCase(header.getKey())) {
+                return header.getValue() != null && header.getValue().toLowerCase(Locale.ROOT).contains(GZIP);
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return true si les données commencent par l'identifiant du format gzip
+     */
+    private static boolean hasGzipMagic(byte[] data) {
+        return data.length >= 2 && (data[0] & 0xFF) == 0x1F && (data[1] & 0xFF) == 0x8B;
+    }
+}
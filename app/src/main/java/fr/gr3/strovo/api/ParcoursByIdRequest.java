@@ -0,0 +1,47 @@
+package fr.gr3.strovo.api;
+
+import android.util.JsonReader;
+
+import com.android.volley.NetworkResponse;
+import com.android.volley.ParseError;
+import com.android.volley.Response;
+import com.android.volley.toolbox.HttpHeaderParser;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+
+import fr.gr3.strovo.api.model.Parcours;
+
+/**
+ * Requête de récupération d'un parcours par son identifiant.
+ * La réponse est lue en flux sur le thread réseau et les coordonnées sont décodées
+ * directement dans le tracé du parcours, sans objet JSON intermédiaire.
+ */
+public class ParcoursByIdRequest extends GzipRequest<Parcours> {
+
+    /**
+     * Construit une requête de récupération d'un parcours.
+     * @param url adresse du parcours
+     * @param token jeton de connexion de l'utilisateur
+     * @param listener Response.Listener exécuté en cas de succès
+     * @param errorListener Response.ErrorListener exécuté en cas d'échec
+     */
+    public ParcoursByIdRequest(String url, String token, Response.Listener<Parcours> listener,
+                               Response.ErrorListener errorListener) {
+        super(Method.GET, url, token, listener, errorListener);
+    }
+
+    @Override
+    protected Response<Parcours> parseResponse(byte[] data, NetworkResponse response) {
+        try (JsonReader reader = new JsonReader(new InputStreamReader(
+                new ByteArrayInputStream(data),
+                HttpHeaderParser.parseCharset(response.headers, "utf-8")))) {
+            Parcours parcours = Parcours.readJson(reader);
+            return Response.success(parcours, HttpHeaderParser.parseCacheHeaders(response));
+        } catch (IOException | IllegalStateException | NumberFormatException e) {
+            // JsonReader signale un type inattendu par IllegalStateException
+            return Response.error(new ParseError(e));
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package fr.gr3.strovo.api;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import fr.gr3.strovo.api.model.Parcours;
+
+/**
+ * Cache en mémoire des parcours décodés, par identifiant.
+ * La taille du cache est bornée par le nombre total de positions allouées par les tracés et non
+ * par le nombre de parcours : un long parcours compte autant que plusieurs courts. La capacité
+ * du tampon est comptée plutôt que son nombre de positions, c'est elle qui occupe la mémoire.
+ * Les parcours les moins récemment consultés sont retirés en premier.
+ */
+public class ParcoursCache {
+
+    /** Nombre maximal de positions allouées par les parcours conservés */
+    private final int maxPoints;
+
+    /** Parcours, du moins récemment consulté au plus récemment consulté */
+    private final LinkedHashMap<String, Parcours> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    /** Nombre de positions allouées par les parcours conservés */
+    private int points;
+
+    /**
+     * Construit un cache vide.
+     * @param maxPoints nombre maximal de positions allouées par les parcours conservés
+     * @throws IllegalArgumentException si le nombre maximal n'est pas positif
+     */
+    public ParcoursCache(int maxPoints) {
+        if (maxPoints <= 0) {
+            throw new IllegalArgumentException("Taille invalide : " + maxPoints);
+        }
+        this.maxPoints = maxPoints;
+    }
+
+    /**
+     * Renvoie un parcours du cache, qui devient le plus récemment consulté.
+     * @param id identifiant du parcours
+     * @return le parcours, null s'il n'est pas dans le cache
+     */
+    public synchronized Parcours get(String id) {
+        return entries.get(id);
+    }
+
+    /**
+     * Ajoute ou remplace un parcours, puis retire les parcours les moins récemment consultés
+     * tant que la taille maximale est dépassée. Un parcours plus grand que le cache n'est pas conservé.
+     * @param id identifiant du parcours
+     * @param parcours parcours décodé
+     */
+    public synchronized void put(String id, Parcours parcours) {
+        remove(id);
+        int weight = weight(parcours);
+        if (weight > maxPoints) {
+            return;
+        }
+        entries.put(id, parcours);
+        points += weight;
+
+        Iterator<Parcours> iterator = entries.values().iterator();
+        while (points > maxPoints) {
+            points -= weight(iterator.next());
+            iterator.remove();
+        }
+    }
+
+    /**
+     * Retire un parcours du cache, après sa modification ou sa suppression.
+     * @param id identifiant du parcours
+     */
+    public synchronized void remove(String id) {
+        Parcours removed = entries.remove(id);
+        if (removed != null) {
+            points -= weight(removed);
+        }
+    }
+
+    /**
+     * Vide le cache.
+     */
+    public synchronized void clear() {
+        entries.clear();
+        points = 0;
+    }
+
+    /**
+     * @return le nombre de parcours conservés
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * @return le nombre de positions allouées par les parcours conservés
+     */
+    public synchronized int getPoints() {
+        return points;
+    }
+
+    /**
+     * @return le poids d'un parcours, capacité de son tracé, au moins 1 pour qu'un parcours
+     *         sans tracé compte
+     */
+    private static int weight(Parcours parcours) {
+        return Math.max(1, parcours.getTrack().capacity());
+    }
+}
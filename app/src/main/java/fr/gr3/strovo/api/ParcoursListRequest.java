@@ -0,0 +1,51 @@
+package fr.gr3.strovo.api;
+
+import android.util.JsonReader;
+
+import com.android.volley.NetworkResponse;
+import com.android.volley.ParseError;
+import com.android.volley.Response;
+import com.android.volley.toolbox.HttpHeaderParser;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+
+import fr.gr3.strovo.api.model.ParcoursList;
+
+/**
+ * Requête de récupération de la liste des parcours d'un utilisateur.
+ * La liste reçue est conservée dans le cache HTTP et revalidée à chaque requête.
+ * Elle est décodée en flux sur le thread réseau (ou celui du cache) : le thread principal
+ * ne reçoit que la liste de parcours prête à afficher.
+ */
+public class ParcoursListRequest extends GzipRequest<ParcoursList> {
+
+    /** Durée de conservation de la liste dans le cache, en millisecondes (30 jours) */
+    private static final long CACHE_MAX_AGE = 30L * 24 * 60 * 60 * 1000;
+
+    /**
+     * Construit une requête de récupération des parcours.
+     * @param url adresse de la liste des parcours
+     * @param token jeton de connexion de l'utilisateur
+     * @param listener Response.Listener exécuté en cas de succès
+     * @param errorListener Response.ErrorListener exécuté en cas d'échec
+     */
+    public ParcoursListRequest(String url, String token, Response.Listener<ParcoursList> listener,
+                               Response.ErrorListener errorListener) {
+        super(Method.GET, url, token, listener, errorListener);
+    }
+
+    @Override
+    protected Response<ParcoursList> parseResponse(byte[] data, NetworkResponse response) {
+        try (JsonReader reader = new JsonReader(new InputStreamReader(
+                new ByteArrayInputStream(data),
+                HttpHeaderParser.parseCharset(response.headers, "utf-8")))) {
+            ParcoursList parcoursList = ParcoursList.readJson(reader);
+            return Response.success(parcoursList, revalidatedCacheEntry(response, CACHE_MAX_AGE));
+        } catch (IOException | IllegalStateException | NumberFormatException e) {
+            // JsonReader signale un type inattendu par IllegalStateException
+            return Response.error(new ParseError(e));
+        }
+    }
+}
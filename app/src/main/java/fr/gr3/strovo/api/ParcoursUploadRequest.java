@@ -0,0 +1,99 @@
+package fr.gr3.strovo.api;
+
+import android.util.JsonWriter;
+
+import com.android.volley.AuthFailureError;
+import com.android.volley.DefaultRetryPolicy;
+import com.android.volley.NetworkResponse;
+import com.android.volley.ParseError;
+import com.android.volley.Response;
+import com.android.volley.toolbox.HttpHeaderParser;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UnsupportedEncodingException;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+import fr.gr3.strovo.api.model.Parcours;
+import fr.gr3.strovo.api.outbox.OutboxUploadRequest;
+import fr.gr3.strovo.api.outbox.ParcoursOutbox;
+
+/**
+ * Requête d'envoi d'un parcours à l'API.
+ * Le parcours est sérialisé en flux directement dans le corps de la requête, sur le thread
+ * réseau, sans construire d'objet JSON intermédiaire ni de chaîne de caractères.
+ * La requête porte la clé d'idempotence du parcours ({@link ParcoursOutbox#keyOf(Parcours)}) et
+ * n'est pas retentée : en cas d'échec, le parcours rejoint la file d'envoi avec la même clé.
+ */
+public class ParcoursUploadRequest extends GzipRequest<JSONObject> {
+
+    /** Délai maximal de l'envoi, en millisecondes */
+    private static final int TIMEOUT = 30000;
+
+    /** Type du contenu envoyé */
+    private static final String CONTENT_TYPE = "application/json; charset=utf-8";
+
+    /** Taille estimée d'une coordonnée sérialisée, utilisée pour dimensionner le corps */
+    private static final int COORDINATE_SIZE = StrovoApi.COMPACT_COORDINATES ? 8 : 40;
+
+    /** Taille estimée du reste du parcours sérialisé */
+    private static final int BASE_SIZE = 512;
+
+    /** Parcours à envoyer */
+    private final Parcours parcours;
+
+    /**
+     * Construit une requête d'envoi d'un parcours.
+     * @param method méthode HTTP
+     * @param url adresse de la requête
+     * @param token jeton de connexion de l'utilisateur
+     * @param parcours parcours à envoyer
+     * @param listener Response.Listener exécuté en cas de succès
+     * @param errorListener Response.ErrorListener exécuté en cas d'échec
+     */
+    public ParcoursUploadRequest(int method, String url, String token, Parcours parcours,
+                                 Response.Listener<JSONObject> listener,
+                                 Response.ErrorListener errorListener) {
+        super(method, url, token, listener, errorListener);
+        this.parcours = parcours;
+        setRetryPolicy(new DefaultRetryPolicy(TIMEOUT, 0, 1));
+        setShouldCache(false);
+    }
+
+    @Override
+    public Map<String, String> getHeaders() throws AuthFailureError {
+        Map<String, String> headers = super.getHeaders();
+        headers.put(OutboxUploadRequest.IDEMPOTENCY_KEY, ParcoursOutbox.keyOf(parcours));
+        return headers;
+    }
+
+    @Override
+    public String getBodyContentType() {
+        return CONTENT_TYPE;
+    }
+
+    @Override
+    protected byte[] createBody() throws IOException {
+        ByteArrayOutputStream body = new ByteArrayOutputStream(
+                BASE_SIZE + parcours.getTrack().size() * COORDINATE_SIZE);
+        JsonWriter writer = new JsonWriter(new OutputStreamWriter(body, StandardCharsets.UTF_8));
+        parcours.writeJson(writer, StrovoApi.COMPACT_COORDINATES);
+        writer.close();
+        return body.toByteArray();
+    }
+
+    @Override
+    protected Response<JSONObject> parseResponse(byte[] data, NetworkResponse response) {
+        try {
+            String json = new String(data, HttpHeaderParser.parseCharset(response.headers, "utf-8"));
+            return Response.success(new JSONObject(json), HttpHeaderParser.parseCacheHeaders(response));
+        } catch (UnsupportedEncodingException | JSONException e) {
+            return Response.error(new ParseError(e));
+        }
+    }
+}
@@ -1,20 +1,30 @@
 package fr.gr3.strovo.api;
 
+import android.content.Context;
+
 import com.android.volley.Request;
+import com.android.volley.RequestQueue;
 import com.android.volley.Response;
-import com.android.volley.toolbox.JsonArrayRequest;
+import com.android.volley.toolbox.BasicNetwork;
+import com.android.volley.toolbox.DiskBasedCache;
+import com.android.volley.toolbox.HurlStack;
 import com.android.volley.toolbox.JsonObjectRequest;
 import com.android.volley.toolbox.StringRequest;
 
-import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
 
+import java.io.File;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Locale;
 import java.util.Map;
+import java.util.Set;
 
 import fr.gr3.strovo.api.model.Parcours;
+import fr.gr3.strovo.api.model.ParcoursList;
 import fr.gr3.strovo.api.model.User;
+import fr.gr3.strovo.utils.parcours.ParcoursCollection;
 
 /**
  * Classe permettant de communiquer avec l'api
@@ -33,6 +43,12 @@ public class StrovoApi {
     /** Point de terminaison pour récupérer la liste des parcours d'un utilisateur */
     public static final String GET_PARCOURS = API_URL + "/parcours";
 
+    /** Point de terminaison pour récupérer une page des parcours d'un utilisateur, du plus récent au plus ancien */
+    public static final String GET_PARCOURS_PAGE = GET_PARCOURS + "?page=%d&size=%d&sort=date,desc";
+
+    /** Point de terminaison pour récupérer les parcours ajoutés, modifiés ou supprimés depuis une date */
+    public static final String GET_PARCOURS_SINCE = GET_PARCOURS + "?since=%d";
+
     /** Point de terminaison pour ajouter un parcours à un utilisateur */
     public static final String ADD_PARCOURS = API_URL + "/parcours";
 
@@ -44,9 +60,50 @@ public class StrovoApi {
     public static final String UPDATE_PARCOURS = API_URL + "/parcours/%s" ;
 
 
+    /**
+     * Indique si les coordonnées des parcours envoyés sont encodées au format « encoded polyline »
+     * (champ coordinatesPolyline), environ dix fois plus compact que le tableau de coordonnées.
+     * A activer lorsque l'API accepte ce format.
+     */
+    public static final boolean COMPACT_COORDINATES = false;
+
+    /**
+     * Indique si les corps de requête dépassant {@link GzipRequest#COMPRESSION_THRESHOLD} octets
+     * sont compressés (Content-Encoding: gzip). A activer lorsque l'API accepte les corps compressés,
+     * les réponses compressées étant acceptées dans tous les cas.
+     */
+    public static final boolean COMPRESS_REQUESTS = false;
+
+    /** Dossier du cache HTTP, dans le dossier de cache de l'application */
+    private static final String CACHE_DIRECTORY = "volley";
+
+    /** Taille maximale du cache HTTP, en octets */
+    private static final int CACHE_SIZE = 10 * 1024 * 1024;
+
+    /**
+     * Nombre de threads réseau de la file de requêtes.
+     * Les requêtes de l'application sont peu nombreuses et l'API n'a qu'un hôte.
+     */
+    private static final int NETWORK_THREAD_POOL_SIZE = 3;
+
+    /** Nombre de connexions gardées ouvertes vers l'API */
+    private static final int MAX_IDLE_CONNECTIONS = NETWORK_THREAD_POOL_SIZE;
+
+    /** Nombre maximal de positions des parcours gardés en mémoire, environ 4 Mo */
+    private static final int PARCOURS_CACHE_POINTS = 100000;
+
     /** Singleton */
     private static StrovoApi instance;
 
+    /** File de requêtes HTTP partagée par toute l'application */
+    private RequestQueue requestQueue;
+
+    /** Requêtes GET en cours, par clé de cache */
+    private final Map<String, GzipRequest<?>> inFlight = new HashMap<>();
+
+    /** Parcours décodés récemment récupérés */
+    private final ParcoursCache parcoursCache = new ParcoursCache(PARCOURS_CACHE_POINTS);
+
     /**
      * Constructeur privé.
      */
@@ -63,6 +120,90 @@ public class StrovoApi {
         return instance;
     }
 
+    /**
+     * Renvoie la file de requêtes HTTP de l'application, créée au premier appel.
+     * La file est liée au contexte de l'application et non à une activité : ses threads,
+     * son cache disque et ses connexions sont réutilisés d'un écran à l'autre.
+     * Les activités étiquettent leurs requêtes pour les annuler à leur destruction.
+     * @param context contexte quelconque de l'application
+     * @return la file de requêtes partagée
+     */
+    public synchronized RequestQueue getRequestQueue(Context context) {
+        if (requestQueue == null) {
+            // HttpURLConnection réutilise les connexions tant que les réponses sont lues entièrement
+            System.setProperty("http.keepAlive", "true");
+            System.setProperty("http.maxConnections", String.valueOf(MAX_IDLE_CONNECTIONS));
+
+            Context applicationContext = context.getApplicationContext();
+            File cacheDirectory = new File(applicationContext.getCacheDir(), CACHE_DIRECTORY);
+            requestQueue = new RequestQueue(new DiskBasedCache(cacheDirectory, CACHE_SIZE),
+                    new BasicNetwork(new HurlStack()), NETWORK_THREAD_POOL_SIZE);
+            requestQueue.addRequestFinishedListener(this::onRequestFinished);
+            requestQueue.start();
+        }
+        return requestQueue;
+    }
+
+    /**
+     * Ajoute une requête à la file de requêtes de l'application.
+     * Une requête GET identique à une requête en cours (même adresse, même jeton) n'est pas
+     * envoyée : elle reçoit la réponse de la requête en cours.
+     * @param context contexte quelconque de l'application
+     * @param request requête à envoyer
+     */
+    @SuppressWarnings("unchecked")
+    public <T> void add(Context context, Request<T> request) {
+        RequestQueue queue = getRequestQueue(context);
+        if (request instanceof GzipRequest && request.getMethod() == Request.Method.GET) {
+            synchronized (this) {
+                String key = request.getCacheKey();
+                GzipRequest<?> leader = inFlight.get(key);
+                if (leader != null && leader.getClass() == request.getClass()
+                        && ((GzipRequest<T>) leader).addFollower((GzipRequest<T>) request)) {
+                    return;
+                }
+                inFlight.put(key, (GzipRequest<?>) request);
+            }
+        }
+        queue.add(request);
+    }
+
+    /**
+     * Annule les requêtes portant une étiquette, à la destruction d'une activité.
+     * Une requête en cours attendue par des requêtes identiques d'une autre étiquette continue
+     * pour celles-ci, sans exécuter les écouteurs de la requête annulée.
+     * @param tag étiquette des requêtes à annuler
+     */
+    public void cancelAll(Object tag) {
+        RequestQueue queue;
+        Set<Request<?>> shared = new HashSet<>();
+        synchronized (this) {
+            if (requestQueue == null) {
+                return;
+            }
+            queue = requestQueue;
+            for (GzipRequest<?> leader : inFlight.values()) {
+                if (!leader.cancelFollowers(tag) && leader.getTag() == tag) {
+                    shared.add(leader);
+                }
+            }
+        }
+        queue.cancelAll(request -> request.getTag() == tag && !shared.contains(request));
+    }
+
+    /**
+     * Retire une requête terminée des requêtes en cours.
+     * @param request requête terminée
+     */
+    private synchronized void onRequestFinished(Request<?> request) {
+        if (request instanceof GzipRequest) {
+            String key = request.getCacheKey();
+            if (inFlight.get(key) == request) {
+                inFlight.remove(key);
+            }
+        }
+    }
+
     /**
      * Construit une requête pour enregistrer un utilisateur.
      * @param user utilisateur à enregistrer
@@ -97,44 +238,66 @@ public class StrovoApi {
     }
 
     /**
-     * Construit une requête pour récupérer la listes des parcours d'un utilisateur.
+     * Construit une requête pour récupérer une page des parcours d'un utilisateur,
+     * du plus récent au plus ancien.
+     * La première page est conservée dans le cache HTTP : la version en cache est délivrée
+     * immédiatement, puis la page est revalidée par une requête conditionnelle. Le listener peut
+     * donc être exécuté deux fois, la seconde seulement si la page a changé.
      * @param token jeton de connexion de l'utilisateur
+     * @param page numéro de la page, à partir de 0
      * @param responseListener Response.Listener exécuté en cas de succès
      * @param errorListener Response.ErrorListener exécuté en cas d'échec
-     * @return une requête de récupération des parcours de l'utilisateur
+     * @return une requête de récupération d'une page des parcours de l'utilisateur
      */
-    public JsonArrayRequest getParcours(String token, Response.Listener<JSONArray> responseListener,
-                                        Response.ErrorListener errorListener) {
+    public ParcoursListRequest getParcoursPage(String token, int page,
+                                               Response.Listener<ParcoursList> responseListener,
+                                               Response.ErrorListener errorListener) {
 
-        return new JsonArrayRequest(Request.Method.GET, GET_PARCOURS, null,
-                responseListener, errorListener) {
-            @Override
-            public Map<String, String> getHeaders() {
-                return createAuthorizationHeader(token);
-            }
-        };
+        String apiUrl = String.format(Locale.ROOT, GET_PARCOURS_PAGE, page, ParcoursCollection.PAGE_SIZE);
+
+        ParcoursListRequest request = new ParcoursListRequest(apiUrl, token, responseListener, errorListener);
+        request.setShouldCache(page == 0);
+        return request;
+    }
+
+    /**
+     * Construit une requête pour récupérer les parcours ajoutés, modifiés ou supprimés depuis
+     * une date. Les parcours supprimés ne contiennent que leur identifiant et le champ deleted.
+     * @param token jeton de connexion de l'utilisateur
+     * @param since date de la dernière synchronisation, en millisecondes
+     * @param responseListener Response.Listener exécuté en cas de succès
+     * @param errorListener Response.ErrorListener exécuté en cas d'échec
+     * @return une requête de récupération des modifications des parcours de l'utilisateur
+     */
+    public ParcoursListRequest getParcoursSince(String token, long since,
+                                                Response.Listener<ParcoursList> responseListener,
+                                                Response.ErrorListener errorListener) {
+
+        String apiUrl = String.format(Locale.ROOT, GET_PARCOURS_SINCE, since);
+
+        ParcoursListRequest request = new ParcoursListRequest(apiUrl, token, responseListener, errorListener);
+        request.setShouldCache(false);
+        return request;
     }
 
     /**
      * Construit une requête pour ajouter un parcours à un utilisateur.
+     * Le parcours est sérialisé en flux au moment de l'envoi.
      * @param token jeton de connexion de l'utilisateur
      * @param parcours parcours à ajouter
      * @param responseListener Response.Listener exécuté en cas de succès
      * @param errorListener Response.ErrorListener exécuté en cas d'échec
      * @return une requête d'ajout d'un parcours à l'utilisateur
-     * @throws JSONException si problème lors de la conversion du parcours en JSONObject
      */
-    public JsonObjectRequest addParcours(String token, Parcours parcours,
-                                         Response.Listener<JSONObject> responseListener,
-                                         Response.ErrorListener errorListener) throws JSONException {
+    public ParcoursUploadRequest addParcours(String token, Parcours parcours,
+                                             Response.Listener<JSONObject> responseListener,
+                                             Response.ErrorListener errorListener) {
 
-        return new JsonObjectRequest(Request.Method.POST, ADD_PARCOURS, parcours.toJson(),
-                                     responseListener, errorListener) {
-            @Override
-            public Map<String, String> getHeaders() {
-                return createAuthorizationHeader(token);
-            }
-        };
+        return new ParcoursUploadRequest(Request.Method.POST, ADD_PARCOURS, token, parcours,
+                response -> {
+                    invalidateCache(token, null);
+                    responseListener.onResponse(response);
+                }, errorListener);
     }
 
     /**
@@ -151,7 +314,12 @@ public class StrovoApi {
 
         String apiUrl = String.format(DELETE_PARCOURS, parcoursId);
 
-        return new StringRequest(Request.Method.DELETE, apiUrl, responseListener, errorListener) {
+        Response.Listener<String> listener = response -> {
+            invalidateCache(token, parcoursId);
+            responseListener.onResponse(response);
+        };
+
+        return new StringRequest(Request.Method.DELETE, apiUrl, listener, errorListener) {
             @Override
             public Map<String, String> getHeaders() {
                 return createAuthorizationHeader(token);
@@ -161,25 +329,35 @@ public class StrovoApi {
 
     /**
      * Construit une requête pour récupérer un parcours d'un utilisateur à partir de l'identifiant
-     * du parcours.
+     * du parcours. La réponse est décodée en flux sur le thread réseau, puis le parcours est
+     * gardé en mémoire pour {@link #getCachedParcours(String)}.
      * @param token jeton de connexion de l'utilisateur
      * @param parcoursId identifiant du parcours à récupérer
      * @param responseListener Response.Listener exécuté en cas de succès
      * @param errorListener Response.ErrorListener exécuté en cas d'échec
      * @return une requête de récupération d'un parcours de l'utilisateur
      */
-    public JsonObjectRequest getParcoursById(String token, String parcoursId,
-                                             Response.Listener<JSONObject> responseListener,
-                                             Response.ErrorListener errorListener) {
+    public ParcoursByIdRequest getParcoursById(String token, String parcoursId,
+                                               Response.Listener<Parcours> responseListener,
+                                               Response.ErrorListener errorListener) {
 
         String apiUrl = String.format(GET_PARCOURS_BY_ID, parcoursId);
 
-        return  new JsonObjectRequest(Request.Method.GET, apiUrl, null, responseListener, errorListener) {
-            @Override
-            public Map<String, String> getHeaders() {
-                return createAuthorizationHeader(token);
-            }
+        Response.Listener<Parcours> listener = parcours -> {
+            parcoursCache.put(parcoursId, parcours);
+            responseListener.onResponse(parcours);
         };
+
+        return new ParcoursByIdRequest(apiUrl, token, listener, errorListener);
+    }
+
+    /**
+     * Renvoie un parcours déjà récupéré par {@link #getParcoursById}, sans requête.
+     * @param parcoursId identifiant du parcours
+     * @return le parcours, null s'il n'est pas en mémoire ou a été modifié depuis
+     */
+    public Parcours getCachedParcours(String parcoursId) {
+        return parcoursCache.get(parcoursId);
     }
 
     /**
@@ -204,7 +382,12 @@ public class StrovoApi {
             e.printStackTrace();
         }
 
-        return new JsonObjectRequest(Request.Method.PUT, apiUrl, parcoursJson, responseListener, errorListener) {
+        Response.Listener<JSONObject> listener = response -> {
+            invalidateCache(token, parcours.getId());
+            responseListener.onResponse(response);
+        };
+
+        return new JsonObjectRequest(Request.Method.PUT, apiUrl, parcoursJson, listener, errorListener) {
             @Override
             public Map<String, String> getHeaders() {
                 return createAuthorizationHeader(token);
@@ -212,6 +395,35 @@ public class StrovoApi {
         };
     }
 
+    /**
+     * Vide les parcours gardés en mémoire, lorsqu'un autre utilisateur se connecte.
+     * Le cache HTTP n'est pas concerné : ses clés comprennent le jeton de connexion.
+     */
+    public void clearParcoursCache() {
+        parcoursCache.clear();
+    }
+
+    /**
+     * Retire du cache HTTP la liste des parcours et le parcours modifié, après un ajout,
+     * une suppression ou une mise à jour. Le parcours modifié est aussi retiré de la mémoire.
+     * @param token jeton de connexion de l'utilisateur
+     * @param parcoursId identifiant du parcours modifié, null s'il n'est pas en cache
+     */
+    private synchronized void invalidateCache(String token, String parcoursId) {
+        if (parcoursId != null) {
+            parcoursCache.remove(parcoursId);
+        }
+        if (requestQueue == null) {
+            return;
+        }
+        String firstPage = String.format(Locale.ROOT, GET_PARCOURS_PAGE, 0, ParcoursCollection.PAGE_SIZE);
+        requestQueue.getCache().remove(GzipRequest.cacheKey(firstPage, token));
+        if (parcoursId != null) {
+            requestQueue.getCache().remove(
+                    GzipRequest.cacheKey(String.format(GET_PARCOURS_BY_ID, parcoursId), token));
+        }
+    }
+
     /**
      * Crée le header de la requête avec le jeton de connexion api de l'utilisateur.
      * @param token jeton de connexion api
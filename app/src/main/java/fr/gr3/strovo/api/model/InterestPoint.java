@@ -1,10 +1,16 @@
 package fr.gr3.strovo.api.model;
 
+import android.util.JsonReader;
+import android.util.JsonToken;
+import android.util.JsonWriter;
+
 import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
 import org.osmdroid.util.GeoPoint;
 
+import java.io.IOException;
+
 /** Représente un point d'intérêt sur un parcours. */
 public class InterestPoint {
 
@@ -42,6 +48,44 @@ public class InterestPoint {
         return new InterestPoint(point, name, description);
     }
 
+    /**
+     * Lit un point d'intérêt JSON depuis un flux.
+     * @param reader flux JSON positionné au début du point d'intérêt
+     * @return le point d'intérêt lu
+     * @throws IOException si le flux est invalide
+     */
+    public static InterestPoint readJson(JsonReader reader) throws IOException {
+        String name = null;
+        String description = null;
+        double latitude = 0;
+        double longitude = 0;
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String key = reader.nextName();
+            if (reader.peek() == JsonToken.NULL) {
+                reader.nextNull();
+            } else if (key.equals("name")) {
+                name = reader.nextString();
+            } else if (key.equals("description")) {
+                description = reader.nextString();
+            } else if (key.equals("coordinates")) {
+                reader.beginArray();
+                latitude = reader.nextDouble();
+                longitude = reader.nextDouble();
+                while (reader.hasNext()) {
+                    reader.skipValue();
+                }
+                reader.endArray();
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+
+        return new InterestPoint(new GeoPoint(latitude, longitude), name, description);
+    }
+
     /**
      * @return les coordonnées du point
      */
@@ -77,4 +121,20 @@ public class InterestPoint {
 
         return jsonObject;
     }
+
+    /**
+     * Ecrit le point d'intérêt en JSON dans un flux.
+     * @param writer flux JSON
+     * @throws IOException si une erreur se produit durant l'écriture
+     */
+    public void writeJson(JsonWriter writer) throws IOException {
+        writer.beginObject();
+        writer.name("name").value(name);
+        writer.name("description").value(description);
+        writer.name("coordinates").beginArray()
+                .value(point.getLatitude())
+                .value(point.getLongitude())
+                .endArray();
+        writer.endObject();
+    }
 }
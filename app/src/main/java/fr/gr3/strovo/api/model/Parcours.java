@@ -1,16 +1,39 @@
 package fr.gr3.strovo.api.model;
 
+import android.util.JsonReader;
+import android.util.JsonToken;
+import android.util.JsonWriter;
+
 import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
 
+import java.io.IOException;
+import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
 
+import fr.gr3.strovo.utils.parcours.TrackBuffer;
+import fr.gr3.strovo.utils.parcours.TrackCodec;
+
 public class Parcours {
 
+    /** Format des dates échangées avec l'API */
+    private static final String DATE_PATTERN = "yyyy-MM-dd'T'HH:mm:ss.SSS";
+
+    /**
+     * Format des dates, un par thread : SimpleDateFormat n'est pas thread-safe
+     * et coûteux à construire pour chaque parcours d'une liste.
+     */
+    private static final ThreadLocal<SimpleDateFormat> DATE_FORMAT = new ThreadLocal<SimpleDateFormat>() {
+        @Override
+        protected SimpleDateFormat initialValue() {
+            return new SimpleDateFormat(DATE_PATTERN);
+        }
+    };
+
     /** Identifiant du parcours */
     private String id;
 
@@ -38,8 +61,8 @@ public class Parcours {
     /** Liste des identifiants des points d'intêrets associés au parcours. */
     private List<InterestPoint> interestPoints;
 
-    /** Listes des coordonnées des points enregistrés formant le parcours. */
-    private List<double[]> coordinates;
+    /** Positions enregistrées formant le parcours. */
+    private TrackBuffer track;
 
     /**
      * Construit un parcours.
@@ -52,11 +75,11 @@ public class Parcours {
      * @param distance distance parcourue
      * @param elevation dénivelé du parcours
      * @param interestPoints liste des points d'intêrets associés au parcours
-     * @param coordinates liste de coordonnées de points formant le parcours
+     * @param track positions formant le parcours
      */
     public Parcours(String name, String description, Date date,
                     long time, float speed, double distance, double elevation,
-                    List<InterestPoint> interestPoints, List<double[]> coordinates) {
+                    List<InterestPoint> interestPoints, TrackBuffer track) {
         this.name = name;
         this.description = description;
         this.date = date;
@@ -65,7 +88,7 @@ public class Parcours {
         this.distance = distance;
         this.elevation = elevation;
         this.interestPoints = interestPoints;
-        this.coordinates = coordinates;
+        this.track = track;
     }
 
     /**
@@ -86,7 +109,7 @@ public class Parcours {
         this.distance = 0;
         this.elevation = 0;
         this.interestPoints = new ArrayList<>();
-        this.coordinates = new ArrayList<>();
+        this.track = new TrackBuffer(0);
     }
 
     /**
@@ -105,7 +128,7 @@ public class Parcours {
         this.distance = 0;
         this.elevation = 0;
         this.interestPoints = new ArrayList<>();
-        this.coordinates = new ArrayList<>();
+        this.track = new TrackBuffer();
     }
 
     public String getId() {
@@ -176,12 +199,12 @@ public class Parcours {
         this.interestPoints = interestPoints;
     }
 
-    public List<double[]> getCoordinates() {
-        return coordinates;
+    public TrackBuffer getTrack() {
+        return track;
     }
 
-    public void setCoordinates(List<double[]> coordinates) {
-        this.coordinates = coordinates;
+    public void setTrack(TrackBuffer track) {
+        this.track = track;
     }
 
     /**
@@ -193,7 +216,7 @@ public class Parcours {
         JSONObject jsonObject = new JSONObject();
         jsonObject.put("name", name);
         jsonObject.put("description", description);
-        jsonObject.put("date", new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSS").format(date));
+        jsonObject.put("date", formatDate(date));
         jsonObject.put("time", time);
         jsonObject.put("speed", speed);
         jsonObject.put("distance", distance);
@@ -208,13 +231,194 @@ public class Parcours {
 
         // Convertion des coordonnées
         JSONArray jsonCoordinates = new JSONArray();
-        for (double[] coordinatesPoint : coordinates) {
+        for (int i = 0; i < track.size(); i++) {
             jsonCoordinates.put(new JSONArray()
-                    .put(coordinatesPoint[0])
-                    .put(coordinatesPoint[1]));
+                    .put(track.getLatitude(i))
+                    .put(track.getLongitude(i)));
         }
         jsonObject.put("coordinates", jsonCoordinates);
 
         return jsonObject;
     }
-}
\ No newline at end of file
+
+    /**
+     * Ecrit le parcours en JSON dans un flux, sans construire d'objet intermédiaire.
+     * Le document produit est le même que celui de {@link #toJson()}.
+     * @param writer flux JSON
+     * @throws IOException si une erreur se produit durant l'écriture
+     */
+    public void writeJson(JsonWriter writer) throws IOException {
+        writeJson(writer, false);
+    }
+
+    /**
+     * Ecrit le parcours en JSON dans un flux, sans construire d'objet intermédiaire.
+     * @param writer flux JSON
+     * @param compactCoordinates true pour écrire les coordonnées au format « encoded polyline »
+     *                           dans le champ coordinatesPolyline, false pour le tableau coordinates
+     * @throws IOException si une erreur se produit durant l'écriture
+     */
+    public void writeJson(JsonWriter writer, boolean compactCoordinates) throws IOException {
+        writer.beginObject();
+        writer.name("name").value(name);
+        writer.name("description").value(description);
+        writer.name("date").value(formatDate(date));
+        writer.name("time").value(time);
+        writer.name("speed").value(speed);
+        writer.name("distance").value(distance);
+        writer.name("elevation").value(elevation);
+
+        writer.name("interestPoints").beginArray();
+        for (InterestPoint interestPoint : interestPoints) {
+            interestPoint.writeJson(writer);
+        }
+        writer.endArray();
+
+        if (compactCoordinates) {
+            writer.name("coordinatesPolyline")
+                    .value(TrackCodec.encodePolyline(track, TrackCodec.POLYLINE_PRECISION));
+        } else {
+            // Les coordonnées sont écrites directement depuis le tracé
+            writer.name("coordinates").beginArray();
+            for (int i = 0; i < track.size(); i++) {
+                writer.beginArray()
+                        .value(track.getLatitude(i))
+                        .value(track.getLongitude(i))
+                        .endArray();
+            }
+            writer.endArray();
+        }
+        writer.endObject();
+    }
+
+    /**
+     * Lit un parcours JSON depuis un flux, sans construire d'objet intermédiaire.
+     * Les coordonnées sont décodées directement dans le tracé, qu'elles soient sous forme de
+     * tableau (coordinates) ou au format « encoded polyline » (coordinatesPolyline).
+     * @param reader flux JSON positionné au début du parcours
+     * @return le parcours lu
+     * @throws IOException si le flux est invalide ou si la date du parcours est absente
+     */
+    public static Parcours readJson(JsonReader reader) throws IOException {
+        String id = null;
+        String name = null;
+        String description = null;
+        Date date = null;
+        long time = 0;
+        float speed = 0;
+        double distance = 0;
+        double elevation = 0;
+        List<InterestPoint> interestPoints = new ArrayList<>();
+        TrackBuffer track = new TrackBuffer();
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String key = reader.nextName();
+            if (reader.peek() == JsonToken.NULL) {
+                reader.nextNull();
+                continue;
+            }
+            switch (key) {
+                case "id":
+                    id = reader.nextString();
+                    break;
+                case "name":
+                    name = reader.nextString();
+                    break;
+                case "description":
+                    description = reader.nextString();
+                    break;
+                case "date":
+                    try {
+                        date = parseDate(reader.nextString());
+                    } catch (ParseException e) {
+                        throw new IOException("Date du parcours invalide", e);
+                    }
+                    break;
+                case "time":
+                    time = reader.nextLong();
+                    break;
+                case "speed":
+                    speed = (float) reader.nextDouble();
+                    break;
+                case "distance":
+                    distance = reader.nextDouble();
+                    break;
+                case "elevation":
+                    elevation = reader.nextDouble();
+                    break;
+                case "interestPoints":
+                    reader.beginArray();
+                    while (reader.hasNext()) {
+                        interestPoints.add(InterestPoint.readJson(reader));
+                    }
+                    reader.endArray();
+                    break;
+                case "coordinates":
+                    readCoordinates(reader, track);
+                    break;
+                case "coordinatesPolyline":
+                    try {
+                        track = TrackCodec.decodePolyline(reader.nextString(), TrackCodec.POLYLINE_PRECISION);
+                    } catch (IllegalArgumentException e) {
+                        throw new IOException("Coordonnées du parcours invalides", e);
+                    }
+                    break;
+                default:
+                    reader.skipValue();
+                    break;
+            }
+        }
+        reader.endObject();
+        if (date == null) {
+            throw new IOException("Date du parcours absente");
+        }
+        // Le tracé lu ne grandit plus : la capacité de réserve serait gardée en cache pour rien
+        track.trimToSize();
+
+        Parcours parcours = new Parcours(name, description, date, time, speed, distance, elevation,
+                interestPoints, track);
+        parcours.setId(id);
+        return parcours;
+    }
+
+    /**
+     * Lit une date au format de l'API.
+     * @param date date au format de l'API
+     * @return la date lue
+     * @throws ParseException si la date est invalide
+     */
+    public static Date parseDate(String date) throws ParseException {
+        return DATE_FORMAT.get().parse(date);
+    }
+
+    /**
+     * Ecrit une date au format de l'API.
+     * @param date date à écrire
+     * @return la date au format de l'API
+     */
+    public static String formatDate(Date date) {
+        return DATE_FORMAT.get().format(date);
+    }
+
+    /**
+     * Lit les coordonnées [[latitude, longitude], ...] d'un parcours dans un tracé.
+     * @param reader flux JSON positionné au début des coordonnées
+     * @param track tracé recevant les coordonnées
+     * @throws IOException si le flux est invalide
+     */
+    private static void readCoordinates(JsonReader reader, TrackBuffer track) throws IOException {
+        reader.beginArray();
+        while (reader.hasNext()) {
+            reader.beginArray();
+            double latitude = reader.nextDouble();
+            double longitude = reader.nextDouble();
+            while (reader.hasNext()) {
+                reader.skipValue();
+            }
+            reader.endArray();
+            track.add(latitude, longitude);
+        }
+        reader.endArray();
+    }
+}
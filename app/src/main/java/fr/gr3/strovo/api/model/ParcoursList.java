@@ -0,0 +1,136 @@
+package fr.gr3.strovo.api.model;
+
+import android.util.JsonReader;
+import android.util.JsonToken;
+
+import java.io.IOException;
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Liste de parcours reçue de l'API, non modifiable.
+ * Une liste de modifications contient aussi les identifiants des parcours supprimés,
+ * reçus sous la forme {"id": ..., "deleted": true}.
+ */
+public class ParcoursList {
+
+    /** Parcours reçus, avec leurs statistiques mais sans leur tracé ni leurs points d'intérêt */
+    private final List<Parcours> parcours;
+
+    /** Identifiants des parcours supprimés */
+    private final List<String> deletedIds;
+
+    /**
+     * Construit une liste de parcours.
+     * @param parcours parcours reçus
+     * @param deletedIds identifiants des parcours supprimés
+     */
+    public ParcoursList(List<Parcours> parcours, List<String> deletedIds) {
+        this.parcours = Collections.unmodifiableList(parcours);
+        this.deletedIds = Collections.unmodifiableList(deletedIds);
+    }
+
+    /**
+     * Lit une liste de parcours JSON depuis un flux, sans construire d'objet intermédiaire.
+     * Les éléments sans identifiant, nom ou date sont ignorés.
+     * @param reader flux JSON positionné au début du tableau
+     * @return la liste lue
+     * @throws IOException si le flux est invalide
+     */
+    public static ParcoursList readJson(JsonReader reader) throws IOException {
+        List<Parcours> parcours = new ArrayList<>();
+        List<String> deletedIds = new ArrayList<>();
+
+        reader.beginArray();
+        while (reader.hasNext()) {
+            String id = null;
+            String name = null;
+            String description = null;
+            Date date = null;
+            long time = 0;
+            float speed = 0;
+            double distance = 0;
+            double elevation = 0;
+            boolean deleted = false;
+
+            reader.beginObject();
+            while (reader.hasNext()) {
+                String key = reader.nextName();
+                if (reader.peek() == JsonToken.NULL) {
+                    reader.nextNull();
+                    continue;
+                }
+                switch (key) {
+                    case "id":
+                        id = reader.nextString();
+                        break;
+                    case "name":
+                        name = reader.nextString();
+                        break;
+                    case "description":
+                        description = reader.nextString();
+                        break;
+                    case "date":
+                        try {
+                            date = Parcours.parseDate(reader.nextString());
+                        } catch (ParseException e) {
+                            throw new IOException("Date du parcours invalide", e);
+                        }
+                        break;
+                    case "time":
+                        time = reader.nextLong();
+                        break;
+                    case "speed":
+                        speed = (float) reader.nextDouble();
+                        break;
+                    case "distance":
+                        distance = reader.nextDouble();
+                        break;
+                    case "elevation":
+                        elevation = reader.nextDouble();
+                        break;
+                    case "deleted":
+                        deleted = reader.nextBoolean();
+                        break;
+                    default:
+                        reader.skipValue();
+                        break;
+                }
+            }
+            reader.endObject();
+
+            if (id == null) {
+                continue;
+            }
+            if (deleted) {
+                deletedIds.add(id);
+            } else if (name != null && date != null) {
+                Parcours item = new Parcours(id, name, description, date);
+                item.setTime(time);
+                item.setSpeed(speed);
+                item.setDistance(distance);
+                item.setElevation(elevation);
+                parcours.add(item);
+            }
+        }
+        reader.endArray();
+        return new ParcoursList(parcours, deletedIds);
+    }
+
+    /**
+     * @return les parcours reçus, sans leur tracé ni leurs points d'intérêt
+     */
+    public List<Parcours> getParcours() {
+        return parcours;
+    }
+
+    /**
+     * @return les identifiants des parcours supprimés
+     */
+    public List<String> getDeletedIds() {
+        return deletedIds;
+    }
+}
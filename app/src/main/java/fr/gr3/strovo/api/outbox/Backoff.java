@@ -0,0 +1,47 @@
+package fr.gr3.strovo.api.outbox;
+
+import java.util.Random;
+
+/**
+ * Délai exponentiel entre deux tentatives d'envoi, avec gigue.
+ * Le délai double à chaque échec jusqu'à un maximum ; la moitié du délai est tirée au hasard
+ * pour que les envois en échec en même temps ne soient pas retentés en même temps.
+ */
+public class Backoff {
+
+    /** Délai après le premier échec, en millisecondes */
+    private final long baseDelay;
+
+    /** Délai maximal, en millisecondes */
+    private final long maxDelay;
+
+    /** Générateur de la gigue */
+    private final Random random;
+
+    /**
+     * Construit un délai exponentiel.
+     * @param baseDelay délai après le premier échec, en millisecondes
+     * @param maxDelay délai maximal, en millisecondes
+     * @param random générateur de la gigue
+     */
+    public Backoff(long baseDelay, long maxDelay, Random random) {
+        if (baseDelay <= 0 || maxDelay < baseDelay) {
+            throw new IllegalArgumentException("Délais invalides : " + baseDelay + ", " + maxDelay);
+        }
+        this.baseDelay = baseDelay;
+        this.maxDelay = maxDelay;
+        this.random = random;
+    }
+
+    /**
+     * Calcule le délai avant la prochaine tentative.
+     * @param failures nombre d'échecs déjà subis, au moins 1
+     * @return un délai entre la moitié et la totalité de baseDelay * 2^(failures - 1), borné à maxDelay
+     */
+    public long nextDelay(int failures) {
+        int shift = Math.min(Math.max(failures - 1, 0), 62);
+        long delay = baseDelay > maxDelay >> shift ? maxDelay : Math.min(baseDelay << shift, maxDelay);
+        long half = delay / 2;
+        return delay - half + (long) (random.nextDouble() * (half + 1));
+    }
+}
@@ -0,0 +1,76 @@
+package fr.gr3.strovo.api.outbox;
+
+/**
+ * Envoi en attente dans la file d'envoi.
+ */
+public class OutboxEntry {
+
+    /** Clé de l'envoi, transmise à l'API comme clé d'idempotence */
+    private final String key;
+
+    /** Compte de l'utilisateur ayant enregistré le parcours, null s'il est inconnu */
+    private final String account;
+
+    /** Date d'ajout de l'envoi, en millisecondes */
+    private final long createdAt;
+
+    /** Nombre d'échecs de l'envoi */
+    private int failures;
+
+    /** Date à partir de laquelle l'envoi peut être tenté, en millisecondes */
+    private long nextAttempt;
+
+    /**
+     * Construit un envoi.
+     * @param key clé de l'envoi
+     * @param account compte de l'utilisateur, null s'il est inconnu
+     * @param createdAt date d'ajout
+     * @param failures nombre d'échecs
+     * @param nextAttempt date de la prochaine tentative
+     */
+    OutboxEntry(String key, String account, long createdAt, int failures, long nextAttempt) {
+        this.key = key;
+        this.account = account;
+        this.createdAt = createdAt;
+        this.failures = failures;
+        this.nextAttempt = nextAttempt;
+    }
+
+    /**
+     * Enregistre l'échec de l'envoi.
+     * @param now date de l'échec
+     * @param delay délai avant la prochaine tentative
+     */
+    public void recordFailure(long now, long delay) {
+        failures++;
+        nextAttempt = now + delay;
+    }
+
+    /**
+     * @param now date courante
+     * @return true si l'envoi peut être tenté
+     */
+    public boolean isDue(long now) {
+        return nextAttempt <= now;
+    }
+
+    public String getKey() {
+        return key;
+    }
+
+    public String getAccount() {
+        return account;
+    }
+
+    public long getCreatedAt() {
+        return createdAt;
+    }
+
+    public int getFailures() {
+        return failures;
+    }
+
+    public long getNextAttempt() {
+        return nextAttempt;
+    }
+}
@@ -0,0 +1,222 @@
+package fr.gr3.strovo.api.outbox;
+
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Stockage persistant des envois en attente, un fichier de corps et un fichier d'état par envoi.
+ * Chaque fichier est écrit dans un fichier temporaire synchronisé sur le disque puis renommé :
+ * un arrêt brutal laisse l'ancienne version ou la nouvelle, jamais un fichier incomplet.
+ * L'état, qui porte le compte de l'utilisateur, est écrit avant le corps : un état sans corps
+ * est un envoi interrompu à l'ajout ou le reste d'un envoi réussi, il est supprimé.
+ * Un corps sans état vient d'une version précédente de la file, son compte est inconnu.
+ * Les méthodes sont synchronisées : un envoi peut être ajouté hors du thread principal.
+ */
+public class OutboxStore {
+
+    /** Extension des fichiers de corps */
+    private static final String BODY_SUFFIX = ".body";
+
+    /** Extension des fichiers d'état */
+    private static final String STATE_SUFFIX = ".state";
+
+    /** Extension des corps des envois refusés par l'API, qui ne sont plus tentés */
+    private static final String REJECTED_SUFFIX = ".rejected";
+
+    /** Extension des fichiers temporaires */
+    private static final String TEMP_SUFFIX = ".tmp";
+
+    /** Ecrit le corps d'un envoi */
+    public interface BodyWriter {
+
+        /**
+         * Ecrit le corps dans le flux, qui est fermé par le stockage.
+         * @param output flux du fichier de corps
+         * @throws IOException en cas d'erreur d'écriture
+         */
+        void write(OutputStream output) throws IOException;
+    }
+
+    /** Répertoire des envois */
+    private final File directory;
+
+    /**
+     * Construit le stockage, en créant son répertoire si besoin.
+     * @param directory répertoire des envois
+     * @throws IOException si le répertoire ne peut pas être créé
+     */
+    public OutboxStore(File directory) throws IOException {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Impossible de créer " + directory);
+        }
+        this.directory = directory;
+    }
+
+    /**
+     * Ajoute un envoi, identifié par une nouvelle clé d'idempotence.
+     * @param account compte de l'utilisateur, null s'il est inconnu
+     * @param writer écrit le corps de l'envoi
+     * @param now date d'ajout, en millisecondes
+     * @return l'envoi ajouté
+     * @throws IOException en cas d'erreur d'écriture
+     */
+    public OutboxEntry add(String account, BodyWriter writer, long now) throws IOException {
+        return add(UUID.randomUUID().toString(), account, writer, now);
+    }
+
+    /**
+     * Ajoute un envoi, ou remplace l'envoi de même clé.
+     * @param key clé d'idempotence de l'envoi
+     * @param account compte de l'utilisateur, null s'il est inconnu
+     * @param writer écrit le corps de l'envoi
+     * @param now date d'ajout, en millisecondes
+     * @return l'envoi ajouté
+     * @throws IOException en cas d'erreur d'écriture
+     */
+    public synchronized OutboxEntry add(String key, String account, BodyWriter writer, long now)
+            throws IOException {
+        OutboxEntry entry = new OutboxEntry(key, account, now, 0, now);
+        // L'état d'abord : un corps n'est jamais listé sans son compte
+        update(entry);
+        writeAtomically(bodyFile(entry), writer);
+        return entry;
+    }
+
+    /**
+     * Ajoute un envoi dont le corps est déjà construit, ou remplace l'envoi de même clé.
+     * @param key clé d'idempotence de l'envoi
+     * @param account compte de l'utilisateur, null s'il est inconnu
+     * @param body corps de l'envoi
+     * @param now date d'ajout, en millisecondes
+     * @return l'envoi ajouté
+     * @throws IOException en cas d'erreur d'écriture
+     */
+    public OutboxEntry add(String key, String account, byte[] body, long now) throws IOException {
+        return add(key, account, output -> output.write(body), now);
+    }
+
+    /**
+     * Enregistre l'état d'un envoi.
+     * @param entry envoi
+     * @throws IOException en cas d'erreur d'écriture
+     */
+    public synchronized void update(OutboxEntry entry) throws IOException {
+        writeAtomically(new File(directory, entry.getKey() + STATE_SUFFIX), output -> {
+            DataOutputStream data = new DataOutputStream(output);
+            data.writeLong(entry.getCreatedAt());
+            data.writeInt(entry.getFailures());
+            data.writeLong(entry.getNextAttempt());
+            data.writeUTF(entry.getAccount() == null ? "" : entry.getAccount());
+            data.flush();
+        });
+    }
+
+    /**
+     * Supprime un envoi, après son succès.
+     * @param entry envoi
+     */
+    public synchronized void remove(OutboxEntry entry) {
+        // Le corps d'abord : un état seul est reconnu comme un envoi terminé
+        bodyFile(entry).delete();
+        new File(directory, entry.getKey() + STATE_SUFFIX).delete();
+    }
+
+    /**
+     * Met de côté un envoi refusé par l'API : son corps est conservé mais il n'est plus listé.
+     * @param entry envoi
+     */
+    public synchronized void reject(OutboxEntry entry) {
+        File rejected = new File(directory, entry.getKey() + REJECTED_SUFFIX);
+        rejected.delete();
+        if (!bodyFile(entry).renameTo(rejected)) {
+            bodyFile(entry).delete();
+        }
+        new File(directory, entry.getKey() + STATE_SUFFIX).delete();
+    }
+
+    /**
+     * @param entry envoi
+     * @return le fichier contenant le corps de l'envoi
+     */
+    public File bodyFile(OutboxEntry entry) {
+        return new File(directory, entry.getKey() + BODY_SUFFIX);
+    }
+
+    /**
+     * Liste les envois en attente, du plus ancien au plus récent, et supprime les fichiers
+     * laissés par un arrêt brutal.
+     * @return les envois en attente
+     */
+    public synchronized List<OutboxEntry> list() {
+        List<OutboxEntry> entries = new ArrayList<>();
+        File[] files = directory.listFiles();
+        if (files == null) {
+            return entries;
+        }
+        for (File file : files) {
+            String name = file.getName();
+            if (name.endsWith(TEMP_SUFFIX)) {
+                file.delete();
+            } else if (name.endsWith(STATE_SUFFIX)) {
+                String key = name.substring(0, name.length() - STATE_SUFFIX.length());
+                if (!new File(directory, key + BODY_SUFFIX).exists()) {
+                    file.delete();
+                }
+            } else if (name.endsWith(BODY_SUFFIX)) {
+                String key = name.substring(0, name.length() - BODY_SUFFIX.length());
+                entries.add(readEntry(key, file.lastModified()));
+            }
+        }
+        Collections.sort(entries, (e1, e2) -> Long.compare(e1.getCreatedAt(), e2.getCreatedAt()));
+        return entries;
+    }
+
+    /**
+     * Lit l'état d'un envoi, ou construit l'état d'un envoi jamais tenté.
+     * @param key clé de l'envoi
+     * @param bodyDate date d'écriture du corps
+     */
+    private OutboxEntry readEntry(String key, long bodyDate) {
+        File state = new File(directory, key + STATE_SUFFIX);
+        try (DataInputStream data = new DataInputStream(new FileInputStream(state))) {
+            long createdAt = data.readLong();
+            int failures = data.readInt();
+            long nextAttempt = data.readLong();
+            // Etat d'une version précédente, sans compte
+            String account = data.available() > 0 ? data.readUTF() : "";
+            return new OutboxEntry(key, account.isEmpty() ? null : account, createdAt, failures, nextAttempt);
+        } catch (IOException e) {
+            return new OutboxEntry(key, null, bodyDate, 0, bodyDate);
+        }
+    }
+
+    /**
+     * Ecrit un fichier temporaire, le synchronise sur le disque puis le renomme.
+     */
+    private static void writeAtomically(File file, BodyWriter writer) throws IOException {
+        File temp = new File(file.getPath() + TEMP_SUFFIX);
+        try (FileOutputStream output = new FileOutputStream(temp)) {
+            OutputStream buffered = new BufferedOutputStream(output);
+            writer.write(buffered);
+            buffered.flush();
+            output.getFD().sync();
+        } catch (IOException e) {
+            temp.delete();
+            throw e;
+        }
+        if (!temp.renameTo(file)) {
+            temp.delete();
+            throw new IOException("Impossible de renommer " + temp);
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package fr.gr3.strovo.api.outbox;
+
+import com.android.volley.AuthFailureError;
+import com.android.volley.DefaultRetryPolicy;
+import com.android.volley.NetworkResponse;
+import com.android.volley.Response;
+import com.android.volley.toolbox.HttpHeaderParser;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Map;
+
+import fr.gr3.strovo.api.GzipRequest;
+
+/**
+ * Requête d'envoi d'un parcours de la file d'envoi.
+ * Le corps est lu depuis son fichier sur le thread réseau et la clé d'idempotence de l'envoi
+ * accompagne chaque tentative, pour que l'API ignore un parcours déjà reçu.
+ */
+public class OutboxUploadRequest extends GzipRequest<Void> {
+
+    /** En-tête de la clé d'idempotence */
+    public static final String IDEMPOTENCY_KEY = "Idempotency-Key";
+
+    /** Délai maximal d'une tentative, en millisecondes */
+    private static final int TIMEOUT = 30000;
+
+    /** Type du contenu envoyé */
+    private static final String CONTENT_TYPE = "application/json; charset=utf-8";
+
+    /** Fichier contenant le corps de l'envoi */
+    private final File body;
+
+    /** Clé d'idempotence de l'envoi */
+    private final String key;
+
+    /**
+     * Construit une requête d'envoi.
+     * @param url adresse de la requête
+     * @param token jeton de connexion de l'utilisateur
+     * @param key clé d'idempotence de l'envoi
+     * @param body fichier contenant le corps de l'envoi
+     * @param listener Response.Listener exécuté en cas de succès
+     * @param errorListener Response.ErrorListener exécuté en cas d'échec
+     */
+    public OutboxUploadRequest(String url, String token, String key, File body,
+                               Response.Listener<Void> listener, Response.ErrorListener errorListener) {
+        super(Method.POST, url, token, listener, errorListener);
+        this.key = key;
+        this.body = body;
+        // Les tentatives sont gérées par la file d'envoi
+        setRetryPolicy(new DefaultRetryPolicy(TIMEOUT, 0, 1));
+        setShouldCache(false);
+    }
+
+    @Override
+    public Map<String, String> getHeaders() throws AuthFailureError {
+        Map<String, String> headers = super.getHeaders();
+        headers.put(IDEMPOTENCY_KEY, key);
+        return headers;
+    }
+
+    @Override
+    public String getBodyContentType() {
+        return CONTENT_TYPE;
+    }
+
+    @Override
+    protected byte[] createBody() throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream((int) body.length());
+        try (InputStream input = new FileInputStream(body)) {
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = input.read(buffer)) != -1) {
+                output.write(buffer, 0, read);
+            }
+        }
+        return output.toByteArray();
+    }
+
+    @Override
+    protected Response<Void> parseResponse(byte[] data, NetworkResponse response) {
+        return Response.success(null, HttpHeaderParser.parseCacheHeaders(response));
+    }
+}
@@ -0,0 +1,307 @@
+package fr.gr3.strovo.api.outbox;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.net.ConnectivityManager;
+import android.net.Network;
+import android.net.NetworkCapabilities;
+import android.net.NetworkInfo;
+import android.net.NetworkRequest;
+import android.os.Handler;
+import android.os.Looper;
+import android.preference.PreferenceManager;
+import android.util.JsonWriter;
+import android.util.Log;
+
+import com.android.volley.VolleyError;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.UUID;
+
+import fr.gr3.strovo.api.StrovoApi;
+import fr.gr3.strovo.api.model.Parcours;
+import fr.gr3.strovo.utils.Keys;
+
+/**
+ * File d'envoi persistante des parcours enregistrés sans connexion.
+ * Chaque parcours est conservé dans un fichier jusqu'à ce que l'API confirme sa réception.
+ * Les envois en échec sont retentés après un délai exponentiel avec gigue, au plus
+ * {@link #MAX_IN_FLIGHT} à la fois, et la file est vidée dès que la connexion revient.
+ * Un envoi refusé par l'API (erreur 4xx) n'est pas retenté : il est mis de côté, ou attend
+ * un nouveau jeton si le jeton de connexion a été refusé.
+ * La clé d'idempotence d'un parcours est dérivée de son nom et de sa date : l'envoi direct
+ * et l'envoi par la file d'un même parcours ne peuvent pas créer deux parcours.
+ * Chaque envoi porte le compte de l'utilisateur qui a enregistré le parcours : seuls les envois
+ * du compte connecté sont tentés, ceux d'un autre compte attendent sa prochaine connexion.
+ * Les méthodes s'exécutent sur le thread principal, sauf {@link #enqueue(Parcours, String)} qui
+ * peut être appelée depuis n'importe quel thread.
+ */
+public class ParcoursOutbox {
+
+    /** Répertoire de la file dans le répertoire de l'application */
+    private static final String DIRECTORY = "outbox";
+
+    /** Ancien fichier des parcours en attente, un parcours JSON par ligne */
+    private static final String LEGACY_FILE = "parcoursTemp";
+
+    /** Nombre maximal d'envois simultanés */
+    private static final int MAX_IN_FLIGHT = 2;
+
+    /** Délai après le premier échec, en millisecondes */
+    private static final long BASE_DELAY = 30000;
+
+    /** Délai maximal entre deux tentatives, en millisecondes */
+    private static final long MAX_DELAY = 60 * 60 * 1000;
+
+    /** Tag de log */
+    private static final String TAG = "ParcoursOutbox";
+
+    /** Singleton */
+    private static ParcoursOutbox instance;
+
+    /** Contexte de l'application */
+    private final Context context;
+
+    /** Stockage des envois */
+    private final OutboxStore store;
+
+    /** Délai entre deux tentatives */
+    private final Backoff backoff = new Backoff(BASE_DELAY, MAX_DELAY, new Random());
+
+    /** Handler du thread principal, planifie la prochaine tentative */
+    private final Handler handler = new Handler(Looper.getMainLooper());
+
+    /** Clés des envois en cours */
+    private final Set<String> inFlight = new HashSet<>();
+
+    /** Tentative planifiée */
+    private final Runnable drainTask = () -> drain(false);
+
+    /** Indique si la file suit l'état de la connexion */
+    private boolean started;
+
+    /** Jeton de connexion refusé par l'API, la file est suspendue tant qu'il est utilisé */
+    private String rejectedToken;
+
+    /**
+     * Constructeur privé.
+     * @param context contexte de l'application
+     */
+    private ParcoursOutbox(Context context) throws IOException {
+        this.context = context;
+        this.store = new OutboxStore(new File(context.getFilesDir(), DIRECTORY));
+    }
+
+    /**
+     * Renvoie la file d'envoi de l'application.
+     * @param context contexte quelconque de l'application
+     * @return la file d'envoi
+     * @throws IOException si le répertoire de la file ne peut pas être créé
+     */
+    public static synchronized ParcoursOutbox getInstance(Context context) throws IOException {
+        if (instance == null) {
+            instance = new ParcoursOutbox(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    /**
+     * Reprend les envois laissés par une exécution précédente de l'application,
+     * et suit l'état de la connexion pour vider la file dès qu'elle revient.
+     */
+    public void start() {
+        if (!started) {
+            started = true;
+            migrateLegacyFile();
+            ConnectivityManager connectivityManager =
+                    (ConnectivityManager) context.getSystemService(Context.CONNECTIVITY_SERVICE);
+            NetworkRequest request = new NetworkRequest.Builder()
+                    .addCapability(NetworkCapabilities.NET_CAPABILITY_INTERNET)
+                    .build();
+            connectivityManager.registerNetworkCallback(request, new ConnectivityManager.NetworkCallback() {
+                @Override
+                public void onAvailable(Network network) {
+                    // Les échecs précédents sont probablement dus à l'absence de connexion
+                    handler.post(() -> drain(true));
+                }
+            });
+        }
+        drain(false);
+    }
+
+    /**
+     * Ajoute un parcours à la file et tente de l'envoyer depuis le thread principal.
+     * Le parcours est écrit sur le disque avant le retour de la méthode.
+     * @param parcours parcours à envoyer
+     * @param account compte de l'utilisateur ayant enregistré le parcours ({@link Keys#ACCOUNT_KEY})
+     * @throws IOException si le parcours ne peut pas être écrit
+     */
+    public void enqueue(Parcours parcours, String account) throws IOException {
+        store.add(keyOf(parcours), account, output -> {
+            JsonWriter writer = new JsonWriter(new OutputStreamWriter(output, StandardCharsets.UTF_8));
+            parcours.writeJson(writer);
+            writer.flush();
+        }, System.currentTimeMillis());
+        handler.post(() -> drain(false));
+    }
+
+    /**
+     * Renvoie la clé d'idempotence d'un parcours, identique pour l'envoi direct, l'envoi
+     * par la file et le parcours repris depuis le journal d'enregistrement.
+     * @param parcours parcours enregistré
+     * @return la clé d'idempotence
+     */
+    public static String keyOf(Parcours parcours) {
+        String identity = parcours.getDate().getTime() + ":" + parcours.getName();
+        return UUID.nameUUIDFromBytes(identity.getBytes(StandardCharsets.UTF_8)).toString();
+    }
+
+    /**
+     * Envoie les parcours dont la prochaine tentative est échue, dans la limite des envois
+     * simultanés, puis planifie la tentative suivante.
+     * @param ignoreBackoff true pour tenter tous les envois, même avant la fin de leur délai
+     */
+    private void drain(boolean ignoreBackoff) {
+        handler.removeCallbacks(drainTask);
+        SharedPreferences preferences = PreferenceManager.getDefaultSharedPreferences(context);
+        String token = preferences.getString(Keys.TOKEN_KEY, null);
+        String account = preferences.getString(Keys.ACCOUNT_KEY, null);
+        if (token == null || token.equals(rejectedToken) || !isNetworkAvailable()) {
+            // La file reprendra à la connexion de l'utilisateur ou au retour du réseau
+            return;
+        }
+
+        long now = System.currentTimeMillis();
+        long nextAttempt = Long.MAX_VALUE;
+        List<OutboxEntry> entries = store.list();
+        for (OutboxEntry entry : entries) {
+            if (inFlight.contains(entry.getKey()) || !isSameAccount(entry.getAccount(), account)) {
+                // Un parcours d'un autre compte ne doit pas être envoyé avec ce jeton
+                continue;
+            }
+            if (ignoreBackoff || entry.isDue(now)) {
+                if (inFlight.size() < MAX_IN_FLIGHT) {
+                    send(entry, token);
+                }
+                // Sinon l'envoi est tenté à la fin d'un envoi en cours
+            } else {
+                nextAttempt = Math.min(nextAttempt, entry.getNextAttempt());
+            }
+        }
+        if (nextAttempt != Long.MAX_VALUE) {
+            handler.postDelayed(drainTask, nextAttempt - now);
+        }
+    }
+
+    /**
+     * Envoie un parcours de la file.
+     */
+    private void send(OutboxEntry entry, String token) {
+        inFlight.add(entry.getKey());
+        OutboxUploadRequest request = new OutboxUploadRequest(StrovoApi.ADD_PARCOURS, token,
+                entry.getKey(), store.bodyFile(entry),
+                response -> onSent(entry),
+                error -> onFailed(entry, token, error));
+        StrovoApi.getInstance().getRequestQueue(context).add(request);
+    }
+
+    /**
+     * Exécuté lorsque l'API a reçu un parcours.
+     */
+    private void onSent(OutboxEntry entry) {
+        inFlight.remove(entry.getKey());
+        store.remove(entry);
+        Log.d(TAG, "Parcours envoyé : " + entry.getKey());
+        drain(false);
+    }
+
+    /**
+     * Exécuté lorsque l'envoi d'un parcours a échoué : l'envoi est retenté plus tard,
+     * sauf s'il a été refusé par l'API.
+     */
+    private void onFailed(OutboxEntry entry, String token, VolleyError error) {
+        inFlight.remove(entry.getKey());
+        int status = error.networkResponse != null ? error.networkResponse.statusCode : 0;
+        if (status == 401 || status == 403) {
+            // Jeton refusé : les envois reprendront avec le jeton de la prochaine connexion
+            Log.w(TAG, "Jeton refusé, file suspendue jusqu'à la prochaine connexion", error);
+            rejectedToken = token;
+            return;
+        }
+        if (status >= 400 && status < 500 && status != 408 && status != 429) {
+            // Requête invalide : une nouvelle tentative échouerait de la même façon
+            Log.e(TAG, "Envoi " + entry.getKey() + " refusé par l'API (" + status + "), mis de côté", error);
+            store.reject(entry);
+            drain(false);
+            return;
+        }
+        long delay = backoff.nextDelay(entry.getFailures() + 1);
+        entry.recordFailure(System.currentTimeMillis(), delay);
+        try {
+            store.update(entry);
+        } catch (IOException e) {
+            Log.e(TAG, "Impossible d'enregistrer l'échec de l'envoi", e);
+        }
+        Log.w(TAG, "Echec de l'envoi " + entry.getKey() + ", nouvelle tentative dans " + delay + " ms", error);
+        drain(false);
+    }
+
+    /**
+     * Déplace dans la file les parcours de l'ancien fichier d'attente.
+     */
+    private void migrateLegacyFile() {
+        // L'ancien fichier appartient à l'utilisateur connecté lors de la mise à jour
+        String account = PreferenceManager.getDefaultSharedPreferences(context)
+                .getString(Keys.ACCOUNT_KEY, null);
+        File legacy = new File(context.getFilesDir(), LEGACY_FILE);
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                context.openFileInput(LEGACY_FILE), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (!line.isEmpty()) {
+                    // Clé dérivée du contenu : une reprise interrompue puis recommencée ne duplique rien
+                    byte[] body = line.getBytes(StandardCharsets.UTF_8);
+                    store.add(UUID.nameUUIDFromBytes(body).toString(), account, body, System.currentTimeMillis());
+                }
+            }
+        } catch (FileNotFoundException e) {
+            return;
+        } catch (IOException e) {
+            // Le fichier est conservé pour une prochaine tentative
+            Log.e(TAG, "Erreur lors de la reprise des parcours en attente", e);
+            return;
+        }
+        legacy.delete();
+    }
+
+    /**
+     * @param entryAccount compte d'un envoi, null s'il est inconnu
+     * @param account compte connecté, null s'il est inconnu
+     * @return true si l'envoi peut être fait avec le jeton du compte connecté ; un envoi au
+     *         compte inconnu, antérieur à l'enregistrement des comptes, ne part qu'avec une
+     *         session elle aussi antérieure
+     */
+    private static boolean isSameAccount(String entryAccount, String account) {
+        return entryAccount == null ? account == null : entryAccount.equals(account);
+    }
+
+    /**
+     * @return true si une connexion réseau est disponible
+     */
+    private boolean isNetworkAvailable() {
+        ConnectivityManager connectivityManager =
+                (ConnectivityManager) context.getSystemService(Context.CONNECTIVITY_SERVICE);
+        NetworkInfo activeNetworkInfo = connectivityManager.getActiveNetworkInfo();
+        return activeNetworkInfo != null && activeNetworkInfo.isConnected();
+    }
+}
@@ -0,0 +1,340 @@
+package fr.gr3.strovo.database;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteOpenHelper;
+
+import org.osmdroid.util.GeoPoint;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+
+import fr.gr3.strovo.api.model.InterestPoint;
+import fr.gr3.strovo.api.model.Parcours;
+import fr.gr3.strovo.utils.parcours.TrackBuffer;
+import fr.gr3.strovo.utils.parcours.TrackFile;
+
+/**
+ * Base de données locale des parcours, alimentée par les réponses de l'API.
+ * La liste et le détail des parcours déjà consultés sont servis depuis le disque,
+ * y compris sans connexion ; les filtres s'appliquent ensuite à la liste chargée en mémoire.
+ * Le tracé d'un parcours est stocké à part, dans un {@link TrackFile} projeté en mémoire
+ * à l'ouverture plutôt qu'une ligne par position.
+ * Les accès se font hors du thread principal, via {@link #execute(Runnable)}.
+ */
+public class ParcoursDatabase extends SQLiteOpenHelper {
+
+    /** Nom du fichier de la base */
+    private static final String DATABASE_NAME = "parcours.db";
+
+    /** Version du schéma */
+    private static final int DATABASE_VERSION = 2;
+
+    /** Table des parcours */
+    private static final String TABLE_PARCOURS = "parcours";
+
+    /** Table des tracés de la version 1, remplacée par les fichiers de tracé */
+    private static final String TABLE_TRACKS = "tracks";
+
+    /** Répertoire des fichiers de tracé dans le répertoire de l'application */
+    private static final String TRACKS_DIRECTORY = "tracks";
+
+    /** Extension des fichiers de tracé */
+    private static final String TRACK_SUFFIX = ".trk";
+
+    /** Table des points d'intérêt */
+    private static final String TABLE_INTEREST_POINTS = "interest_points";
+
+    /** Colonnes de la liste des parcours */
+    private static final String[] SUMMARY_COLUMNS =
+            {"id", "name", "description", "date", "time", "speed", "distance", "elevation"};
+
+    /** Colonnes du détail d'un parcours */
+    private static final String[] DETAIL_COLUMNS =
+            {"name", "description", "date", "time", "speed", "distance", "elevation"};
+
+    /** Singleton */
+    private static ParcoursDatabase instance;
+
+    /** Thread des accès à la base */
+    private static final Executor EXECUTOR = Executors.newSingleThreadExecutor();
+
+    /** Répertoire des fichiers de tracé */
+    private final File trackDirectory;
+
+    /**
+     * Constructeur privé.
+     * @param context contexte de l'application
+     */
+    private ParcoursDatabase(Context context) {
+        super(context, DATABASE_NAME, null, DATABASE_VERSION);
+        trackDirectory = new File(context.getFilesDir(), TRACKS_DIRECTORY);
+    }
+
+    /**
+     * Renvoie la base de données de l'application.
+     * @param context contexte quelconque de l'application
+     * @return la base de données
+     */
+    public static synchronized ParcoursDatabase getInstance(Context context) {
+        if (instance == null) {
+            instance = new ParcoursDatabase(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    /**
+     * Exécute une tâche sur le thread des accès à la base.
+     * @param task tâche à exécuter
+     */
+    public static void execute(Runnable task) {
+        EXECUTOR.execute(task);
+    }
+
+    @Override
+    public void onConfigure(SQLiteDatabase db) {
+        db.setForeignKeyConstraintsEnabled(true);
+    }
+
+    @Override
+    public void onCreate(SQLiteDatabase db) {
+        // detailed indique si les statistiques, le tracé et les points d'intérêt sont connus
+        db.execSQL("CREATE TABLE " + TABLE_PARCOURS + " ("
+                + "id TEXT PRIMARY KEY, "
+                + "name TEXT NOT NULL, "
+                + "description TEXT, "
+                + "date INTEGER NOT NULL, "
+                + "time INTEGER NOT NULL DEFAULT 0, "
+                + "speed REAL NOT NULL DEFAULT 0, "
+                + "distance REAL NOT NULL DEFAULT 0, "
+                + "elevation REAL NOT NULL DEFAULT 0, "
+                + "detailed INTEGER NOT NULL DEFAULT 0)");
+        db.execSQL("CREATE INDEX parcours_date ON " + TABLE_PARCOURS + " (date)");
+
+        db.execSQL("CREATE TABLE " + TABLE_INTEREST_POINTS + " ("
+                + "id INTEGER PRIMARY KEY AUTOINCREMENT, "
+                + "parcours_id TEXT NOT NULL REFERENCES " + TABLE_PARCOURS + " (id) ON DELETE CASCADE, "
+                + "name TEXT, "
+                + "description TEXT, "
+                + "latitude REAL NOT NULL, "
+                + "longitude REAL NOT NULL)");
+        db.execSQL("CREATE INDEX interest_points_parcours ON " + TABLE_INTEREST_POINTS + " (parcours_id)");
+    }
+
+    @Override
+    public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+        // La base est une copie des données de l'API : elle est simplement reconstruite
+        db.execSQL("DROP TABLE IF EXISTS " + TABLE_INTEREST_POINTS);
+        db.execSQL("DROP TABLE IF EXISTS " + TABLE_TRACKS);
+        db.execSQL("DROP TABLE IF EXISTS " + TABLE_PARCOURS);
+        onCreate(db);
+    }
+
+    /**
+     * Enregistre les informations de liste et les statistiques de parcours reçus de l'API,
+     * sans effacer le tracé ni les points d'intérêt déjà connus des parcours.
+     * @param parcoursList parcours à enregistrer
+     */
+    public void saveSummaries(List<Parcours> parcoursList) {
+        SQLiteDatabase db = getWritableDatabase();
+        db.beginTransaction();
+        try {
+            for (Parcours parcours : parcoursList) {
+                ContentValues values = new ContentValues();
+                values.put("name", parcours.getName());
+                values.put("description", parcours.getDescription());
+                values.put("date", parcours.getDate().getTime());
+                values.put("time", parcours.getTime());
+                values.put("speed", parcours.getSpeed());
+                values.put("distance", parcours.getDistance());
+                values.put("elevation", parcours.getElevation());
+                upsert(db, parcours.getId(), values);
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    /**
+     * Enregistre le détail d'un parcours : statistiques, tracé et points d'intérêt.
+     * @param parcours parcours à enregistrer
+     * @throws IOException si le tracé ne peut pas être écrit, le détail n'est alors pas enregistré
+     */
+    public void saveParcours(Parcours parcours) throws IOException {
+        // Le tracé d'abord : un parcours marqué détaillé a toujours son fichier
+        if (!trackDirectory.isDirectory() && !trackDirectory.mkdirs()) {
+            throw new IOException("Impossible de créer " + trackDirectory);
+        }
+        TrackFile.write(getTrackFile(parcours.getId()), parcours.getTrack());
+
+        SQLiteDatabase db = getWritableDatabase();
+        db.beginTransaction();
+        try {
+            ContentValues values = new ContentValues();
+            values.put("name", parcours.getName());
+            values.put("description", parcours.getDescription());
+            values.put("date", parcours.getDate().getTime());
+            values.put("time", parcours.getTime());
+            values.put("speed", parcours.getSpeed());
+            values.put("distance", parcours.getDistance());
+            values.put("elevation", parcours.getElevation());
+            values.put("detailed", 1);
+            upsert(db, parcours.getId(), values);
+
+            db.delete(TABLE_INTEREST_POINTS, "parcours_id = ?", new String[] {parcours.getId()});
+            for (InterestPoint interestPoint : parcours.getInterestPoints()) {
+                ContentValues pointValues = new ContentValues();
+                pointValues.put("parcours_id", parcours.getId());
+                pointValues.put("name", interestPoint.getName());
+                pointValues.put("description", interestPoint.getDescription());
+                pointValues.put("latitude", interestPoint.getPoint().getLatitude());
+                pointValues.put("longitude", interestPoint.getPoint().getLongitude());
+                db.insert(TABLE_INTEREST_POINTS, null, pointValues);
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    /**
+     * Met à jour la ligne d'un parcours, ou l'insère si elle n'existe pas.
+     */
+    private static void upsert(SQLiteDatabase db, String id, ContentValues values) {
+        if (db.update(TABLE_PARCOURS, values, "id = ?", new String[] {id}) == 0) {
+            values.put("id", id);
+            db.insert(TABLE_PARCOURS, null, values);
+        }
+    }
+
+    /**
+     * Modifie la description d'un parcours.
+     * @param id identifiant du parcours
+     * @param description nouvelle description
+     */
+    public void updateDescription(String id, String description) {
+        ContentValues values = new ContentValues();
+        values.put("description", description);
+        getWritableDatabase().update(TABLE_PARCOURS, values, "id = ?", new String[] {id});
+    }
+
+    /**
+     * Supprime des parcours, avec leur tracé et leurs points d'intérêt.
+     * @param ids identifiants des parcours
+     */
+    public void delete(Collection<String> ids) {
+        SQLiteDatabase db = getWritableDatabase();
+        db.beginTransaction();
+        try {
+            for (String id : ids) {
+                db.delete(TABLE_PARCOURS, "id = ?", new String[] {id});
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+        for (String id : ids) {
+            getTrackFile(id).delete();
+        }
+    }
+
+    /**
+     * Supprime tous les parcours et leurs tracés, lorsqu'un autre utilisateur se connecte.
+     */
+    public void clear() {
+        SQLiteDatabase db = getWritableDatabase();
+        db.beginTransaction();
+        try {
+            db.delete(TABLE_INTEREST_POINTS, null, null);
+            db.delete(TABLE_PARCOURS, null, null);
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+        File[] trackFiles = trackDirectory.listFiles();
+        if (trackFiles != null) {
+            for (File trackFile : trackFiles) {
+                trackFile.delete();
+            }
+        }
+    }
+
+    /**
+     * @return tous les parcours, du plus récent au plus ancien, sans tracé ni points d'intérêt
+     */
+    public List<Parcours> getSummaries() {
+        List<Parcours> parcoursList = new ArrayList<>();
+        try (Cursor cursor = getReadableDatabase().query(TABLE_PARCOURS, SUMMARY_COLUMNS,
+                null, null, null, null, "date DESC")) {
+            while (cursor.moveToNext()) {
+                Parcours parcours = new Parcours(cursor.getString(0), cursor.getString(1),
+                        cursor.getString(2), new Date(cursor.getLong(3)));
+                parcours.setTime(cursor.getLong(4));
+                parcours.setSpeed(cursor.getFloat(5));
+                parcours.setDistance(cursor.getDouble(6));
+                parcours.setElevation(cursor.getDouble(7));
+                parcoursList.add(parcours);
+            }
+        }
+        return parcoursList;
+    }
+
+    /**
+     * Renvoie le détail d'un parcours, sans son tracé qui est lu par {@link #openTrack(String)}.
+     * @param id identifiant du parcours
+     * @return le parcours, null si son détail n'a jamais été reçu
+     */
+    public Parcours getParcours(String id) {
+        SQLiteDatabase db = getReadableDatabase();
+        String[] args = {id};
+        Parcours parcours;
+        try (Cursor cursor = db.query(TABLE_PARCOURS, DETAIL_COLUMNS, "id = ? AND detailed = 1",
+                args, null, null, null)) {
+            if (!cursor.moveToFirst()) {
+                return null;
+            }
+            parcours = new Parcours(cursor.getString(0), cursor.getString(1),
+                    new Date(cursor.getLong(2)), cursor.getLong(3), cursor.getFloat(4),
+                    cursor.getDouble(5), cursor.getDouble(6), new ArrayList<>(), new TrackBuffer(0));
+            parcours.setId(id);
+        }
+
+        try (Cursor cursor = db.query(TABLE_INTEREST_POINTS,
+                new String[] {"name", "description", "latitude", "longitude"},
+                "parcours_id = ?", args, null, null, "id")) {
+            while (cursor.moveToNext()) {
+                parcours.getInterestPoints().add(new InterestPoint(
+                        new GeoPoint(cursor.getDouble(2), cursor.getDouble(3)),
+                        cursor.getString(0), cursor.getString(1)));
+            }
+        }
+        return parcours;
+    }
+
+    /**
+     * Ouvre le tracé d'un parcours dont le détail a été enregistré.
+     * @param id identifiant du parcours
+     * @return le tracé, projeté en mémoire
+     * @throws IOException si le fichier du tracé est absent ou invalide
+     */
+    public TrackFile openTrack(String id) throws IOException {
+        return TrackFile.open(getTrackFile(id));
+    }
+
+    /**
+     * @param id identifiant du parcours
+     * @return le fichier du tracé du parcours
+     */
+    private File getTrackFile(String id) {
+        return new File(trackDirectory, id + TRACK_SUFFIX);
+    }
+}
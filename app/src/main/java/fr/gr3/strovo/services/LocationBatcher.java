@@ -0,0 +1,94 @@
+package fr.gr3.strovo.services;
+
+import android.location.Location;
+import android.os.Handler;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Regroupe les positions reçues une à une pour les transmettre par lots.
+ * Utilisé lorsque la plateforme ne sait pas elle-même différer la livraison des positions
+ * (avant Android 12). Un lot est transmis lorsqu'il est plein ou lorsque la plus ancienne
+ * position attend depuis la latence maximale.
+ * Toutes les méthodes doivent être appelées sur le thread du handler.
+ */
+class LocationBatcher {
+
+    /** Ecouteur des lots de positions. */
+    interface BatchListener {
+
+        /**
+         * Exécuté sur le thread du handler lorsqu'un lot est prêt.
+         * @param locations positions du lot, dans l'ordre de réception
+         */
+        void onBatch(List<Location> locations);
+    }
+
+    /** Handler du thread de réception des positions */
+    private final Handler handler;
+
+    /** Latence maximale d'une position avant transmission, en millisecondes */
+    private final long maxLatency;
+
+    /** Nombre maximal de positions par lot */
+    private final int maxSize;
+
+    /** Ecouteur des lots */
+    private final BatchListener listener;
+
+    /** Positions en attente de transmission */
+    private List<Location> pending;
+
+    /** Tâche de transmission du lot après la latence maximale */
+    private final Runnable flushRunnable = this::flush;
+
+    /**
+     * Construit un regroupeur de positions.
+     * @param handler handler du thread de réception des positions
+     * @param maxLatency latence maximale d'une position en millisecondes
+     * @param maxSize nombre maximal de positions par lot
+     * @param listener écouteur des lots
+     */
+    LocationBatcher(Handler handler, long maxLatency, int maxSize, BatchListener listener) {
+        this.handler = handler;
+        this.maxLatency = maxLatency;
+        this.maxSize = maxSize;
+        this.listener = listener;
+        this.pending = new ArrayList<>(maxSize);
+    }
+
+    /**
+     * Ajoute une position au lot en cours.
+     * @param location position reçue
+     */
+    void add(Location location) {
+        if (pending.isEmpty()) {
+            handler.postDelayed(flushRunnable, maxLatency);
+        }
+        pending.add(location);
+        if (pending.size() >= maxSize) {
+            flush();
+        }
+    }
+
+    /**
+     * Transmet immédiatement les positions en attente.
+     */
+    void flush() {
+        handler.removeCallbacks(flushRunnable);
+        if (!pending.isEmpty()) {
+            List<Location> batch = pending;
+            pending = new ArrayList<>(maxSize);
+            listener.onBatch(batch);
+        }
+    }
+
+    /**
+     * Abandonne les positions en attente.
+     */
+    void cancel() {
+        handler.removeCallbacks(flushRunnable);
+        pending.clear();
+    }
+}
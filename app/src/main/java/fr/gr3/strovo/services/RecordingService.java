@@ -0,0 +1,589 @@
+package fr.gr3.strovo.services;
+
+import android.Manifest;
+import android.app.NotificationChannel;
+import android.app.NotificationManager;
+import android.app.Service;
+import android.content.Intent;
+import android.content.pm.PackageManager;
+import android.content.pm.ServiceInfo;
+import android.location.Location;
+import android.location.LocationListener;
+import android.location.LocationManager;
+import android.location.LocationRequest;
+import android.os.Binder;
+import android.os.Build;
+import android.os.Bundle;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.IBinder;
+import android.os.Looper;
+import android.os.Process;
+import android.preference.PreferenceManager;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.core.app.NotificationCompat;
+import androidx.core.app.ServiceCompat;
+
+import org.osmdroid.util.GeoPoint;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+
+import fr.gr3.strovo.R;
+import fr.gr3.strovo.api.model.InterestPoint;
+import fr.gr3.strovo.api.model.Parcours;
+import fr.gr3.strovo.utils.Keys;
+import fr.gr3.strovo.utils.parcours.AdaptiveSamplingPolicy;
+import fr.gr3.strovo.utils.parcours.FixedSamplingPolicy;
+import fr.gr3.strovo.utils.parcours.ParcoursManager;
+import fr.gr3.strovo.utils.parcours.ParcoursStatistics;
+import fr.gr3.strovo.utils.parcours.RecordingJournal;
+import fr.gr3.strovo.utils.parcours.SamplingPolicy;
+import fr.gr3.strovo.utils.parcours.TrackBuffer;
+
+/**
+ * Service de premier plan chargé de l'enregistrement d'un parcours.
+ * Les positions sont reçues sur un thread dédié, ce qui garantit un enregistrement continu
+ * lorsque l'écran est éteint et laisse le thread principal libre pour l'affichage de la carte.
+ * Les activités se lient au service et s'abonnent aux positions via {@link RecordingListener}.
+ * Les positions sont aussi écrites dans un {@link RecordingJournal} pour reprendre le parcours
+ * si le processus est arrêté pendant l'enregistrement.
+ */
+public class RecordingService extends Service {
+
+    /** Fournisseur de localisation de l'utilisateur. */
+    private static final String LOCATION_PROVIDER = LocationManager.GPS_PROVIDER;
+
+    /** Intervalle minimal entre deux positions sans échantillonnage adaptatif, en millisecondes */
+    private static final long MIN_TIME = 3000;
+
+    /** Distance minimale entre deux positions sans échantillonnage adaptatif, en mètres */
+    private static final float MIN_DISTANCE = 2;
+
+    /** Latence maximale de livraison des positions par défaut, en millisecondes */
+    public static final long DEFAULT_MAX_UPDATE_DELAY = 15000;
+
+    /** Nombre maximal de positions par lot lorsque le regroupement est logiciel */
+    private static final int MAX_BATCH_SIZE = 20;
+
+    /** Délai maximal d'attente des positions en attente lors de l'arrêt, en millisecondes */
+    private static final long FLUSH_TIMEOUT = 2000;
+
+    /** Code de la demande de vidage des positions en attente lors de l'arrêt */
+    private static final int FLUSH_REQUEST_CODE = 1;
+
+    /** Identifiant du canal de notification de l'enregistrement */
+    private static final String CHANNEL_ID = "recording";
+
+    /** Identifiant de la notification de l'enregistrement */
+    private static final int NOTIFICATION_ID = 1;
+
+    /**
+     * Ecouteur des événements de l'enregistrement.
+     * Les méthodes sont appelées sur le thread principal.
+     */
+    public interface RecordingListener {
+
+        /**
+         * Exécuté lorsqu'un lot de positions a été transmis au parcours.
+         * @param locations positions reçues, dans l'ordre chronologique
+         */
+        void onLocationsRecorded(List<Location> locations);
+
+        /**
+         * Exécuté lorsque le fournisseur de localisation est activé ou désactivé.
+         * @param enabled true si la localisation est activée, false sinon
+         */
+        void onProviderStateChanged(boolean enabled);
+    }
+
+    /**
+     * Ecouteur de l'arrêt de l'enregistrement.
+     */
+    public interface OnRecordingStoppedListener {
+
+        /**
+         * Exécuté sur le thread principal une fois toutes les positions en attente enregistrées.
+         * @param parcours parcours enregistré
+         */
+        void onRecordingStopped(Parcours parcours);
+    }
+
+    /** Interface de liaison retournée aux activités. */
+    public class RecordingBinder extends Binder {
+
+        /**
+         * @return le service d'enregistrement
+         */
+        public RecordingService getService() {
+            return RecordingService.this;
+        }
+    }
+
+    /** Interface de liaison du service */
+    private final IBinder binder = new RecordingBinder();
+
+    /** Verrou protégeant le gestionnaire du parcours, partagé entre les threads */
+    private final Object lock = new Object();
+
+    /** Gestionnaire du parcours en cours d'enregistrement */
+    private ParcoursManager parcoursManager;
+
+    /**
+     * Verrou protégeant le journal. Il est distinct de {@link #lock} pour que les écritures
+     * et synchronisations du journal ne bloquent pas le thread principal qui lit le parcours.
+     * Il peut être pris avec lock, jamais dans l'ordre inverse.
+     */
+    private final Object journalLock = new Object();
+
+    /** Journal permettant de reprendre le parcours après un arrêt brutal, null si indisponible */
+    private RecordingJournal journal;
+
+    /** Dernière position reçue */
+    private Location lastLocation;
+
+    /** Thread de réception des positions */
+    private HandlerThread locationThread;
+
+    /** Handler du thread de réception des positions */
+    private Handler locationHandler;
+
+    /** Handler du thread principal */
+    private Handler mainHandler;
+
+    /** Regroupement logiciel des positions, utilisé avant Android 12 */
+    private LocationBatcher batcher;
+
+    /** Latence maximale de livraison des positions en millisecondes */
+    private long maxUpdateDelay = DEFAULT_MAX_UPDATE_DELAY;
+
+    /** Politique d'échantillonnage des positions, utilisée sur le thread de réception */
+    private SamplingPolicy samplingPolicy;
+
+    /** Ecouteur de l'arrêt en attente, null si aucun arrêt n'est demandé */
+    private OnRecordingStoppedListener stoppedListener;
+
+    /** Indique si l'arrêt de l'enregistrement a été demandé */
+    private volatile boolean stopping;
+
+    /** Fin de l'arrêt, planifiée si la plateforme ne confirme pas le vidage des positions */
+    private final Runnable finishStopTask = this::finishStop;
+
+    /** Gestionnaire de la localisation de l'utilisateur. */
+    private LocationManager locationManager;
+
+    /** Ecouteur abonné à l'enregistrement, accédé uniquement sur le thread principal */
+    private RecordingListener listener;
+
+    /** Ecouteur de localisation, exécuté sur le thread de réception des positions */
+    private final LocationListener locationListener = new LocationListener() {
+        @Override
+        public void onLocationChanged(Location location) {
+            // Livraison position par position, les positions sont regroupées par le service
+            batcher.add(location);
+        }
+
+        @Override
+        public void onLocationChanged(@NonNull List<Location> locations) {
+            // Livraison par lots de la plateforme (Android 12 et plus)
+            recordBatch(locations);
+        }
+
+        @Override
+        public void onFlushComplete(int requestCode) {
+            if (requestCode == FLUSH_REQUEST_CODE) {
+                finishStop();
+            }
+        }
+
+        @Override
+        public void onProviderDisabled(String provider) {
+            // Mise en pause du parcours lorsque la localisation est désactivée
+            synchronized (lock) {
+                if (parcoursManager.isRunning()) {
+                    parcoursManager.pause();
+                }
+            }
+            notifyProviderState(false);
+        }
+
+        @Override
+        public void onProviderEnabled(String provider) {
+            // Reprise du parcours lorsque la localisation est réactivée
+            synchronized (lock) {
+                if (parcoursManager.isPaused()) {
+                    parcoursManager.resume();
+                }
+            }
+            notifyProviderState(true);
+        }
+
+        @Override
+        public void onStatusChanged(String provider, int status, Bundle extras) {
+            // Déprécié, les changements d'état passent par onProviderEnabled/onProviderDisabled
+        }
+    };
+
+    @Override
+    public void onCreate() {
+        super.onCreate();
+        mainHandler = new Handler(Looper.getMainLooper());
+        locationManager = (LocationManager) getSystemService(LOCATION_SERVICE);
+        locationThread = new HandlerThread("RecordingService", Process.THREAD_PRIORITY_BACKGROUND);
+        locationThread.start();
+        locationHandler = new Handler(locationThread.getLooper());
+    }
+
+    @Override
+    public int onStartCommand(Intent intent, int flags, int startId) {
+        startForegroundWithNotification();
+
+        // Un seul parcours est enregistré à la fois, les démarrages suivants sont ignorés
+        if (parcoursManager == null && intent != null) {
+            maxUpdateDelay = intent.getLongExtra(Keys.MAX_UPDATE_DELAY_KEY, DEFAULT_MAX_UPDATE_DELAY);
+            batcher = new LocationBatcher(locationHandler, maxUpdateDelay, MAX_BATCH_SIZE, this::recordBatch);
+            samplingPolicy = intent.getBooleanExtra(Keys.ADAPTIVE_SAMPLING_KEY, true)
+                    ? new AdaptiveSamplingPolicy()
+                    : new FixedSamplingPolicy(MIN_TIME, MIN_DISTANCE);
+            String name = intent.getStringExtra(Keys.PARCOURS_NAME_KEY);
+            String description = intent.getStringExtra(Keys.PARCOURS_DESCRIPTION_KEY);
+            Date date = new Date();
+            synchronized (lock) {
+                parcoursManager = new ParcoursManager(name, description, date);
+                parcoursManager.start(date.getTime());
+                openJournal(name, description, date);
+            }
+            requestLocationUpdates();
+        }
+        return START_NOT_STICKY;
+    }
+
+    @Nullable
+    @Override
+    public IBinder onBind(Intent intent) {
+        return binder;
+    }
+
+    @Override
+    public void onDestroy() {
+        locationManager.removeUpdates(locationListener);
+        // Le journal est conservé pour reprendre un parcours qui n'a pas été arrêté
+        closeJournal(false);
+        locationThread.quitSafely();
+        mainHandler.removeCallbacksAndMessages(null);
+        super.onDestroy();
+    }
+
+    /**
+     * Abonne un écouteur à l'enregistrement.
+     * @param listener écouteur, null pour se désabonner
+     */
+    public void setListener(RecordingListener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * @return true si un parcours est en cours d'enregistrement, false sinon
+     */
+    public boolean isRecording() {
+        synchronized (lock) {
+            return parcoursManager != null && parcoursManager.isRunning();
+        }
+    }
+
+    /**
+     * @return la dernière position reçue, null si aucune
+     */
+    public Location getLastLocation() {
+        synchronized (lock) {
+            return lastLocation;
+        }
+    }
+
+    /**
+     * Copie les statistiques du parcours en cours.
+     * @return une copie des statistiques
+     */
+    public ParcoursStatistics getStatistics() {
+        synchronized (lock) {
+            return parcoursManager.getStatistics().copy();
+        }
+    }
+
+    /**
+     * Copie les points déjà enregistrés, utilisé pour redessiner le tracé
+     * lorsque l'activité est recréée.
+     * @return les points enregistrés
+     */
+    public List<GeoPoint> getRecordedPoints() {
+        synchronized (lock) {
+            TrackBuffer track = parcoursManager.getRawTrack();
+            List<GeoPoint> points = new ArrayList<>(track.size());
+            for (int i = 0; i < track.size(); i++) {
+                points.add(new GeoPoint(track.getLatitude(i), track.getLongitude(i)));
+            }
+            return points;
+        }
+    }
+
+    /**
+     * Ajoute un point d'intérêt au parcours en cours.
+     * @param interestPoint point d'intérêt
+     */
+    public void addInterestPoint(InterestPoint interestPoint) {
+        synchronized (lock) {
+            parcoursManager.addInterestPoint(interestPoint);
+        }
+        // Ecrit sur le thread de réception des positions, comme les positions
+        locationHandler.post(() -> {
+            synchronized (journalLock) {
+                if (journal != null) {
+                    try {
+                        journal.appendInterestPoint(interestPoint);
+                    } catch (IOException e) {
+                        onJournalError(e);
+                    }
+                }
+            }
+        });
+    }
+
+    /**
+     * Arrête l'enregistrement et le service.
+     * Les positions encore retenues par la plateforme ou par le regroupement logiciel
+     * sont d'abord ajoutées au parcours. Le journal est conservé : l'écouteur le supprime
+     * une fois le parcours sauvegardé.
+     * @param listener écouteur exécuté une fois le parcours terminé, null pour abandonner
+     *                 le parcours et supprimer son journal
+     */
+    public void stopRecording(OnRecordingStoppedListener listener) {
+        if (stopping) {
+            return;
+        }
+        stopping = true;
+        stoppedListener = listener;
+
+        locationHandler.post(() -> {
+            batcher.flush();
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.S
+                    && checkSelfPermission(Manifest.permission.ACCESS_FINE_LOCATION) == PackageManager.PERMISSION_GRANTED) {
+                // Les positions retenues sont livrées avant onFlushComplete
+                locationManager.requestFlush(LOCATION_PROVIDER, locationListener, FLUSH_REQUEST_CODE);
+                locationHandler.postDelayed(finishStopTask, FLUSH_TIMEOUT);
+            } else {
+                finishStop();
+            }
+        });
+    }
+
+    /**
+     * Termine l'arrêt de l'enregistrement, sur le thread de réception des positions.
+     * Le journal est fermé après les écritures déjà planifiées sur ce thread, comme celles
+     * des points d'intérêt ajoutés juste avant l'arrêt.
+     */
+    private void finishStop() {
+        // Seul le délai d'attente est annulé : les écritures du journal en attente doivent s'exécuter
+        locationHandler.removeCallbacks(finishStopTask);
+        locationManager.removeUpdates(locationListener);
+        batcher.cancel();
+
+        Parcours parcours;
+        synchronized (lock) {
+            if (!parcoursManager.isRunning()) {
+                // Arrêt déjà terminé (vidage et délai d'attente concurrents)
+                return;
+            }
+            parcoursManager.stop();
+            parcours = parcoursManager.getParcours();
+            Log.d("RecordingService", String.format(Locale.ROOT,
+                    "Tracé simplifié : %d positions, taux de compression %.1f",
+                    parcours.getTrack().size(), parcoursManager.getCompressionRatio()));
+        }
+
+        locationHandler.post(() -> {
+            // Le journal est conservé jusqu'à ce que l'activité ait envoyé ou mis en file le parcours,
+            // il n'est supprimé que si l'enregistrement est abandonné
+            closeJournal(stoppedListener == null);
+            mainHandler.post(() -> {
+                ServiceCompat.stopForeground(this, ServiceCompat.STOP_FOREGROUND_REMOVE);
+                stopSelf();
+                if (stoppedListener != null) {
+                    stoppedListener.onRecordingStopped(parcours);
+                    stoppedListener = null;
+                }
+            });
+        });
+    }
+
+    /**
+     * Ajoute un lot de positions au parcours et le transmet à l'écouteur.
+     * Exécuté sur le thread de réception des positions.
+     * @param locations positions reçues
+     */
+    private void recordBatch(List<Location> locations) {
+        if (locations.isEmpty()) {
+            return;
+        }
+        boolean recorded;
+        synchronized (lock) {
+            lastLocation = locations.get(locations.size() - 1);
+            recorded = parcoursManager.isRunning() && !parcoursManager.isPaused();
+            if (recorded) {
+                parcoursManager.addLocations(locations);
+            }
+        }
+        if (recorded) {
+            // Hors du verrou du parcours : une synchronisation du journal ne bloque pas l'affichage
+            journalLocations(locations);
+        }
+        mainHandler.post(() -> {
+            if (listener != null) {
+                listener.onLocationsRecorded(locations);
+            }
+        });
+
+        // Adapte la fréquence des positions au déplacement de l'utilisateur
+        boolean samplingChanged = false;
+        for (int i = 0; i < locations.size(); i++) {
+            Location location = locations.get(i);
+            samplingChanged |= samplingPolicy.update(location.getLatitude(), location.getLongitude(),
+                    location.getTime());
+        }
+        if (samplingChanged && !stopping) {
+            locationManager.removeUpdates(locationListener);
+            requestLocationUpdates();
+        }
+    }
+
+    /**
+     * Ouvre le journal du parcours, l'enregistrement se poursuit sans journal en cas d'erreur.
+     */
+    private void openJournal(String name, String description, Date date) {
+        synchronized (journalLock) {
+            try {
+                String account = PreferenceManager.getDefaultSharedPreferences(this)
+                        .getString(Keys.ACCOUNT_KEY, null);
+                journal = RecordingJournal.create(new File(getFilesDir(), RecordingJournal.FILE_NAME),
+                        account, name, description, date);
+            } catch (IOException e) {
+                Log.e("RecordingService", "Impossible de créer le journal du parcours", e);
+            }
+        }
+    }
+
+    /**
+     * Ajoute un lot de positions au journal, sur le thread de réception des positions.
+     * @param locations positions ajoutées au parcours
+     */
+    private void journalLocations(List<Location> locations) {
+        synchronized (journalLock) {
+            if (journal == null) {
+                return;
+            }
+            try {
+                for (int i = 0; i < locations.size(); i++) {
+                    Location location = locations.get(i);
+                    journal.appendFix(location.getLatitude(), location.getLongitude(), location.getAltitude(),
+                            location.getTime(), location.getAccuracy());
+                }
+            } catch (IOException e) {
+                onJournalError(e);
+            }
+        }
+    }
+
+    /**
+     * Abandonne le journal après une erreur d'écriture. Appelé avec le verrou du journal.
+     */
+    private void onJournalError(IOException e) {
+        Log.e("RecordingService", "Erreur d'écriture du journal, le parcours n'est plus journalisé", e);
+        closeJournal(false);
+    }
+
+    /**
+     * Ferme le journal.
+     * @param delete true pour supprimer le fichier du journal
+     */
+    private void closeJournal(boolean delete) {
+        synchronized (journalLock) {
+            if (journal == null) {
+                return;
+            }
+            try {
+                journal.close();
+            } catch (IOException e) {
+                Log.e("RecordingService", "Erreur lors de la fermeture du journal", e);
+            }
+            journal = null;
+            if (delete) {
+                deleteFile(RecordingJournal.FILE_NAME);
+            }
+        }
+    }
+
+    /**
+     * Demande les mises à jour de position sur le thread de réception des positions.
+     * A partir d'Android 12, la plateforme retient les positions jusqu'à la latence maximale
+     * et les livre par lots, ce qui limite les réveils du processeur.
+     */
+    private void requestLocationUpdates() {
+        // Vérification des permissions
+        if (checkSelfPermission(Manifest.permission.ACCESS_FINE_LOCATION) != PackageManager.PERMISSION_GRANTED) {
+            return;
+        }
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.S) {
+            LocationRequest request = new LocationRequest.Builder(samplingPolicy.getInterval())
+                    .setMinUpdateDistanceMeters(samplingPolicy.getMinDistance())
+                    .setMaxUpdateDelayMillis(maxUpdateDelay)
+                    .setQuality(LocationRequest.QUALITY_HIGH_ACCURACY)
+                    .build();
+            locationManager.requestLocationUpdates(LOCATION_PROVIDER, request,
+                    locationHandler::post, locationListener);
+        } else {
+            locationManager.requestLocationUpdates(LOCATION_PROVIDER, samplingPolicy.getInterval(),
+                    samplingPolicy.getMinDistance(), locationListener, locationThread.getLooper());
+        }
+    }
+
+    /**
+     * Transmet un changement d'état du fournisseur de localisation à l'écouteur.
+     * @param enabled true si la localisation est activée, false sinon
+     */
+    private void notifyProviderState(boolean enabled) {
+        mainHandler.post(() -> {
+            if (listener != null) {
+                listener.onProviderStateChanged(enabled);
+            }
+        });
+    }
+
+    /**
+     * Passe le service au premier plan avec la notification d'enregistrement.
+     */
+    private void startForegroundWithNotification() {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
+            NotificationChannel channel = new NotificationChannel(CHANNEL_ID,
+                    getString(R.string.canalEnregistrement), NotificationManager.IMPORTANCE_LOW);
+            getSystemService(NotificationManager.class).createNotificationChannel(channel);
+        }
+
+        NotificationCompat.Builder builder = new NotificationCompat.Builder(this, CHANNEL_ID)
+                .setSmallIcon(R.mipmap.ic_launcher)
+                .setContentTitle(getString(R.string.app_name))
+                .setContentText(getString(R.string.notificationEnregistrement))
+                .setOngoing(true);
+
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
+            startForeground(NOTIFICATION_ID, builder.build(), ServiceInfo.FOREGROUND_SERVICE_TYPE_LOCATION);
+        } else {
+            startForeground(NOTIFICATION_ID, builder.build());
+        }
+    }
+}
@@ -3,7 +3,13 @@ package fr.gr3.strovo.utils;
 public class Keys {
     /** Clé pour le token */
     public static final String TOKEN_KEY = "token";
+    /** Clé pour l'adresse mail de l'utilisateur dont les parcours sont enregistrés sur le téléphone */
+    public static final String ACCOUNT_KEY = "account";
     public static final String PARCOURS_ID_KEY = "parcours_id";
     public static final String PARCOURS_NAME_KEY = "parcours_name";
     public static final String PARCOURS_DESCRIPTION_KEY = "parcours_description";
+    /** Clé pour la latence maximale de livraison des positions, en millisecondes */
+    public static final String MAX_UPDATE_DELAY_KEY = "max_update_delay";
+    /** Clé pour activer l'échantillonnage adaptatif des positions */
+    public static final String ADAPTIVE_SAMPLING_KEY = "adaptive_sampling";
 }
@@ -0,0 +1,178 @@
+package fr.gr3.strovo.utils.parcours;
+
+/**
+ * Politique d'échantillonnage adaptée au déplacement de l'utilisateur.
+ * L'intervalle est resserré dans les virages pris rapidement et relâché lorsque
+ * l'utilisateur est à l'arrêt ou avance en ligne droite, ce qui limite le nombre de points
+ * redondants sans perdre la forme du tracé.
+ * Un resserrement est appliqué immédiatement, un relâchement seulement après
+ * plusieurs positions confirmant le nouveau niveau.
+ */
+public class AdaptiveSamplingPolicy implements SamplingPolicy {
+
+    /** Niveau à l'arrêt */
+    public static final int STATIONARY = 0;
+
+    /** Niveau en ligne droite */
+    public static final int STRAIGHT = 1;
+
+    /** Niveau par défaut */
+    public static final int NORMAL = 2;
+
+    /** Niveau dans un virage pris rapidement */
+    public static final int FAST_TURN = 3;
+
+    /** Intervalle minimal entre deux positions pour chaque niveau, en millisecondes */
+    private static final long[] INTERVALS = {10000, 5000, 3000, 1000};
+
+    /** Distance minimale entre deux positions pour chaque niveau, en mètres */
+    private static final float[] MIN_DISTANCES = {5, 3, 2, 1};
+
+    /** Vitesse en dessous de laquelle l'utilisateur est considéré à l'arrêt, en m/s */
+    private static final double STATIONARY_SPEED = 0.5;
+
+    /** Vitesse au dessus de laquelle un virage est considéré rapide, en m/s */
+    private static final double FAST_SPEED = 2;
+
+    /** Changement de cap en dessous duquel l'utilisateur est en ligne droite, en degrés */
+    private static final double STRAIGHT_HEADING_CHANGE = 5;
+
+    /** Changement de cap au dessus duquel l'utilisateur est dans un virage, en degrés */
+    private static final double TURN_HEADING_CHANGE = 20;
+
+    /** Déplacement minimal pour calculer un cap fiable, en mètres */
+    private static final double MIN_BEARING_DISTANCE = 1;
+
+    /** Nombre de positions consécutives nécessaires pour relâcher l'échantillonnage */
+    private static final int RELAX_CONFIRMATIONS = 3;
+
+    /** Poids de la dernière mesure dans les valeurs lissées */
+    private static final double SMOOTHING = 0.5;
+
+    /** Indique si une position a déjà été reçue */
+    private boolean hasLast;
+
+    /** Latitude de la dernière position */
+    private double lastLatitude;
+
+    /** Longitude de la dernière position */
+    private double lastLongitude;
+
+    /** Date de la dernière position en millisecondes */
+    private long lastTime;
+
+    /** Dernier cap calculé, NaN si inconnu */
+    private double lastBearing = Double.NaN;
+
+    /** Vitesse lissée en m/s */
+    private double speed;
+
+    /** Changement de cap lissé en degrés */
+    private double headingChange;
+
+    /** Niveau appliqué */
+    private int level = NORMAL;
+
+    /** Niveau candidat à un relâchement */
+    private int candidate = NORMAL;
+
+    /** Nombre de positions consécutives confirmant le niveau candidat */
+    private int confirmations;
+
+    @Override
+    public boolean update(double latitude, double longitude, long time) {
+        if (!hasLast) {
+            hasLast = true;
+            lastLatitude = latitude;
+            lastLongitude = longitude;
+            lastTime = time;
+            return false;
+        }
+
+        double distance = GeoUtils.distance(lastLatitude, lastLongitude, latitude, longitude);
+        long duration = time - lastTime;
+        if (duration <= 0) {
+            return false;
+        }
+        speed = SMOOTHING * (distance * 1000 / duration) + (1 - SMOOTHING) * speed;
+
+        // Le cap n'est significatif que si l'utilisateur s'est suffisamment déplacé
+        if (distance >= MIN_BEARING_DISTANCE) {
+            double bearing = GeoUtils.bearing(lastLatitude, lastLongitude, latitude, longitude);
+            if (!Double.isNaN(lastBearing)) {
+                headingChange = SMOOTHING * GeoUtils.bearingDifference(lastBearing, bearing)
+                        + (1 - SMOOTHING) * headingChange;
+            }
+            lastBearing = bearing;
+        }
+
+        lastLatitude = latitude;
+        lastLongitude = longitude;
+        lastTime = time;
+
+        return applyLevel(computeLevel());
+    }
+
+    /**
+     * Détermine le niveau d'échantillonnage correspondant au déplacement actuel.
+     * @return le niveau
+     */
+    private int computeLevel() {
+        if (speed < STATIONARY_SPEED) {
+            return STATIONARY;
+        }
+        if (headingChange >= TURN_HEADING_CHANGE && speed >= FAST_SPEED) {
+            return FAST_TURN;
+        }
+        if (headingChange <= STRAIGHT_HEADING_CHANGE) {
+            return STRAIGHT;
+        }
+        return NORMAL;
+    }
+
+    /**
+     * Applique un niveau d'échantillonnage, immédiatement s'il est plus précis que le niveau
+     * actuel, après confirmation sinon.
+     * @param newLevel niveau calculé
+     * @return true si le niveau appliqué a changé, false sinon
+     */
+    private boolean applyLevel(int newLevel) {
+        if (newLevel == level) {
+            confirmations = 0;
+            return false;
+        }
+        if (newLevel > level) {
+            level = newLevel;
+            confirmations = 0;
+            return true;
+        }
+        if (newLevel != candidate) {
+            candidate = newLevel;
+            confirmations = 0;
+        }
+        confirmations++;
+        if (confirmations >= RELAX_CONFIRMATIONS) {
+            level = candidate;
+            confirmations = 0;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * @return le niveau d'échantillonnage appliqué
+     */
+    public int getLevel() {
+        return level;
+    }
+
+    @Override
+    public long getInterval() {
+        return INTERVALS[level];
+    }
+
+    @Override
+    public float getMinDistance() {
+        return MIN_DISTANCES[level];
+    }
+}
@@ -0,0 +1,38 @@
+package fr.gr3.strovo.utils.parcours;
+
+/**
+ * Politique d'échantillonnage à intervalle et distance constants.
+ */
+public class FixedSamplingPolicy implements SamplingPolicy {
+
+    /** Intervalle minimal entre deux positions en millisecondes */
+    private final long interval;
+
+    /** Distance minimale entre deux positions en mètres */
+    private final float minDistance;
+
+    /**
+     * Construit une politique d'échantillonnage constante.
+     * @param interval intervalle minimal entre deux positions en millisecondes
+     * @param minDistance distance minimale entre deux positions en mètres
+     */
+    public FixedSamplingPolicy(long interval, float minDistance) {
+        this.interval = interval;
+        this.minDistance = minDistance;
+    }
+
+    @Override
+    public boolean update(double latitude, double longitude, long time) {
+        return false;
+    }
+
+    @Override
+    public long getInterval() {
+        return interval;
+    }
+
+    @Override
+    public float getMinDistance() {
+        return minDistance;
+    }
+}
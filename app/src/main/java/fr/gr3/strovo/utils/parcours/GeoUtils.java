@@ -0,0 +1,57 @@
+package fr.gr3.strovo.utils.parcours;
+
+/**
+ * Calculs géographiques utilisés lors de l'enregistrement d'un parcours.
+ * Ces méthodes ne dépendent pas d'Android et peuvent être testées sur la JVM.
+ */
+public class GeoUtils {
+
+    /** Rayon moyen de la Terre en mètres */
+    public static final double EARTH_RADIUS = 6371008.8;
+
+    /**
+     * Calcule la distance entre deux positions (formule de haversine).
+     * @param lat1 latitude de la première position en degrés
+     * @param lon1 longitude de la première position en degrés
+     * @param lat2 latitude de la seconde position en degrés
+     * @param lon2 longitude de la seconde position en degrés
+     * @return la distance en mètres
+     */
+    public static double distance(double lat1, double lon1, double lat2, double lon2) {
+        double dLat = Math.toRadians(lat2 - lat1);
+        double dLon = Math.toRadians(lon2 - lon1);
+        double sinLat = Math.sin(dLat / 2);
+        double sinLon = Math.sin(dLon / 2);
+        double a = sinLat * sinLat
+                + Math.cos(Math.toRadians(lat1)) * Math.cos(Math.toRadians(lat2)) * sinLon * sinLon;
+        return 2 * EARTH_RADIUS * Math.atan2(Math.sqrt(a), Math.sqrt(1 - a));
+    }
+
+    /**
+     * Calcule le cap initial pour aller d'une position à une autre.
+     * @param lat1 latitude de départ en degrés
+     * @param lon1 longitude de départ en degrés
+     * @param lat2 latitude d'arrivée en degrés
+     * @param lon2 longitude d'arrivée en degrés
+     * @return le cap en degrés, entre 0 et 360
+     */
+    public static double bearing(double lat1, double lon1, double lat2, double lon2) {
+        double phi1 = Math.toRadians(lat1);
+        double phi2 = Math.toRadians(lat2);
+        double dLon = Math.toRadians(lon2 - lon1);
+        double y = Math.sin(dLon) * Math.cos(phi2);
+        double x = Math.cos(phi1) * Math.sin(phi2) - Math.sin(phi1) * Math.cos(phi2) * Math.cos(dLon);
+        return (Math.toDegrees(Math.atan2(y, x)) + 360) % 360;
+    }
+
+    /**
+     * Calcule l'écart absolu entre deux caps.
+     * @param bearing1 premier cap en degrés
+     * @param bearing2 second cap en degrés
+     * @return l'écart en degrés, entre 0 et 180
+     */
+    public static double bearingDifference(double bearing1, double bearing2) {
+        double difference = Math.abs(bearing1 - bearing2) % 360;
+        return difference > 180 ? 360 - difference : difference;
+    }
+}
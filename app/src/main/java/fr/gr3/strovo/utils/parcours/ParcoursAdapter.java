@@ -1,90 +1,163 @@
 package fr.gr3.strovo.utils.parcours;
 
-import android.content.Context;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
-import android.widget.ArrayAdapter;
-import android.widget.LinearLayout;
 import android.widget.TextView;
 
+import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.AsyncListDiffer;
+import androidx.recyclerview.widget.DiffUtil;
+import androidx.recyclerview.widget.RecyclerView;
+
 import java.text.SimpleDateFormat;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
 
 import fr.gr3.strovo.R;
 import fr.gr3.strovo.api.model.Parcours;
 
-public class ParcoursAdapter extends ArrayAdapter<Parcours> {
+/**
+ * Adaptateur de la liste des parcours.
+ * Chaque nouvelle liste est comparée à la liste affichée sur un thread d'arrière-plan,
+ * puis seuls les éléments ajoutés, retirés ou modifiés sont mis à jour à l'écran.
+ */
+public class ParcoursAdapter extends RecyclerView.Adapter<ParcoursAdapter.ParcoursViewHolder> {
+
+    /** Ecouteur des clics sur un élément de la liste */
+    public interface OnParcoursClickListener {
+
+        /**
+         * Exécuté lors d'un clic sur un parcours.
+         * @param parcours parcours cliqué
+         */
+        void onClick(Parcours parcours);
+
+        /**
+         * Exécuté lors d'un clic long sur un parcours.
+         * @param parcours parcours cliqué
+         */
+        void onLongClick(Parcours parcours);
+    }
+
+    /** Compare deux parcours de la liste */
+    private static final DiffUtil.ItemCallback<Parcours> DIFF_CALLBACK = new DiffUtil.ItemCallback<Parcours>() {
+        @Override
+        public boolean areItemsTheSame(@NonNull Parcours oldItem, @NonNull Parcours newItem) {
+            return oldItem == newItem
+                    || oldItem.getId() != null && oldItem.getId().equals(newItem.getId());
+        }
+
+        @Override
+        public boolean areContentsTheSame(@NonNull Parcours oldItem, @NonNull Parcours newItem) {
+            // Seuls le nom et la date sont affichés
+            return Objects.equals(oldItem.getName(), newItem.getName())
+                    && oldItem.getDate().equals(newItem.getDate());
+        }
+    };
 
-    /** Identifiant de la vue permettant d'afficher chaque item de la liste */
-    private int identifiantVueItem;
-    /**
-     * Objet utilitaire permettant de désérialiser une vue
-     */
-    private LayoutInflater inflater;
     /** Regroupe les 2 TextView présents sur la vue d'un item de la liste */
-    static class SauvegardeTextView {
-        TextView nomParcours;
-        TextView dateHeure;
+    static class ParcoursViewHolder extends RecyclerView.ViewHolder {
+        final TextView nomParcours;
+        final TextView dateHeure;
+
+        ParcoursViewHolder(View vue) {
+            super(vue);
+            nomParcours = vue.findViewById(R.id.nom_parcours);
+            dateHeure = vue.findViewById(R.id.date_heure);
+        }
     }
+
+    /** Identifiant de la vue permettant d'afficher chaque item de la liste */
+    private final int identifiantVueItem;
+
+    /** Ecouteur des clics sur les éléments */
+    private final OnParcoursClickListener listener;
+
+    /** Calcule les différences entre la liste affichée et la nouvelle liste */
+    private final AsyncListDiffer<Parcours> differ = new AsyncListDiffer<>(this, DIFF_CALLBACK);
+
+    /** Format des dates affichées */
+    private final SimpleDateFormat dateFormat = new SimpleDateFormat("dd/MM/yyyy HH:mm", Locale.getDefault());
+
+    /** Dates déjà formatées, par date en millisecondes */
+    private final Map<Long, String> formattedDates = new HashMap<>();
+
     /**
      * Constructeur de l'adaptateur
-     * @param contexte contexte de création de l'adaptateur
      * @param vueItem identifiant de la vue permettant d'afficher chaque
      * item de la liste
-     * @param lesItems Liste de items à afficher
+     * @param listener écouteur des clics sur les éléments
      */
-    public ParcoursAdapter(Context contexte, int vueItem,
-                                 List<Parcours> lesItems) {
-        super(contexte, vueItem, lesItems);
+    public ParcoursAdapter(int vueItem, OnParcoursClickListener listener) {
         this.identifiantVueItem = vueItem;
-        inflater = (LayoutInflater)getContext()
-                .getSystemService(Context.LAYOUT_INFLATER_SERVICE);
+        this.listener = listener;
+    }
+
+    /**
+     * Remplace la liste affichée. La liste ne doit plus être modifiée ensuite.
+     * @param parcoursList nouvelle liste
+     * @param commitCallback exécuté sur le thread principal une fois la liste affichée, peut être null
+     */
+    public void submitList(List<Parcours> parcoursList, Runnable commitCallback) {
+        differ.submitList(parcoursList, commitCallback);
     }
+
     /**
-     * Permet d'affecter à chaque item de la liste, les valeurs qui
-     * doivent être affichées
-     * @param position position de l'élément qui doit être affiché
-     * (position au sein de la liste associée à l'adaptateur)
-     * @param uneVue contient soit la valeur null, soit une ancienne vue
-     * pour l'élément à afficher. La méthode pourra alors se
-     * contenter de réactualiser cette vue
-     * @param parent vue parente à laquelle la vue à renvoyer peut être rattachée
-     * @return une vue qui affichera les informations adéquates dans l'item de la liste
-     * situé à la position p
+     * @return la liste affichée, non modifiable
      */
+    public List<Parcours> getCurrentList() {
+        return differ.getCurrentList();
+    }
+
     @Override
-    public View getView(int position, View uneVue, ViewGroup parent) {
-        // on récupère la valeur de l'item à afficher, via sa position
-        Parcours parcours = getItem(position);
-        LinearLayout vueItemListe; // layout décrivant un item de la liste
-        SauvegardeTextView sauve; // regroupe les 2 TextView présent sur la vue
-        // destinée à afficher l'item
-        if (uneVue == null) {
-            /*
-             * la vue décrivant chaque item de la liste n'est pas encore créée
-             * Il faut désérialiser le layout correspondant à cette vue.
-             */
-            uneVue = inflater.inflate(identifiantVueItem, parent, false);
-            // on récupère un accès sur les 2 TextView qu'il faudra renseigner
-            sauve = new SauvegardeTextView();
-            sauve.nomParcours = uneVue.findViewById(R.id.nom_parcours);
-            sauve.dateHeure = uneVue.findViewById(R.id.date_heure);
-            // on stocke les identifiants de 2 TextView dans la vue elle-même
-            uneVue.setTag(sauve);
-        } else {
-            // on récupère les identifiants des 2 TextView stockés dans la vue
-            sauve = (SauvegardeTextView) uneVue.getTag();
-        }
-        // on place dans les 2 TextView les valeurs de l'item à afficher
-        sauve.nomParcours.setText(parcours.getName());
+    public int getItemCount() {
+        return differ.getCurrentList().size();
+    }
 
+    @NonNull
+    @Override
+    public ParcoursViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
+        View vue = LayoutInflater.from(parent.getContext()).inflate(identifiantVueItem, parent, false);
+        ParcoursViewHolder holder = new ParcoursViewHolder(vue);
+        vue.setOnClickListener(v -> {
+            int position = holder.getBindingAdapterPosition();
+            if (position != RecyclerView.NO_POSITION) {
+                listener.onClick(differ.getCurrentList().get(position));
+            }
+        });
+        vue.setOnLongClickListener(v -> {
+            int position = holder.getBindingAdapterPosition();
+            if (position == RecyclerView.NO_POSITION) {
+                return false;
+            }
+            listener.onLongClick(differ.getCurrentList().get(position));
+            return true;
+        });
+        return holder;
+    }
 
-        SimpleDateFormat sdf = new SimpleDateFormat("dd/MM/yyyy HH:mm", Locale.getDefault());
-        String formattedDate = sdf.format(parcours.getDate());
-        sauve.dateHeure.setText(formattedDate);
-        return uneVue;
+    @Override
+    public void onBindViewHolder(@NonNull ParcoursViewHolder holder, int position) {
+        Parcours parcours = differ.getCurrentList().get(position);
+        holder.nomParcours.setText(parcours.getName());
+        holder.dateHeure.setText(formatDate(parcours.getDate().getTime()));
     }
-}
 
+    /**
+     * Formate une date, une seule fois par date affichée.
+     * @param time date en millisecondes
+     * @return la date formatée
+     */
+    private String formatDate(long time) {
+        String formatted = formattedDates.get(time);
+        if (formatted == null) {
+            formatted = dateFormat.format(time);
+            formattedDates.put(time, formatted);
+        }
+        return formatted;
+    }
+}
@@ -0,0 +1,221 @@
+package fr.gr3.strovo.utils.parcours;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import fr.gr3.strovo.api.model.Parcours;
+
+/**
+ * Liste locale des parcours de l'utilisateur, triés du plus récent au plus ancien.
+ * Les pages et les modifications reçues de l'API sont fusionnées par identifiant :
+ * une page reçue deux fois ou décalée par l'ajout d'un parcours ne crée pas de doublon.
+ * Un index de recherche par nom et les index des requêtes sont tenus à jour à chaque modification.
+ */
+public class ParcoursCollection {
+
+    /** Nombre de parcours demandés par page */
+    public static final int PAGE_SIZE = 30;
+
+    /** Tri du plus récent au plus ancien */
+    static final Comparator<Parcours> NEWEST_FIRST =
+            (p1, p2) -> Long.compare(p2.getDate().getTime(), p1.getDate().getTime());
+
+    /** Parcours triés */
+    private final List<Parcours> parcours = new ArrayList<>();
+
+    /** Parcours par identifiant */
+    private final Map<String, Parcours> parcoursById = new HashMap<>();
+
+    /** Index de recherche par nom */
+    private final ParcoursSearchIndex searchIndex = new ParcoursSearchIndex();
+
+    /** Index des requêtes */
+    private final ParcoursQueryEngine queryEngine = new ParcoursQueryEngine();
+
+    /** Identifiants des parcours reçus dans une page de l'API, hors base de données locale */
+    private final Set<String> fetchedIds = new HashSet<>();
+
+    /** Numéro de la prochaine page à charger */
+    private int nextPage;
+
+    /** Indique si toutes les pages ont été chargées */
+    private boolean complete;
+
+    /** Date de la dernière synchronisation avec l'API, 0 si la liste n'est pas synchronisée */
+    private long lastSync;
+
+    /**
+     * Fusionne une page de parcours reçue de l'API.
+     * Les pages sont triées du plus récent au plus ancien : les parcours connus situés dans
+     * l'intervalle de dates de la page mais absents de celle-ci ont été supprimés.
+     * La première page couvre aussi tous les parcours plus récents, la dernière tous les plus anciens.
+     * @param page numéro de la page, à partir de 0
+     * @param items parcours de la page
+     * @return les identifiants des parcours retirés de la liste
+     */
+    public List<String> mergePage(int page, List<Parcours> items) {
+        boolean last = items.size() < PAGE_SIZE;
+        long newest = page == 0 ? Long.MAX_VALUE : Long.MIN_VALUE;
+        long oldest = last ? Long.MIN_VALUE : Long.MAX_VALUE;
+        Set<String> ids = new HashSet<>();
+        int fetched = 0;
+        for (Parcours item : items) {
+            if (fetchedIds.contains(item.getId())) {
+                fetched++;
+            }
+            long date = item.getDate().getTime();
+            newest = Math.max(newest, date);
+            oldest = Math.min(oldest, date);
+            ids.add(item.getId());
+        }
+
+        List<String> removed = new ArrayList<>();
+        Iterator<Parcours> iterator = parcours.iterator();
+        while (iterator.hasNext()) {
+            Parcours known = iterator.next();
+            long date = known.getDate().getTime();
+            if (date >= oldest && date <= newest && !ids.contains(known.getId())) {
+                iterator.remove();
+                parcoursById.remove(known.getId());
+                searchIndex.remove(known.getId());
+                fetchedIds.remove(known.getId());
+                removed.add(known.getId());
+            }
+        }
+
+        put(items);
+        fetchedIds.addAll(ids);
+        if (page >= nextPage) {
+            nextPage = page + 1;
+        }
+        // Une page déjà reçue en entier indique aussi une API qui ignore la pagination.
+        // Les parcours chargés depuis la base ne comptent pas : ils ne prouvent pas que la page a été reçue
+        complete = last || page > 0 && fetched == items.size();
+        return removed;
+    }
+
+    /**
+     * Applique les modifications reçues de l'API depuis la dernière synchronisation.
+     * @param changed parcours ajoutés ou modifiés
+     * @param deletedIds identifiants des parcours supprimés
+     */
+    public void applyChanges(List<Parcours> changed, Collection<String> deletedIds) {
+        for (String id : deletedIds) {
+            removeParcours(id);
+        }
+        put(changed);
+    }
+
+    /**
+     * Retire un parcours de la liste.
+     * @param id identifiant du parcours
+     * @return true si le parcours était dans la liste
+     */
+    public boolean remove(String id) {
+        boolean removed = removeParcours(id);
+        if (removed) {
+            queryEngine.update(parcours);
+        }
+        return removed;
+    }
+
+    /**
+     * Retire un parcours de la liste et de l'index de recherche, sans mettre à jour les index des requêtes.
+     * @return true si le parcours était dans la liste
+     */
+    private boolean removeParcours(String id) {
+        Parcours removed = parcoursById.remove(id);
+        if (removed == null) {
+            return false;
+        }
+        parcours.remove(removed);
+        searchIndex.remove(id);
+        fetchedIds.remove(id);
+        return true;
+    }
+
+    /**
+     * Ajoute ou remplace des parcours puis transmet la liste aux index des requêtes.
+     * Seuls les parcours reçus sont triés, puis fusionnés avec la liste déjà triée.
+     */
+    private void put(List<Parcours> items) {
+        List<Parcours> added = new ArrayList<>(items.size());
+        Set<Parcours> replaced = new HashSet<>();
+        for (Parcours item : items) {
+            Parcours previous = parcoursById.put(item.getId(), item);
+            if (previous == item) {
+                continue;
+            }
+            if (previous != null) {
+                replaced.add(previous);
+            }
+            added.add(item);
+            searchIndex.add(item);
+        }
+        if (!replaced.isEmpty()) {
+            parcours.removeAll(replaced);
+        }
+        // Un parcours reçu deux fois dans le même lot n'est gardé qu'une fois
+        added.removeAll(replaced);
+        Collections.sort(added, NEWEST_FIRST);
+
+        List<Parcours> merged = new ArrayList<>(parcours.size() + added.size());
+        int i = 0;
+        int j = 0;
+        while (i < parcours.size() || j < added.size()) {
+            if (j == added.size()
+                    || i < parcours.size() && NEWEST_FIRST.compare(parcours.get(i), added.get(j)) <= 0) {
+                merged.add(parcours.get(i++));
+            } else {
+                merged.add(added.get(j++));
+            }
+        }
+        parcours.clear();
+        parcours.addAll(merged);
+        queryEngine.update(parcours);
+    }
+
+    /**
+     * Exécute une requête sur les parcours. Peut être appelée hors du thread principal.
+     * @param query requête
+     * @return les parcours respectant tous les critères, du plus récent au plus ancien
+     */
+    public List<Parcours> query(ParcoursQuery query) {
+        return queryEngine.execute(query, searchIndex);
+    }
+
+    /**
+     * @return les parcours, du plus récent au plus ancien
+     */
+    public List<Parcours> getParcours() {
+        return Collections.unmodifiableList(parcours);
+    }
+
+    public int size() {
+        return parcours.size();
+    }
+
+    public int getNextPage() {
+        return nextPage;
+    }
+
+    public boolean isComplete() {
+        return complete;
+    }
+
+    public long getLastSync() {
+        return lastSync;
+    }
+
+    public void setLastSync(long lastSync) {
+        this.lastSync = lastSync;
+    }
+}
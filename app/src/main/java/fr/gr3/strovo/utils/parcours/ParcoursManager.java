@@ -2,7 +2,6 @@ package fr.gr3.strovo.utils.parcours;
 
 import android.location.Location;
 
-import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
 
@@ -23,8 +22,17 @@ public class ParcoursManager {
     /** Parcours de l'utilisateur */
    private Parcours parcours;
 
-    /** Liste de toutes les positions enregistrées pour le parcours */
-    private List<Location> locations;
+    /** Filtre lissant les positions reçues avant leur enregistrement */
+    private final PositionKalmanFilter filter;
+
+    /** Toutes les positions enregistrées, utilisées pour les statistiques */
+    private final TrackBuffer rawTrack;
+
+    /** Simplification du tracé alimentant les coordonnées du parcours */
+    private final TrackSimplifier simplifier;
+
+    /** Statistiques du parcours mises à jour à chaque position enregistrée */
+    private final ParcoursStatistics statistics;
 
     /** Début du chrnono */
     private long startTime;
@@ -36,9 +44,20 @@ public class ParcoursManager {
      * Construit un parcours.
      */
     public ParcoursManager(String name, String description, Date date) {
+        this(name, description, date, TrackSimplifier.DEFAULT_TOLERANCE);
+    }
+
+    /**
+     * Construit un parcours.
+     * @param tolerance tolérance de simplification du tracé en mètres
+     */
+    public ParcoursManager(String name, String description, Date date, double tolerance) {
         this.running = false;
         this.parcours = new Parcours(name, description, date);
-        this.locations = new ArrayList<>();
+        this.filter = new PositionKalmanFilter();
+        this.rawTrack = new TrackBuffer();
+        this.simplifier = new TrackSimplifier(parcours.getTrack(), tolerance, TrackSimplifier.DEFAULT_WINDOW);
+        this.statistics = new ParcoursStatistics();
     }
 
     /**
@@ -56,13 +75,55 @@ public class ParcoursManager {
      * @param location nouvelle position
      */
     public void addLocation(Location location) {
+        addFix(location.getLatitude(), location.getLongitude(), location.getAltitude(),
+                location.getTime(), location.getAccuracy());
+    }
+
+    /**
+     * Ajoute un lot de positions au parcours, dans l'ordre de réception.
+     * @param locations positions à ajouter
+     * @see #addLocation(Location)
+     */
+    public void addLocations(List<Location> locations) {
+        for (int i = 0; i < locations.size(); i++) {
+            addLocation(locations.get(i));
+        }
+    }
+
+    /**
+     * Ajoute une nouvelle position au parcours à partir de ses composantes.
+     * La position est d'abord lissée par le filtre de Kalman, pondéré par sa précision.
+     * @param latitude latitude en degrés
+     * @param longitude longitude en degrés
+     * @param altitude altitude en mètres
+     * @param time date de la position en millisecondes
+     * @param accuracy précision de la position en mètres
+     * @see #addLocation(Location)
+     */
+    public void addFix(double latitude, double longitude, double altitude, long time, float accuracy) {
+        filter.update(latitude, longitude, time, accuracy);
+        latitude = filter.getLatitude();
+        longitude = filter.getLongitude();
+
         // Si c'est la première position du parcours ou si l'utilisateur s'est déplacé d'au moins 2 mètres
-        if (locations.size() == 0 || location.distanceTo(locations.get(locations.size() - 1)) >= 2) {
-            locations.add(location);
-            parcours.getCoordinates().add(new double[] {location.getLatitude(), location.getLongitude()});
+        if (rawTrack.isEmpty() || distanceFromLast(latitude, longitude) >= 2) {
+            rawTrack.add(latitude, longitude, altitude, time, accuracy);
+            statistics.add(latitude, longitude, altitude, time);
+            simplifier.add(latitude, longitude, altitude, time, accuracy);
         }
     }
 
+    /**
+     * Calcule la distance entre une position et la dernière position enregistrée.
+     * @param latitude latitude de la position
+     * @param longitude longitude de la position
+     * @return la distance en mètres
+     */
+    private double distanceFromLast(double latitude, double longitude) {
+        int last = rawTrack.size() - 1;
+        return GeoUtils.distance(rawTrack.getLatitude(last), rawTrack.getLongitude(last), latitude, longitude);
+    }
+
     /**
      * Ajoute un point d'intérêt au parcours
      * @param interestPoint point d'intérêt
@@ -72,26 +133,43 @@ public class ParcoursManager {
     }
 
     public void start() {
+        start(new Date().getTime());
+    }
+
+    /**
+     * Démarre le parcours à une date donnée, utilisé lors de la reprise d'un journal.
+     * @param startTime date de début en millisecondes
+     */
+    public void start(long startTime) {
         running = true;
-        startTime = new Date().getTime();
+        this.startTime = startTime;
     }
 
     public void stop() {
+        stop(new Date().getTime());
+    }
+
+    /**
+     * Arrête le parcours à une date donnée, utilisé lors de la reprise d'un journal.
+     * @param endTime date de fin en millisecondes
+     */
+    public void stop(long endTime) {
         running = false;
-        endTime = new Date().getTime();
+        this.endTime = endTime;
+        simplifier.flush();
         calculateStatistics();
     }
 
     /**
-     * Calcule les statistiques du parcours effectué par l'utilisateur.
+     * Reporte sur le parcours les statistiques calculées au fil de l'enregistrement.
      */
     private void calculateStatistics() {
         // Si il y a plus d'une position enregistrée
-        if (locations.size() > 1) {
+        if (rawTrack.size() > 1) {
             long time = endTime - startTime;
-            double distance = calculateDistance();
+            double distance = statistics.getDistance();
             float speed = calculateSpeed(time, distance);
-            double elevation = calculateElevation();
+            double elevation = statistics.getElevationGain();
 
             parcours.setTime(time);
             parcours.setDistance(distance);
@@ -100,20 +178,6 @@ public class ParcoursManager {
         }
     }
 
-    /**
-     * Calcule la distance parcourue.
-     * @return le distance en mètres
-     */
-    private float calculateDistance() {
-        float distance = 0;
-        for (int i = 0; i < locations.size()-1; i++) {
-            Location actual = locations.get(i);
-            Location next = locations.get(i+1);
-            distance += actual.distanceTo(next);
-        }
-        return distance;
-    }
-
     /**
      * Calcule la vitesst moyenne du parcours.
      * @param time temps
@@ -128,13 +192,24 @@ public class ParcoursManager {
 
 
     /**
-     * Calcule le dénivelé du parcours.
-     * @return le dénivelé en mètres
+     * @return les statistiques du parcours en cours d'enregistrement
+     */
+    public ParcoursStatistics getStatistics() {
+        return statistics;
+    }
+
+    /**
+     * @return toutes les positions enregistrées, avant simplification
+     */
+    public TrackBuffer getRawTrack() {
+        return rawTrack;
+    }
+
+    /**
+     * @return le taux de compression obtenu par la simplification du tracé
      */
-    private double calculateElevation() {
-        Location firstLocation = locations.get(0);
-        Location lastLocation = locations.get(locations.size()-1);
-        return lastLocation.getAltitude() - firstLocation.getAltitude();
+    public double getCompressionRatio() {
+        return simplifier.getCompressionRatio();
     }
 
     public Parcours getParcours() {
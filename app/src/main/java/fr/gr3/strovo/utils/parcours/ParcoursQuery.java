@@ -0,0 +1,175 @@
+package fr.gr3.strovo.utils.parcours;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+
+import fr.gr3.strovo.api.model.Parcours;
+
+/**
+ * Requête sur les parcours : texte recherché dans le nom et intervalles de valeurs des
+ * statistiques, tous les critères devant être respectés.
+ * Une requête n'est pas modifiable, chaque méthode with renvoie une nouvelle requête.
+ * Elle est exécutée par {@link ParcoursQueryEngine}.
+ */
+public class ParcoursQuery {
+
+    /** Champs d'un parcours sur lesquels un intervalle peut être demandé */
+    public enum Field {
+
+        /** Date d'enregistrement, en millisecondes */
+        DATE,
+
+        /** Distance, en mètres */
+        DISTANCE,
+
+        /** Durée, en millisecondes */
+        DURATION,
+
+        /** Vitesse, en km/h */
+        SPEED,
+
+        /** Dénivelé, en mètres */
+        ELEVATION;
+
+        /**
+         * @return la valeur du champ pour un parcours
+         */
+        public double get(Parcours parcours) {
+            switch (this) {
+                case DATE:
+                    return parcours.getDate().getTime();
+                case DISTANCE:
+                    return parcours.getDistance();
+                case DURATION:
+                    return parcours.getTime();
+                case SPEED:
+                    return parcours.getSpeed();
+                default:
+                    return parcours.getElevation();
+            }
+        }
+    }
+
+    /** Intervalle de valeurs d'un champ, bornes comprises */
+    public static class Range {
+
+        /** Champ filtré */
+        private final Field field;
+
+        /** Valeur minimale, Double.NEGATIVE_INFINITY pour ne pas borner */
+        private final double min;
+
+        /** Valeur maximale, Double.POSITIVE_INFINITY pour ne pas borner */
+        private final double max;
+
+        /**
+         * Construit un intervalle.
+         */
+        Range(Field field, double min, double max) {
+            this.field = field;
+            this.min = min;
+            this.max = max;
+        }
+
+        public Field getField() {
+            return field;
+        }
+
+        public double getMin() {
+            return min;
+        }
+
+        public double getMax() {
+            return max;
+        }
+
+        /**
+         * @return true si la valeur du champ du parcours est dans l'intervalle
+         */
+        public boolean matches(Parcours parcours) {
+            double value = field.get(parcours);
+            return value >= min && value <= max;
+        }
+    }
+
+    /** Texte recherché dans le nom, vide pour ne pas filtrer par nom */
+    private final String name;
+
+    /** Intervalles demandés, au plus un par champ */
+    private final Map<Field, Range> ranges;
+
+    /**
+     * Construit une requête sans critère, qui renvoie tous les parcours.
+     */
+    public ParcoursQuery() {
+        this("", new EnumMap<>(Field.class));
+    }
+
+    /**
+     * Construit une requête.
+     */
+    private ParcoursQuery(String name, Map<Field, Range> ranges) {
+        this.name = name;
+        this.ranges = ranges;
+    }
+
+    /**
+     * @param name texte recherché dans le nom, vide pour ne pas filtrer par nom
+     * @return une copie de la requête avec ce texte
+     */
+    public ParcoursQuery withName(String name) {
+        return new ParcoursQuery(name == null ? "" : name, ranges);
+    }
+
+    /**
+     * @param field champ filtré
+     * @param min valeur minimale, Double.NEGATIVE_INFINITY pour ne pas borner
+     * @param max valeur maximale, Double.POSITIVE_INFINITY pour ne pas borner
+     * @return une copie de la requête avec cet intervalle, qui remplace celui du même champ ;
+     *         sans intervalle sur ce champ si aucune borne n'est donnée
+     */
+    public ParcoursQuery withRange(Field field, double min, double max) {
+        Map<Field, Range> newRanges = new EnumMap<>(Field.class);
+        newRanges.putAll(ranges);
+        if (min == Double.NEGATIVE_INFINITY && max == Double.POSITIVE_INFINITY) {
+            newRanges.remove(field);
+        } else {
+            newRanges.put(field, new Range(field, min, max));
+        }
+        return new ParcoursQuery(name, newRanges);
+    }
+
+    /**
+     * @param from date minimale en millisecondes, Long.MIN_VALUE pour ne pas borner
+     * @param to date maximale en millisecondes, Long.MAX_VALUE pour ne pas borner
+     * @return une copie de la requête avec cet intervalle de dates
+     */
+    public ParcoursQuery withDate(long from, long to) {
+        return withRange(Field.DATE,
+                from == Long.MIN_VALUE ? Double.NEGATIVE_INFINITY : from,
+                to == Long.MAX_VALUE ? Double.POSITIVE_INFINITY : to);
+    }
+
+    /**
+     * @return le texte recherché dans le nom, vide pour ne pas filtrer par nom
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return les intervalles demandés
+     */
+    public Collection<Range> getRanges() {
+        return Collections.unmodifiableCollection(ranges.values());
+    }
+
+    /**
+     * @return true si la requête ne comporte aucun intervalle, le nom n'étant pas pris en compte
+     */
+    public boolean hasNoRange() {
+        return ranges.isEmpty();
+    }
+}
@@ -0,0 +1,368 @@
+package fr.gr3.strovo.utils.parcours;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import fr.gr3.strovo.api.model.Parcours;
+
+/**
+ * Exécute les requêtes {@link ParcoursQuery} sur les parcours chargés.
+ * Les parcours sont numérotés par leur position, du plus récent au plus ancien : un intervalle
+ * de dates est donc une tranche contiguë, trouvée par deux recherches dichotomiques. Chaque autre
+ * champ a un index trié de ses valeurs, où un intervalle est aussi trouvé par dichotomie.
+ * Le nombre de parcours retenus par chaque critère est ainsi connu avant de les parcourir :
+ * les critères sont appliqués du plus sélectif au moins sélectif, en intersectant des ensembles
+ * de bits, ou en vérifiant directement les parcours restants lorsqu'ils sont peu nombreux.
+ * Le thread principal ne fait que transmettre la nouvelle liste des parcours : les index sont
+ * reconstruits par la requête suivante, hors du thread principal, une seule fois quel que soit
+ * le nombre de modifications reçues entre temps. Ils sont remplacés sans être modifiés.
+ */
+public class ParcoursQueryEngine {
+
+    /** Index trié des valeurs d'un champ */
+    private static class FieldIndex {
+
+        /** Valeurs du champ, croissantes */
+        final double[] values;
+
+        /** Position du parcours de chaque valeur */
+        final int[] positions;
+
+        FieldIndex(double[] values, int[] positions) {
+            this.values = values;
+            this.positions = positions;
+        }
+    }
+
+    /** Parcours et index à un instant donné */
+    private static class Snapshot {
+
+        /** Parcours, du plus récent au plus ancien */
+        final Parcours[] parcours;
+
+        /** Dates des parcours en millisecondes, dans le même ordre */
+        final long[] dates;
+
+        /** Position de chaque parcours, par identifiant */
+        final Map<String, Integer> positions;
+
+        /** Index des champs autres que la date, par rang du champ */
+        final FieldIndex[] fields;
+
+        Snapshot(Parcours[] parcours, long[] dates, Map<String, Integer> positions, FieldIndex[] fields) {
+            this.parcours = parcours;
+            this.dates = dates;
+            this.positions = positions;
+            this.fields = fields;
+        }
+    }
+
+    /** Parcours retenus par un critère */
+    private abstract static class Selection {
+
+        /** Nombre de parcours retenus */
+        final int size;
+
+        Selection(int size) {
+            this.size = size;
+        }
+
+        /** Ajoute les positions des parcours retenus */
+        abstract void addTo(BitSet bits);
+
+        /** @return true si le parcours à cette position est retenu */
+        abstract boolean contains(int position);
+    }
+
+    /** Verrou de la reconstruction des index, pris hors du thread principal */
+    private final Object buildLock = new Object();
+
+    /** Index courant, protégé par buildLock */
+    private Snapshot snapshot =
+            new Snapshot(new Parcours[0], new long[0], new HashMap<>(), new FieldIndex[ParcoursQuery.Field.values().length]);
+
+    /** Parcours à indexer à la prochaine requête, null si les index sont à jour */
+    private Parcours[] pending;
+
+    /**
+     * Transmet la nouvelle liste des parcours, indexée à la prochaine requête.
+     * Seule une copie de la liste est faite sur le thread appelant.
+     * @param newestFirst parcours triés du plus récent au plus ancien
+     */
+    public void update(List<Parcours> newestFirst) {
+        Parcours[] parcours = newestFirst.toArray(new Parcours[0]);
+        synchronized (this) {
+            pending = parcours;
+        }
+    }
+
+    /**
+     * Renvoie les index à jour, en les reconstruisant si la liste a changé.
+     */
+    private Snapshot snapshot() {
+        synchronized (buildLock) {
+            Parcours[] parcours;
+            synchronized (this) {
+                parcours = pending;
+                pending = null;
+            }
+            if (parcours != null) {
+                snapshot = build(parcours);
+            }
+            return snapshot;
+        }
+    }
+
+    /**
+     * Construit les index d'une liste de parcours.
+     * @param parcours parcours triés du plus récent au plus ancien
+     */
+    private static Snapshot build(Parcours[] parcours) {
+        long[] dates = new long[parcours.length];
+        Map<String, Integer> positions = new HashMap<>(parcours.length * 2);
+        for (int i = 0; i < parcours.length; i++) {
+            dates[i] = parcours[i].getDate().getTime();
+            positions.put(parcours[i].getId(), i);
+        }
+
+        FieldIndex[] fields = new FieldIndex[ParcoursQuery.Field.values().length];
+        for (ParcoursQuery.Field field : ParcoursQuery.Field.values()) {
+            if (field != ParcoursQuery.Field.DATE) {
+                fields[field.ordinal()] = buildIndex(parcours, field);
+            }
+        }
+        return new Snapshot(parcours, dates, positions, fields);
+    }
+
+    /**
+     * Exécute une requête.
+     * @param query requête
+     * @param searchIndex index de recherche par nom des mêmes parcours
+     * @return les parcours respectant tous les critères, du plus récent au plus ancien
+     */
+    public List<Parcours> execute(ParcoursQuery query, ParcoursSearchIndex searchIndex) {
+        Snapshot snapshot = snapshot();
+
+        List<Selection> selections = new ArrayList<>();
+        for (ParcoursQuery.Range range : query.getRanges()) {
+            selections.add(range.getField() == ParcoursQuery.Field.DATE
+                    ? selectDates(snapshot, range) : selectValues(snapshot, range));
+        }
+        Set<String> ids = searchIndex.searchIds(query.getName());
+        if (ids != null) {
+            selections.add(selectIds(snapshot, ids));
+        }
+        if (selections.isEmpty()) {
+            return Collections.unmodifiableList(Arrays.asList(snapshot.parcours));
+        }
+
+        // Du critère le plus sélectif au moins sélectif
+        Collections.sort(selections, new Comparator<Selection>() {
+            @Override
+            public int compare(Selection s1, Selection s2) {
+                return Integer.compare(s1.size, s2.size);
+            }
+        });
+        BitSet bits = new BitSet(snapshot.parcours.length);
+        selections.get(0).addTo(bits);
+        int count = selections.get(0).size;
+        for (int i = 1; i < selections.size() && count > 0; i++) {
+            Selection selection = selections.get(i);
+            if (count < selection.size) {
+                // Moins de parcours restants que de parcours retenus : vérification directe
+                for (int position = bits.nextSetBit(0); position >= 0; position = bits.nextSetBit(position + 1)) {
+                    if (!selection.contains(position)) {
+                        bits.clear(position);
+                        count--;
+                    }
+                }
+            } else {
+                BitSet selected = new BitSet(snapshot.parcours.length);
+                selection.addTo(selected);
+                bits.and(selected);
+                count = bits.cardinality();
+            }
+        }
+
+        List<Parcours> result = new ArrayList<>(count);
+        for (int position = bits.nextSetBit(0); position >= 0; position = bits.nextSetBit(position + 1)) {
+            result.add(snapshot.parcours[position]);
+        }
+        return result;
+    }
+
+    /**
+     * @return le nombre de parcours indexés
+     */
+    public int size() {
+        return snapshot().parcours.length;
+    }
+
+    /**
+     * Trie les valeurs d'un champ avec la position de leur parcours.
+     */
+    private static FieldIndex buildIndex(Parcours[] parcours, ParcoursQuery.Field field) {
+        double[] byPosition = new double[parcours.length];
+        int[] positions = new int[parcours.length];
+        for (int i = 0; i < parcours.length; i++) {
+            byPosition[i] = field.get(parcours[i]);
+            positions[i] = i;
+        }
+        sortByKey(positions, byPosition);
+
+        double[] values = new double[parcours.length];
+        for (int i = 0; i < positions.length; i++) {
+            values[i] = byPosition[positions[i]];
+        }
+        return new FieldIndex(values, positions);
+    }
+
+    /**
+     * Trie des positions par valeur croissante, sans objet intermédiaire (tri fusion stable).
+     * @param positions positions à trier
+     * @param keys valeur de chaque position
+     */
+    static void sortByKey(int[] positions, double[] keys) {
+        int[] source = positions;
+        int[] target = new int[positions.length];
+        for (int width = 1; width < positions.length; width *= 2) {
+            for (int low = 0; low < positions.length; low += 2 * width) {
+                int middle = Math.min(low + width, positions.length);
+                int high = Math.min(low + 2 * width, positions.length);
+                int left = low;
+                int right = middle;
+                for (int k = low; k < high; k++) {
+                    if (left < middle && (right >= high
+                            || Double.compare(keys[source[left]], keys[source[right]]) <= 0)) {
+                        target[k] = source[left++];
+                    } else {
+                        target[k] = source[right++];
+                    }
+                }
+            }
+            int[] swap = source;
+            source = target;
+            target = swap;
+        }
+        if (source != positions) {
+            System.arraycopy(source, 0, positions, 0, positions.length);
+        }
+    }
+
+    /**
+     * Sélectionne un intervalle de dates : une tranche contiguë des positions.
+     */
+    private static Selection selectDates(Snapshot snapshot, ParcoursQuery.Range range) {
+        final int start = firstBefore(snapshot.dates, (long) Math.floor(range.getMax()), true);
+        final int end = Math.max(start, firstBefore(snapshot.dates, (long) Math.ceil(range.getMin()), false));
+        return new Selection(end - start) {
+            @Override
+            void addTo(BitSet bits) {
+                bits.set(start, end);
+            }
+
+            @Override
+            boolean contains(int position) {
+                return position >= start && position < end;
+            }
+        };
+    }
+
+    /**
+     * Sélectionne un intervalle de valeurs dans l'index trié du champ.
+     */
+    private static Selection selectValues(final Snapshot snapshot, final ParcoursQuery.Range range) {
+        final FieldIndex index = snapshot.fields[range.getField().ordinal()];
+        final int start = firstAbove(index.values, range.getMin(), true);
+        final int end = Math.max(start, firstAbove(index.values, range.getMax(), false));
+        return new Selection(end - start) {
+            @Override
+            void addTo(BitSet bits) {
+                for (int i = start; i < end; i++) {
+                    bits.set(index.positions[i]);
+                }
+            }
+
+            @Override
+            boolean contains(int position) {
+                return range.matches(snapshot.parcours[position]);
+            }
+        };
+    }
+
+    /**
+     * Sélectionne les parcours trouvés par la recherche par nom.
+     */
+    private static Selection selectIds(final Snapshot snapshot, final Set<String> ids) {
+        return new Selection(ids.size()) {
+            @Override
+            void addTo(BitSet bits) {
+                for (String id : ids) {
+                    // Parcours ajouté à l'index de recherche depuis la dernière reconstruction
+                    Integer position = snapshot.positions.get(id);
+                    if (position != null) {
+                        bits.set(position);
+                    }
+                }
+            }
+
+            @Override
+            boolean contains(int position) {
+                return ids.contains(snapshot.parcours[position].getId());
+            }
+        };
+    }
+
+    /**
+     * Recherche dichotomique dans des dates triées de la plus récente à la plus ancienne.
+     * @param dates dates triées
+     * @param bound date recherchée
+     * @param inclusive true pour inclure les dates égales à bound
+     * @return le premier indice dont la date est antérieure à bound (ou égale si inclusive),
+     *         dates.length s'il n'y en a pas
+     */
+    static int firstBefore(long[] dates, long bound, boolean inclusive) {
+        int low = 0;
+        int high = dates.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            boolean before = inclusive ? dates[middle] <= bound : dates[middle] < bound;
+            if (before) {
+                high = middle;
+            } else {
+                low = middle + 1;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Recherche dichotomique dans des valeurs croissantes.
+     * @param values valeurs triées
+     * @param bound valeur recherchée
+     * @param inclusive true pour inclure les valeurs égales à bound
+     * @return le premier indice dont la valeur est supérieure à bound (ou égale si inclusive),
+     *         values.length s'il n'y en a pas
+     */
+    static int firstAbove(double[] values, double bound, boolean inclusive) {
+        int low = 0;
+        int high = values.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            boolean above = inclusive ? values[middle] >= bound : values[middle] > bound;
+            if (above) {
+                high = middle;
+            } else {
+                low = middle + 1;
+            }
+        }
+        return low;
+    }
+}
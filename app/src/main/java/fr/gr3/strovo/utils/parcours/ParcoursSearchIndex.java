@@ -0,0 +1,176 @@
+package fr.gr3.strovo.utils.parcours;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+import fr.gr3.strovo.api.model.Parcours;
+
+/**
+ * Index de recherche des parcours par nom.
+ * Les noms sont découpés en mots, mis en minuscules et débarrassés de leurs accents, puis
+ * rangés dans un arbre de préfixes : chaque nœud connaît les parcours dont un mot commence
+ * par son préfixe. Une recherche ne parcourt donc que les lettres saisies, quel que soit
+ * le nombre de parcours. Un parcours est trouvé si chaque mot saisi commence un mot de son nom.
+ * Les méthodes sont synchronisées : la recherche peut s'exécuter hors du thread principal.
+ */
+public class ParcoursSearchIndex {
+
+    /** Séparateurs des mots */
+    private static final Pattern SEPARATORS = Pattern.compile("[^\\p{L}\\p{N}]+");
+
+    /** Accents, isolés par la décomposition Unicode */
+    private static final Pattern MARKS = Pattern.compile("\\p{M}+");
+
+    /** Nœud de l'arbre de préfixes */
+    private static class Node {
+
+        /** Nœuds des préfixes plus longs d'une lettre */
+        final Map<Character, Node> children = new HashMap<>();
+
+        /** Identifiants des parcours ayant un mot qui commence par ce préfixe */
+        final Set<String> ids = new HashSet<>();
+    }
+
+    /** Racine de l'arbre, préfixe vide */
+    private final Node root = new Node();
+
+    /** Mots indexés de chaque parcours, pour le retirer de l'arbre */
+    private final Map<String, Set<String>> tokensById = new HashMap<>();
+
+    /**
+     * Ajoute un parcours à l'index, ou remplace le parcours de même identifiant.
+     * @param parcours parcours à indexer
+     */
+    public synchronized void add(Parcours parcours) {
+        String id = parcours.getId();
+        remove(id);
+        Set<String> tokens = tokenize(parcours.getName());
+        for (String token : tokens) {
+            Node node = root;
+            for (int i = 0; i < token.length(); i++) {
+                Node child = node.children.get(token.charAt(i));
+                if (child == null) {
+                    child = new Node();
+                    node.children.put(token.charAt(i), child);
+                }
+                child.ids.add(id);
+                node = child;
+            }
+        }
+        tokensById.put(id, tokens);
+    }
+
+    /**
+     * Retire un parcours de l'index.
+     * @param id identifiant du parcours
+     */
+    public synchronized void remove(String id) {
+        Set<String> tokens = tokensById.remove(id);
+        if (tokens == null) {
+            return;
+        }
+        for (String token : tokens) {
+            Node node = root;
+            for (int i = 0; i < token.length() && node != null; i++) {
+                Node child = node.children.get(token.charAt(i));
+                if (child != null) {
+                    child.ids.remove(id);
+                    if (child.ids.isEmpty()) {
+                        // Plus aucun parcours sous ce préfixe
+                        node.children.remove(token.charAt(i));
+                    }
+                }
+                node = child;
+            }
+        }
+    }
+
+    /**
+     * Vide l'index.
+     */
+    public synchronized void clear() {
+        root.children.clear();
+        tokensById.clear();
+    }
+
+    /**
+     * Recherche les identifiants des parcours dont le nom contient un mot commençant
+     * par chaque mot de la requête, sans tenir compte de la casse ni des accents.
+     * @param query texte saisi
+     * @return les identifiants trouvés, null si la requête ne contient aucun mot
+     */
+    public synchronized Set<String> searchIds(String query) {
+        Set<String> tokens = tokenize(query);
+        if (tokens.isEmpty()) {
+            return null;
+        }
+
+        // Intersection en partant du plus petit ensemble
+        List<Set<String>> postings = new ArrayList<>(tokens.size());
+        for (String token : tokens) {
+            Node node = find(token);
+            if (node == null) {
+                return new HashSet<>();
+            }
+            postings.add(node.ids);
+        }
+        Collections.sort(postings, (s1, s2) -> Integer.compare(s1.size(), s2.size()));
+        Set<String> ids = new HashSet<>(postings.get(0));
+        for (int i = 1; i < postings.size() && !ids.isEmpty(); i++) {
+            ids.retainAll(postings.get(i));
+        }
+        return ids;
+    }
+
+    /**
+     * @return le nombre de parcours indexés
+     */
+    public synchronized int size() {
+        return tokensById.size();
+    }
+
+    /**
+     * Met un texte sous la forme indexée : minuscules sans accents.
+     * @param text texte à normaliser
+     * @return le texte normalisé
+     */
+    public static String normalize(String text) {
+        String decomposed = Normalizer.normalize(text, Normalizer.Form.NFD);
+        return MARKS.matcher(decomposed).replaceAll("").toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Découpe un texte en mots normalisés.
+     */
+    private static Set<String> tokenize(String text) {
+        Set<String> tokens = new HashSet<>();
+        if (text == null) {
+            return tokens;
+        }
+        for (String token : SEPARATORS.split(normalize(text))) {
+            if (!token.isEmpty()) {
+                tokens.add(token);
+            }
+        }
+        return tokens;
+    }
+
+    /**
+     * @return le nœud d'un préfixe, null si aucun mot ne commence par ce préfixe
+     */
+    private Node find(String prefix) {
+        Node node = root;
+        for (int i = 0; i < prefix.length() && node != null; i++) {
+            node = node.children.get(prefix.charAt(i));
+        }
+        return node;
+    }
+}
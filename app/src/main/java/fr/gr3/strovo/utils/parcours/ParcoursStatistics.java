@@ -0,0 +1,209 @@
+package fr.gr3.strovo.utils.parcours;
+
+/**
+ * Statistiques d'un parcours calculées au fil de l'eau.
+ * Chaque position ajoutée met à jour les statistiques en temps constant,
+ * sans jamais reparcourir les positions précédentes.
+ */
+public class ParcoursStatistics {
+
+    /** Vitesse en dessous de laquelle l'utilisateur est considéré à l'arrêt, en m/s */
+    public static final double MOVING_SPEED_MIN = 0.5;
+
+    /** Variation d'altitude minimale prise en compte dans le dénivelé, en mètres */
+    public static final double ELEVATION_THRESHOLD = 3;
+
+    /** Poids de la dernière vitesse mesurée dans la vitesse instantanée lissée */
+    private static final double SPEED_SMOOTHING = 0.3;
+
+    /** Nombre de positions prises en compte */
+    private int count;
+
+    /** Latitude de la dernière position */
+    private double lastLatitude;
+
+    /** Longitude de la dernière position */
+    private double lastLongitude;
+
+    /** Date de la dernière position en millisecondes */
+    private long lastTime;
+
+    /** Date de la première position en millisecondes */
+    private long firstTime;
+
+    /** Altitude de référence pour le calcul du dénivelé */
+    private double referenceAltitude;
+
+    /** Distance parcourue en mètres */
+    private double distance;
+
+    /** Temps passé en mouvement en millisecondes */
+    private long movingTime;
+
+    /** Dénivelé positif cumulé en mètres */
+    private double elevationGain;
+
+    /** Dénivelé négatif cumulé en mètres */
+    private double elevationLoss;
+
+    /** Vitesse maximale en m/s */
+    private double maxSpeed;
+
+    /** Vitesse instantanée lissée en m/s */
+    private double currentSpeed;
+
+    /**
+     * Calcule les statistiques d'un tracé complet.
+     * @param track tracé, lu position par position
+     * @return les statistiques du tracé
+     */
+    public static ParcoursStatistics of(Track track) {
+        ParcoursStatistics statistics = new ParcoursStatistics();
+        for (int i = 0; i < track.size(); i++) {
+            statistics.add(track.getLatitude(i), track.getLongitude(i),
+                    track.getAltitude(i), track.getTime(i));
+        }
+        return statistics;
+    }
+
+    /**
+     * Met à jour les statistiques avec une nouvelle position.
+     * @param latitude latitude en degrés
+     * @param longitude longitude en degrés
+     * @param altitude altitude en mètres
+     * @param time date de la position en millisecondes
+     */
+    public void add(double latitude, double longitude, double altitude, long time) {
+        if (count == 0) {
+            firstTime = time;
+            referenceAltitude = altitude;
+        } else {
+            double segment = GeoUtils.distance(lastLatitude, lastLongitude, latitude, longitude);
+            long duration = time - lastTime;
+            distance += segment;
+
+            if (duration > 0) {
+                double speed = segment * 1000 / duration;
+                if (speed >= MOVING_SPEED_MIN) {
+                    movingTime += duration;
+                }
+                maxSpeed = Math.max(maxSpeed, speed);
+                currentSpeed = count == 1
+                        ? speed
+                        : SPEED_SMOOTHING * speed + (1 - SPEED_SMOOTHING) * currentSpeed;
+            }
+
+            // Seuil pour ne pas cumuler le bruit de l'altitude GPS
+            double elevation = altitude - referenceAltitude;
+            if (elevation >= ELEVATION_THRESHOLD) {
+                elevationGain += elevation;
+                referenceAltitude = altitude;
+            } else if (elevation <= -ELEVATION_THRESHOLD) {
+                elevationLoss -= elevation;
+                referenceAltitude = altitude;
+            }
+        }
+        lastLatitude = latitude;
+        lastLongitude = longitude;
+        lastTime = time;
+        count++;
+    }
+
+    /**
+     * Copie les statistiques, permet de les lire depuis un autre thread que celui
+     * qui les met à jour.
+     * @return une copie des statistiques
+     */
+    public ParcoursStatistics copy() {
+        ParcoursStatistics copy = new ParcoursStatistics();
+        copy.count = count;
+        copy.lastLatitude = lastLatitude;
+        copy.lastLongitude = lastLongitude;
+        copy.lastTime = lastTime;
+        copy.firstTime = firstTime;
+        copy.referenceAltitude = referenceAltitude;
+        copy.distance = distance;
+        copy.movingTime = movingTime;
+        copy.elevationGain = elevationGain;
+        copy.elevationLoss = elevationLoss;
+        copy.maxSpeed = maxSpeed;
+        copy.currentSpeed = currentSpeed;
+        return copy;
+    }
+
+    /**
+     * Réinitialise les statistiques.
+     */
+    public void reset() {
+        count = 0;
+        distance = 0;
+        movingTime = 0;
+        elevationGain = 0;
+        elevationLoss = 0;
+        maxSpeed = 0;
+        currentSpeed = 0;
+    }
+
+    /**
+     * @return le nombre de positions prises en compte
+     */
+    public int getCount() {
+        return count;
+    }
+
+    /**
+     * @return la distance parcourue en mètres
+     */
+    public double getDistance() {
+        return distance;
+    }
+
+    /**
+     * @return le temps écoulé entre la première et la dernière position en millisecondes
+     */
+    public long getElapsedTime() {
+        return count == 0 ? 0 : lastTime - firstTime;
+    }
+
+    /**
+     * @return le temps passé en mouvement en millisecondes
+     */
+    public long getMovingTime() {
+        return movingTime;
+    }
+
+    /**
+     * @return le dénivelé positif cumulé en mètres
+     */
+    public double getElevationGain() {
+        return elevationGain;
+    }
+
+    /**
+     * @return le dénivelé négatif cumulé en mètres
+     */
+    public double getElevationLoss() {
+        return elevationLoss;
+    }
+
+    /**
+     * @return la vitesse maximale en m/s
+     */
+    public double getMaxSpeed() {
+        return maxSpeed;
+    }
+
+    /**
+     * @return la vitesse instantanée lissée en m/s
+     */
+    public double getCurrentSpeed() {
+        return currentSpeed;
+    }
+
+    /**
+     * @return l'allure actuelle en secondes par kilomètre, 0 si l'utilisateur est à l'arrêt
+     */
+    public double getCurrentPace() {
+        return currentSpeed < MOVING_SPEED_MIN ? 0 : 1000 / currentSpeed;
+    }
+}
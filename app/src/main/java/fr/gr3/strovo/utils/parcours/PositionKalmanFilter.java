@@ -0,0 +1,182 @@
+package fr.gr3.strovo.utils.parcours;
+
+/**
+ * Filtre de Kalman à vitesse constante lissant les positions GPS.
+ * Les positions sont projetées dans un repère local en mètres (nord, est) centré sur la
+ * première position ; chaque axe est filtré avec un état (position, vitesse).
+ * Le bruit de mesure est la précision annoncée par le GPS, le bruit de modèle une
+ * accélération aléatoire. Les deux axes partageant les mêmes bruits et les mêmes intervalles,
+ * une seule matrice de covariance suffit. Aucune allocation n'est faite par position.
+ */
+public class PositionKalmanFilter {
+
+    /**
+     * Variance de l'accélération par défaut, en (m/s²)².
+     * Adaptée à la marche et à la course, qui changent peu de vitesse d'une seconde à l'autre.
+     */
+    public static final double DEFAULT_ACCELERATION_VARIANCE = 0.1;
+
+    /** Précision utilisée lorsque le GPS n'en fournit pas, en mètres */
+    private static final double DEFAULT_ACCURACY = 10;
+
+    /** Précision minimale prise en compte, en mètres */
+    private static final double MIN_ACCURACY = 1;
+
+    /** Variance initiale de la vitesse, en (m/s)² */
+    private static final double INITIAL_SPEED_VARIANCE = 25;
+
+    /** Interruption au delà de laquelle le filtre est réinitialisé, en millisecondes */
+    private static final long MAX_GAP = 60000;
+
+    /** Nombre de mètres par degré de latitude */
+    private static final double METERS_PER_DEGREE = Math.PI * GeoUtils.EARTH_RADIUS / 180;
+
+    /** Variance de l'accélération */
+    private final double accelerationVariance;
+
+    /** Indique si le filtre a reçu une première position */
+    private boolean initialized;
+
+    /** Latitude de l'origine du repère local */
+    private double originLatitude;
+
+    /** Longitude de l'origine du repère local */
+    private double originLongitude;
+
+    /** Mètres par degré de longitude à l'origine */
+    private double metersPerLongitudeDegree;
+
+    /** Date de la dernière position en millisecondes */
+    private long lastTime;
+
+    /** Position et vitesse vers le nord, en m et m/s */
+    private double north;
+    private double northSpeed;
+
+    /** Position et vitesse vers l'est, en m et m/s */
+    private double east;
+    private double eastSpeed;
+
+    /** Covariance (position, position), (position, vitesse) et (vitesse, vitesse) */
+    private double p00;
+    private double p01;
+    private double p11;
+
+    /**
+     * Construit un filtre avec la variance d'accélération par défaut.
+     */
+    public PositionKalmanFilter() {
+        this(DEFAULT_ACCELERATION_VARIANCE);
+    }
+
+    /**
+     * Construit un filtre.
+     * @param accelerationVariance variance de l'accélération, en (m/s²)²
+     */
+    public PositionKalmanFilter(double accelerationVariance) {
+        this.accelerationVariance = accelerationVariance;
+    }
+
+    /**
+     * Met à jour le filtre avec une position mesurée.
+     * @param latitude latitude mesurée en degrés
+     * @param longitude longitude mesurée en degrés
+     * @param time date de la mesure en millisecondes
+     * @param accuracy précision de la mesure en mètres, 0 si inconnue
+     */
+    public void update(double latitude, double longitude, long time, float accuracy) {
+        double sigma = accuracy > 0 ? Math.max(accuracy, MIN_ACCURACY) : DEFAULT_ACCURACY;
+        double measurementVariance = sigma * sigma;
+
+        if (!initialized || time - lastTime > MAX_GAP) {
+            reset(latitude, longitude, time, measurementVariance);
+            return;
+        }
+
+        double dt = (time - lastTime) / 1000.0;
+        if (dt > 0) {
+            predict(dt);
+            lastTime = time;
+        }
+
+        double measuredNorth = (latitude - originLatitude) * METERS_PER_DEGREE;
+        double measuredEast = (longitude - originLongitude) * metersPerLongitudeDegree;
+
+        // Gain de Kalman, identique sur les deux axes
+        double s = p00 + measurementVariance;
+        double k0 = p00 / s;
+        double k1 = p01 / s;
+
+        double innovation = measuredNorth - north;
+        north += k0 * innovation;
+        northSpeed += k1 * innovation;
+
+        innovation = measuredEast - east;
+        east += k0 * innovation;
+        eastSpeed += k1 * innovation;
+
+        p11 -= k1 * p01;
+        p01 -= k0 * p01;
+        p00 -= k0 * p00;
+    }
+
+    /**
+     * Prédit l'état après un intervalle de temps.
+     * @param dt intervalle en secondes
+     */
+    private void predict(double dt) {
+        north += northSpeed * dt;
+        east += eastSpeed * dt;
+
+        double dt2 = dt * dt;
+        p00 += dt * (2 * p01 + dt * p11) + accelerationVariance * dt2 * dt2 / 4;
+        p01 += dt * p11 + accelerationVariance * dt2 * dt / 2;
+        p11 += accelerationVariance * dt2;
+    }
+
+    /**
+     * Réinitialise le filtre sur une position mesurée.
+     */
+    private void reset(double latitude, double longitude, long time, double measurementVariance) {
+        initialized = true;
+        originLatitude = latitude;
+        originLongitude = longitude;
+        metersPerLongitudeDegree = METERS_PER_DEGREE * Math.cos(Math.toRadians(latitude));
+        lastTime = time;
+        north = 0;
+        east = 0;
+        northSpeed = 0;
+        eastSpeed = 0;
+        p00 = measurementVariance;
+        p01 = 0;
+        p11 = INITIAL_SPEED_VARIANCE;
+    }
+
+    /**
+     * @return la latitude filtrée en degrés
+     */
+    public double getLatitude() {
+        return originLatitude + north / METERS_PER_DEGREE;
+    }
+
+    /**
+     * @return la longitude filtrée en degrés
+     */
+    public double getLongitude() {
+        return originLongitude + east / metersPerLongitudeDegree;
+    }
+
+    /**
+     * @return la vitesse filtrée en m/s
+     */
+    public double getSpeed() {
+        return Math.sqrt(northSpeed * northSpeed + eastSpeed * eastSpeed);
+    }
+
+    /**
+     * @return l'écart type estimé de la position filtrée en mètres
+     */
+    public double getAccuracy() {
+        return Math.sqrt(p00);
+    }
+}
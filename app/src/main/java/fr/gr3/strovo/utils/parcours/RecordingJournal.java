@@ -0,0 +1,409 @@
+package fr.gr3.strovo.utils.parcours;
+
+import org.osmdroid.util.GeoPoint;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.util.Date;
+import java.util.zip.CRC32;
+
+import fr.gr3.strovo.api.model.InterestPoint;
+import fr.gr3.strovo.api.model.Parcours;
+
+/**
+ * Journal binaire de l'enregistrement d'un parcours, écrit uniquement en fin de fichier.
+ * Le fichier commence par un identifiant suivi de blocs [type][taille][contenu][CRC32] :
+ * un bloc d'en-tête (nom, description, date, compte de l'utilisateur), des blocs de positions de taille fixe et
+ * des blocs de points d'intérêt. Les positions sont regroupées en blocs écrits et
+ * synchronisés sur le disque tous les N positions ou T millisecondes, ce qui borne à la fois
+ * les positions perdues en cas d'arrêt brutal et le nombre d'écritures.
+ * Un bloc incomplet ou corrompu en fin de fichier est ignoré à la reprise.
+ */
+public class RecordingJournal implements Closeable {
+
+    /** Nom du fichier du journal dans le répertoire de l'application */
+    public static final String FILE_NAME = "parcoursJournal";
+
+    /** Nombre de positions par bloc par défaut */
+    public static final int DEFAULT_BLOCK_FIXES = 32;
+
+    /** Durée maximale par défaut entre deux synchronisations, en millisecondes */
+    public static final long DEFAULT_SYNC_INTERVAL = 30000;
+
+    /** Parcours repris d'un journal, avec le compte de l'utilisateur qui l'a enregistré */
+    public static class Recovery {
+
+        /** Parcours arrêté à sa dernière position */
+        private final Parcours parcours;
+
+        /** Compte de l'utilisateur, null pour un journal d'une version précédente */
+        private final String account;
+
+        Recovery(Parcours parcours, String account) {
+            this.parcours = parcours;
+            this.account = account;
+        }
+
+        public Parcours getParcours() {
+            return parcours;
+        }
+
+        public String getAccount() {
+            return account;
+        }
+    }
+
+    /** Identifiant du format de fichier */
+    private static final int MAGIC = 0x53544A31;
+
+    /** Type du bloc d'en-tête */
+    private static final byte TYPE_HEADER = 1;
+
+    /** Type d'un bloc de positions */
+    private static final byte TYPE_FIXES = 2;
+
+    /** Type d'un bloc de point d'intérêt */
+    private static final byte TYPE_INTEREST_POINT = 3;
+
+    /** Taille d'une position : latitude, longitude, altitude, date et précision */
+    private static final int FIX_SIZE = 8 + 8 + 8 + 8 + 4;
+
+    /** Taille de l'entête d'un bloc : type et taille du contenu */
+    private static final int BLOCK_HEADER_SIZE = 1 + 4;
+
+    /** Taille de la somme de contrôle d'un bloc */
+    private static final int CHECKSUM_SIZE = 4;
+
+    /** Taille maximale du contenu d'un bloc, au delà le bloc est considéré corrompu */
+    private static final int MAX_BLOCK_SIZE = 1 << 20;
+
+    /** Fichier ouvert en écriture */
+    private final RandomAccessFile file;
+
+    /** Canal d'écriture du fichier */
+    private final FileChannel channel;
+
+    /** Verrou empêchant la reprise du journal pendant l'enregistrement */
+    private final FileLock lock;
+
+    /** Nombre de positions par bloc */
+    private final int blockFixes;
+
+    /** Durée maximale entre deux synchronisations en millisecondes */
+    private final long syncInterval;
+
+    /** Bloc de positions en attente, réutilisé d'un bloc à l'autre */
+    private final ByteBuffer fixesBlock;
+
+    /** Calcul des sommes de contrôle */
+    private final CRC32 crc = new CRC32();
+
+    /** Nombre de positions en attente */
+    private int pendingFixes;
+
+    /** Date de la première position en attente */
+    private long firstPendingTime;
+
+    private RecordingJournal(File path, int blockFixes, long syncInterval) throws IOException {
+        if (blockFixes < 1) {
+            throw new IllegalArgumentException("Taille de bloc invalide : " + blockFixes);
+        }
+        this.file = new RandomAccessFile(path, "rw");
+        this.channel = file.getChannel();
+        this.lock = channel.lock();
+        this.blockFixes = blockFixes;
+        this.syncInterval = syncInterval;
+        this.fixesBlock = ByteBuffer.allocate(BLOCK_HEADER_SIZE + blockFixes * FIX_SIZE + CHECKSUM_SIZE);
+        this.fixesBlock.position(BLOCK_HEADER_SIZE);
+    }
+
+    /**
+     * Crée un journal vide pour un nouveau parcours, en remplaçant un éventuel journal existant.
+     * @param path fichier du journal
+     * @param account compte de l'utilisateur, null s'il est inconnu
+     * @param name nom du parcours
+     * @param description description du parcours
+     * @param date date du parcours
+     * @return le journal ouvert
+     * @throws IOException si le fichier ne peut pas être écrit
+     */
+    public static RecordingJournal create(File path, String account, String name, String description,
+                                          Date date) throws IOException {
+        return create(path, account, name, description, date, DEFAULT_BLOCK_FIXES, DEFAULT_SYNC_INTERVAL);
+    }
+
+    /**
+     * Crée un journal vide pour un nouveau parcours, en remplaçant un éventuel journal existant.
+     * @param path fichier du journal
+     * @param account compte de l'utilisateur, null s'il est inconnu
+     * @param name nom du parcours
+     * @param description description du parcours
+     * @param date date du parcours
+     * @param blockFixes nombre de positions par bloc
+     * @param syncInterval durée maximale entre deux synchronisations, en millisecondes
+     * @return le journal ouvert
+     * @throws IOException si le fichier ne peut pas être écrit
+     */
+    public static RecordingJournal create(File path, String account, String name, String description,
+                                          Date date, int blockFixes, long syncInterval) throws IOException {
+        RecordingJournal journal = new RecordingJournal(path, blockFixes, syncInterval);
+        try {
+            journal.channel.truncate(0);
+            ByteBuffer magic = ByteBuffer.allocate(4).putInt(MAGIC);
+            magic.flip();
+            journal.write(magic);
+
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream output = new DataOutputStream(bytes);
+            output.writeByte(0);
+            output.writeInt(0);
+            output.writeLong(date.getTime());
+            output.writeUTF(name == null ? "" : name);
+            output.writeUTF(description == null ? "" : description);
+            output.writeUTF(account == null ? "" : account);
+            output.writeInt(0);
+            journal.writeBlock(ByteBuffer.wrap(bytes.toByteArray()), TYPE_HEADER);
+            journal.channel.force(false);
+        } catch (IOException e) {
+            journal.close();
+            throw e;
+        }
+        return journal;
+    }
+
+    /**
+     * Ajoute une position au journal.
+     * Le bloc en attente est écrit et synchronisé lorsqu'il est plein ou trop ancien.
+     * @param latitude latitude en degrés
+     * @param longitude longitude en degrés
+     * @param altitude altitude en mètres
+     * @param time date en millisecondes
+     * @param accuracy précision en mètres
+     * @throws IOException si le bloc ne peut pas être écrit
+     */
+    public void appendFix(double latitude, double longitude, double altitude, long time, float accuracy)
+            throws IOException {
+        if (pendingFixes == 0) {
+            firstPendingTime = time;
+        }
+        fixesBlock.putDouble(latitude)
+                .putDouble(longitude)
+                .putDouble(altitude)
+                .putLong(time)
+                .putFloat(accuracy);
+        pendingFixes++;
+
+        if (pendingFixes == blockFixes || time - firstPendingTime >= syncInterval) {
+            sync();
+        }
+    }
+
+    /**
+     * Ajoute un point d'intérêt au journal et le synchronise immédiatement.
+     * @param interestPoint point d'intérêt
+     * @throws IOException si le bloc ne peut pas être écrit
+     */
+    public void appendInterestPoint(InterestPoint interestPoint) throws IOException {
+        // Les positions précédentes sont écrites d'abord pour conserver l'ordre
+        writePendingFixes();
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream output = new DataOutputStream(bytes);
+        output.writeByte(0);
+        output.writeInt(0);
+        output.writeDouble(interestPoint.getPoint().getLatitude());
+        output.writeDouble(interestPoint.getPoint().getLongitude());
+        output.writeUTF(interestPoint.getName() == null ? "" : interestPoint.getName());
+        output.writeUTF(interestPoint.getDescription() == null ? "" : interestPoint.getDescription());
+        output.writeInt(0);
+        writeBlock(ByteBuffer.wrap(bytes.toByteArray()), TYPE_INTEREST_POINT);
+        channel.force(false);
+    }
+
+    /**
+     * Ecrit les positions en attente et synchronise le fichier sur le disque.
+     * @throws IOException si le bloc ne peut pas être écrit
+     */
+    public void sync() throws IOException {
+        if (writePendingFixes()) {
+            channel.force(false);
+        }
+    }
+
+    /**
+     * Synchronise les positions en attente et ferme le journal.
+     * Le fichier est conservé, il doit être supprimé une fois le parcours sauvegardé.
+     * @throws IOException si les positions en attente ne peuvent pas être écrites
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            sync();
+        } finally {
+            if (lock.isValid()) {
+                lock.release();
+            }
+            file.close();
+        }
+    }
+
+    /**
+     * Ecrit le bloc des positions en attente, sans synchronisation.
+     * @return true si un bloc a été écrit, false si aucune position n'était en attente
+     */
+    private boolean writePendingFixes() throws IOException {
+        if (pendingFixes == 0) {
+            return false;
+        }
+        fixesBlock.putInt(0);
+        fixesBlock.flip();
+        writeBlock(fixesBlock, TYPE_FIXES);
+        fixesBlock.clear();
+        fixesBlock.position(BLOCK_HEADER_SIZE);
+        pendingFixes = 0;
+        return true;
+    }
+
+    /**
+     * Complète l'entête et la somme de contrôle d'un bloc puis l'écrit en fin de fichier.
+     * @param block bloc préparé, avec la place de l'entête au début et de la somme à la fin
+     * @param type type du bloc
+     */
+    private void writeBlock(ByteBuffer block, byte type) throws IOException {
+        int payloadSize = block.limit() - BLOCK_HEADER_SIZE - CHECKSUM_SIZE;
+        block.put(0, type);
+        block.putInt(1, payloadSize);
+        crc.reset();
+        crc.update(block.array(), block.arrayOffset(), BLOCK_HEADER_SIZE + payloadSize);
+        block.putInt(BLOCK_HEADER_SIZE + payloadSize, (int) crc.getValue());
+
+        block.position(0);
+        write(block);
+    }
+
+    /**
+     * Ecrit entièrement un tampon à la position courante du fichier.
+     * @param buffer tampon à écrire
+     */
+    private void write(ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    /**
+     * Reconstruit le parcours d'un journal en une seule lecture séquentielle.
+     * La lecture s'arrête au premier bloc incomplet ou corrompu.
+     * @param path fichier du journal
+     * @return le parcours arrêté à sa dernière position et son compte, null si le journal est
+     *         en cours d'écriture
+     * @throws IOException si le fichier ne peut pas être lu ou si son en-tête est invalide
+     */
+    public static Recovery recover(File path) throws IOException {
+        try (RandomAccessFile file = new RandomAccessFile(path, "rw")) {
+            FileChannel channel = file.getChannel();
+            FileLock lock;
+            try {
+                lock = channel.tryLock();
+            } catch (OverlappingFileLockException e) {
+                // Journal ouvert par ce processus
+                return null;
+            }
+            if (lock == null) {
+                return null;
+            }
+
+            DataInputStream input = new DataInputStream(
+                    new BufferedInputStream(Channels.newInputStream(channel), 1 << 16));
+            if (input.readInt() != MAGIC) {
+                throw new IOException("Journal invalide");
+            }
+
+            CRC32 crc = new CRC32();
+            byte[] payload = new byte[blockSize(DEFAULT_BLOCK_FIXES * FIX_SIZE)];
+            ParcoursManager manager = null;
+            String account = null;
+            long endTime = 0;
+            while (true) {
+                int type;
+                int size;
+                try {
+                    type = input.readByte();
+                    size = input.readInt();
+                    if (size < 0 || size > MAX_BLOCK_SIZE) {
+                        break;
+                    }
+                    if (payload.length < blockSize(size)) {
+                        payload = new byte[blockSize(size)];
+                    }
+                    input.readFully(payload, BLOCK_HEADER_SIZE, size);
+                    int checksum = input.readInt();
+                    payload[0] = (byte) type;
+                    ByteBuffer.wrap(payload).putInt(1, size);
+                    crc.reset();
+                    crc.update(payload, 0, BLOCK_HEADER_SIZE + size);
+                    if ((int) crc.getValue() != checksum) {
+                        break;
+                    }
+                } catch (EOFException e) {
+                    // Bloc incomplet, interrompu par l'arrêt du processus
+                    break;
+                }
+
+                DataInputStream block = new DataInputStream(
+                        new ByteArrayInputStream(payload, BLOCK_HEADER_SIZE, size));
+                if (type == TYPE_HEADER) {
+                    long date = block.readLong();
+                    manager = new ParcoursManager(block.readUTF(), block.readUTF(), new Date(date));
+                    // En-tête d'une version précédente, sans compte
+                    account = block.available() > 0 ? block.readUTF() : "";
+                    manager.start(date);
+                    endTime = date;
+                } else if (manager == null) {
+                    throw new IOException("En-tête du journal manquant");
+                } else if (type == TYPE_FIXES) {
+                    ByteBuffer fixes = ByteBuffer.wrap(payload, BLOCK_HEADER_SIZE, size);
+                    for (int i = 0; i < size / FIX_SIZE; i++) {
+                        double latitude = fixes.getDouble();
+                        double longitude = fixes.getDouble();
+                        double altitude = fixes.getDouble();
+                        long time = fixes.getLong();
+                        float accuracy = fixes.getFloat();
+                        manager.addFix(latitude, longitude, altitude, time, accuracy);
+                        endTime = Math.max(endTime, time);
+                    }
+                } else if (type == TYPE_INTEREST_POINT) {
+                    GeoPoint point = new GeoPoint(block.readDouble(), block.readDouble());
+                    manager.addInterestPoint(new InterestPoint(point, block.readUTF(), block.readUTF()));
+                }
+            }
+
+            if (manager == null) {
+                throw new IOException("En-tête du journal manquant");
+            }
+            manager.stop(endTime);
+            return new Recovery(manager.getParcours(), account.isEmpty() ? null : account);
+        }
+    }
+
+    /**
+     * @param payloadSize taille du contenu d'un bloc
+     * @return la taille du tampon nécessaire pour lire le bloc avec son entête
+     */
+    private static int blockSize(int payloadSize) {
+        return BLOCK_HEADER_SIZE + payloadSize;
+    }
+}
@@ -0,0 +1,29 @@
+package fr.gr3.strovo.utils.parcours;
+
+/**
+ * Politique d'échantillonnage des positions GPS.
+ * A chaque position reçue, la politique peut modifier l'intervalle et la distance minimale
+ * demandés au gestionnaire de localisation.
+ */
+public interface SamplingPolicy {
+
+    /**
+     * Met à jour la politique avec une nouvelle position.
+     * @param latitude latitude en degrés
+     * @param longitude longitude en degrés
+     * @param time date de la position en millisecondes
+     * @return true si l'intervalle ou la distance minimale ont changé et que la demande
+     *         de mises à jour doit être réenregistrée, false sinon
+     */
+    boolean update(double latitude, double longitude, long time);
+
+    /**
+     * @return l'intervalle minimal entre deux positions en millisecondes
+     */
+    long getInterval();
+
+    /**
+     * @return la distance minimale entre deux positions en mètres
+     */
+    float getMinDistance();
+}
@@ -0,0 +1,30 @@
+package fr.gr3.strovo.utils.parcours;
+
+/**
+ * Positions d'un parcours en lecture seule, accessibles par indice.
+ * Les positions sont lues une à une, sans créer d'objet par position.
+ */
+public interface Track {
+
+    /**
+     * @return le nombre de positions
+     */
+    int size();
+
+    /**
+     * @return true si le tracé ne contient aucune position, false sinon
+     */
+    default boolean isEmpty() {
+        return size() == 0;
+    }
+
+    double getLatitude(int index);
+
+    double getLongitude(int index);
+
+    double getAltitude(int index);
+
+    long getTime(int index);
+
+    float getAccuracy(int index);
+}
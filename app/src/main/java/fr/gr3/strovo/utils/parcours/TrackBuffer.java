@@ -0,0 +1,182 @@
+package fr.gr3.strovo.utils.parcours;
+
+import java.util.Arrays;
+
+/**
+ * Stocke les positions d'un parcours sous forme de tableaux primitifs parallèles
+ * (latitude, longitude, altitude, date, précision).
+ * La capacité est agrandie de 50 % lorsque le tampon est plein, ce qui rend l'ajout
+ * d'une position sans allocation dans la grande majorité des cas.
+ */
+public class TrackBuffer implements Track {
+
+    /** Capacité initiale par défaut */
+    private static final int DEFAULT_CAPACITY = 256;
+
+    /** Latitudes des positions en degrés */
+    private double[] latitudes;
+
+    /** Longitudes des positions en degrés */
+    private double[] longitudes;
+
+    /** Altitudes des positions en mètres */
+    private double[] altitudes;
+
+    /** Dates des positions en millisecondes */
+    private long[] times;
+
+    /** Précisions des positions en mètres */
+    private float[] accuracies;
+
+    /** Nombre de positions enregistrées */
+    private int size;
+
+    /**
+     * Construit un tampon vide avec la capacité par défaut.
+     */
+    public TrackBuffer() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Construit un tampon vide.
+     * @param capacity capacité initiale
+     * @throws IllegalArgumentException si la capacité est négative
+     */
+    public TrackBuffer(int capacity) {
+        if (capacity < 0) {
+            throw new IllegalArgumentException("Capacité négative : " + capacity);
+        }
+        latitudes = new double[capacity];
+        longitudes = new double[capacity];
+        altitudes = new double[capacity];
+        times = new long[capacity];
+        accuracies = new float[capacity];
+        size = 0;
+    }
+
+    /**
+     * Ajoute une position à la fin du tampon.
+     * @param latitude latitude en degrés
+     * @param longitude longitude en degrés
+     * @param altitude altitude en mètres
+     * @param time date en millisecondes
+     * @param accuracy précision en mètres
+     */
+    public void add(double latitude, double longitude, double altitude, long time, float accuracy) {
+        ensureCapacity(size + 1);
+        latitudes[size] = latitude;
+        longitudes[size] = longitude;
+        altitudes[size] = altitude;
+        times[size] = time;
+        accuracies[size] = accuracy;
+        size++;
+    }
+
+    /**
+     * Ajoute une position dont seules les coordonnées sont connues.
+     * @param latitude latitude en degrés
+     * @param longitude longitude en degrés
+     */
+    public void add(double latitude, double longitude) {
+        add(latitude, longitude, 0, 0, 0);
+    }
+
+    /**
+     * Garantit que le tampon peut contenir au moins minCapacity positions.
+     * @param minCapacity capacité minimale souhaitée
+     */
+    public void ensureCapacity(int minCapacity) {
+        if (minCapacity > latitudes.length) {
+            int newCapacity = Math.max(minCapacity, latitudes.length + (latitudes.length >> 1) + 1);
+            latitudes = Arrays.copyOf(latitudes, newCapacity);
+            longitudes = Arrays.copyOf(longitudes, newCapacity);
+            altitudes = Arrays.copyOf(altitudes, newCapacity);
+            times = Arrays.copyOf(times, newCapacity);
+            accuracies = Arrays.copyOf(accuracies, newCapacity);
+        }
+    }
+
+    /**
+     * Réduit la capacité au nombre de positions enregistrées, une fois le tracé complet.
+     */
+    public void trimToSize() {
+        if (size < latitudes.length) {
+            latitudes = Arrays.copyOf(latitudes, size);
+            longitudes = Arrays.copyOf(longitudes, size);
+            altitudes = Arrays.copyOf(altitudes, size);
+            times = Arrays.copyOf(times, size);
+            accuracies = Arrays.copyOf(accuracies, size);
+        }
+    }
+
+    /**
+     * Vide le tampon sans libérer la mémoire allouée.
+     */
+    public void clear() {
+        size = 0;
+    }
+
+    /**
+     * @return le nombre de positions enregistrées
+     */
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return true si aucune position n'est enregistrée, false sinon
+     */
+    @Override
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * @return la capacité actuelle du tampon
+     */
+    public int capacity() {
+        return latitudes.length;
+    }
+
+    @Override
+    public double getLatitude(int index) {
+        checkIndex(index);
+        return latitudes[index];
+    }
+
+    @Override
+    public double getLongitude(int index) {
+        checkIndex(index);
+        return longitudes[index];
+    }
+
+    @Override
+    public double getAltitude(int index) {
+        checkIndex(index);
+        return altitudes[index];
+    }
+
+    @Override
+    public long getTime(int index) {
+        checkIndex(index);
+        return times[index];
+    }
+
+    @Override
+    public float getAccuracy(int index) {
+        checkIndex(index);
+        return accuracies[index];
+    }
+
+    /**
+     * Vérifie qu'un indice correspond à une position enregistrée.
+     * @param index indice à vérifier
+     */
+    private void checkIndex(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package fr.gr3.strovo.utils.parcours;
+
+/**
+ * Encodage compact des coordonnées d'un tracé, utilisable dans du JSON.
+ * Les coordonnées sont converties en virgule fixe, puis chaque position est codée par sa
+ * différence avec la précédente, au format « encoded polyline » de Google.
+ */
+public final class TrackCodec {
+
+    /** Précision par défaut de l'encodage, en nombre de décimales */
+    public static final int POLYLINE_PRECISION = 6;
+
+    private TrackCodec() { }
+
+    /**
+     * Encode les coordonnées d'un tracé au format « encoded polyline ».
+     * @param track tracé à encoder
+     * @param precision nombre de décimales conservées, 5 pour le format Google d'origine
+     * @return les coordonnées encodées
+     */
+    public static String encodePolyline(TrackBuffer track, int precision) {
+        double factor = Math.pow(10, precision);
+        StringBuilder builder = new StringBuilder(track.size() * 8);
+        long lastLatitude = 0;
+        long lastLongitude = 0;
+        for (int i = 0; i < track.size(); i++) {
+            long latitude = Math.round(track.getLatitude(i) * factor);
+            long longitude = Math.round(track.getLongitude(i) * factor);
+            appendPolylineValue(builder, latitude - lastLatitude);
+            appendPolylineValue(builder, longitude - lastLongitude);
+            lastLatitude = latitude;
+            lastLongitude = longitude;
+        }
+        return builder.toString();
+    }
+
+    /**
+     * Décode des coordonnées au format « encoded polyline ».
+     * @param encoded coordonnées encodées
+     * @param precision nombre de décimales utilisé à l'encodage
+     * @return le tracé décodé
+     * @throws IllegalArgumentException si les données sont tronquées ou invalides
+     */
+    public static TrackBuffer decodePolyline(String encoded, int precision) {
+        double factor = Math.pow(10, precision);
+        // Chaque position occupe au moins deux caractères
+        TrackBuffer track = new TrackBuffer(encoded.length() / 2);
+        int[] index = {0};
+        long latitude = 0;
+        long longitude = 0;
+        while (index[0] < encoded.length()) {
+            latitude += readPolylineValue(encoded, index);
+            longitude += readPolylineValue(encoded, index);
+            track.add(latitude / factor, longitude / factor);
+        }
+        return track;
+    }
+
+    /**
+     * Ajoute une valeur au format « encoded polyline » : valeur zig-zag découpée en groupes
+     * de 5 bits, chaque groupe étant décalé de 63 pour rester dans les caractères imprimables.
+     */
+    private static void appendPolylineValue(StringBuilder builder, long value) {
+        long remaining = value < 0 ? ~(value << 1) : value << 1;
+        while (remaining >= 0x20) {
+            builder.append((char) ((0x20 | (remaining & 0x1F)) + 63));
+            remaining >>= 5;
+        }
+        builder.append((char) (remaining + 63));
+    }
+
+    /**
+     * Lit une valeur au format « encoded polyline ».
+     * @param index position de lecture, mise à jour après la lecture
+     */
+    private static long readPolylineValue(String encoded, int[] index) {
+        long result = 0;
+        int shift = 0;
+        int chunk;
+        do {
+            if (index[0] >= encoded.length() || shift > 60) {
+                throw new IllegalArgumentException("Coordonnées tronquées");
+            }
+            chunk = encoded.charAt(index[0]++) - 63;
+            if (chunk < 0 || chunk > 0x3F) {
+                throw new IllegalArgumentException("Caractère invalide : " + (char) (chunk + 63));
+            }
+            result |= (long) (chunk & 0x1F) << shift;
+            shift += 5;
+        } while (chunk >= 0x20);
+        return (result & 1) != 0 ? ~(result >> 1) : result >> 1;
+    }
+}
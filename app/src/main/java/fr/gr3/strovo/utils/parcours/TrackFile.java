@@ -0,0 +1,207 @@
+package fr.gr3.strovo.utils.parcours;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+
+/**
+ * Tracé enregistré dans un fichier projeté en mémoire.
+ * Le fichier commence par un en-tête (nombre de positions et rectangle englobant), suivi
+ * d'un enregistrement de taille fixe par position : la position d'indice i est lue directement
+ * à l'adresse {@code HEADER_SIZE + i * RECORD_SIZE}, sans décodage ni objet par position.
+ * Ouvrir un long tracé ne lit donc que son en-tête ; les pages du fichier sont chargées
+ * par le système au fil des lectures.
+ */
+public class TrackFile implements Track {
+
+    /** Signature du format, « STRT » */
+    private static final int MAGIC = 0x53545254;
+
+    /** Version du format */
+    private static final int VERSION = 1;
+
+    /** Taille de l'en-tête : signature, version, nombre de positions, réservé, rectangle englobant */
+    public static final int HEADER_SIZE = 4 * 4 + 4 * 8;
+
+    /** Taille d'une position : latitude, longitude, altitude, date, précision */
+    public static final int RECORD_SIZE = 3 * 8 + 8 + 4;
+
+    /** Nombre de positions écrites à la fois */
+    private static final int WRITE_BATCH = 1024;
+
+    /** Contenu du fichier */
+    private final ByteBuffer buffer;
+
+    /** Nombre de positions */
+    private final int size;
+
+    /**
+     * @param buffer contenu du fichier, en-tête vérifié
+     */
+    private TrackFile(ByteBuffer buffer) {
+        this.buffer = buffer;
+        this.size = buffer.getInt(8);
+    }
+
+    /**
+     * Ouvre un fichier de tracé en le projetant en mémoire.
+     * @param file fichier écrit par {@link #write(File, Track)}
+     * @return le tracé
+     * @throws IOException si le fichier ne peut pas être lu ou n'est pas un fichier de tracé
+     */
+    public static TrackFile open(File file) throws IOException {
+        try (RandomAccessFile input = new RandomAccessFile(file, "r")) {
+            FileChannel channel = input.getChannel();
+            long length = channel.size();
+            if (length < HEADER_SIZE) {
+                throw new IOException("Fichier de tracé tronqué : " + file);
+            }
+            // La projection reste valide après la fermeture du fichier
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, length)
+                    .order(ByteOrder.LITTLE_ENDIAN);
+            if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+                throw new IOException("Format de tracé inconnu : " + file);
+            }
+            int size = buffer.getInt(8);
+            if (size < 0 || length != HEADER_SIZE + (long) size * RECORD_SIZE) {
+                throw new IOException("Fichier de tracé tronqué : " + file);
+            }
+            return new TrackFile(buffer);
+        }
+    }
+
+    /**
+     * Enregistre un tracé dans un fichier. Le fichier est écrit à côté puis renommé :
+     * un arrêt brutal laisse l'ancien fichier ou le nouveau, jamais un fichier incomplet.
+     * @param file fichier à écrire
+     * @param track tracé à enregistrer
+     * @throws IOException en cas d'erreur d'écriture
+     */
+    public static void write(File file, Track track) throws IOException {
+        int size = track.size();
+        double minLatitude = 0, minLongitude = 0, maxLatitude = 0, maxLongitude = 0;
+        if (size > 0) {
+            minLatitude = maxLatitude = track.getLatitude(0);
+            minLongitude = maxLongitude = track.getLongitude(0);
+        }
+        for (int i = 1; i < size; i++) {
+            minLatitude = Math.min(minLatitude, track.getLatitude(i));
+            maxLatitude = Math.max(maxLatitude, track.getLatitude(i));
+            minLongitude = Math.min(minLongitude, track.getLongitude(i));
+            maxLongitude = Math.max(maxLongitude, track.getLongitude(i));
+        }
+
+        File temp = new File(file.getPath() + ".tmp");
+        try (FileOutputStream output = new FileOutputStream(temp)) {
+            FileChannel channel = output.getChannel();
+            ByteBuffer buffer = ByteBuffer.allocate(Math.max(HEADER_SIZE, WRITE_BATCH * RECORD_SIZE))
+                    .order(ByteOrder.LITTLE_ENDIAN);
+            buffer.putInt(MAGIC).putInt(VERSION).putInt(size).putInt(0)
+                    .putDouble(minLatitude).putDouble(minLongitude)
+                    .putDouble(maxLatitude).putDouble(maxLongitude);
+            for (int i = 0; i < size; i++) {
+                if (buffer.remaining() < RECORD_SIZE) {
+                    flush(channel, buffer);
+                }
+                buffer.putDouble(track.getLatitude(i))
+                        .putDouble(track.getLongitude(i))
+                        .putDouble(track.getAltitude(i))
+                        .putLong(track.getTime(i))
+                        .putFloat(track.getAccuracy(i));
+            }
+            flush(channel, buffer);
+            output.getFD().sync();
+        } catch (IOException e) {
+            temp.delete();
+            throw e;
+        }
+        if (!temp.renameTo(file)) {
+            temp.delete();
+            throw new IOException("Impossible de renommer " + temp);
+        }
+    }
+
+    /**
+     * Ecrit le contenu du tampon puis le vide.
+     */
+    private static void flush(FileChannel channel, ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public double getLatitude(int index) {
+        return buffer.getDouble(offset(index));
+    }
+
+    @Override
+    public double getLongitude(int index) {
+        return buffer.getDouble(offset(index) + 8);
+    }
+
+    @Override
+    public double getAltitude(int index) {
+        return buffer.getDouble(offset(index) + 16);
+    }
+
+    @Override
+    public long getTime(int index) {
+        return buffer.getLong(offset(index) + 24);
+    }
+
+    @Override
+    public float getAccuracy(int index) {
+        return buffer.getFloat(offset(index) + 32);
+    }
+
+    /**
+     * @return la latitude minimale des positions, 0 si le tracé est vide
+     */
+    public double getMinLatitude() {
+        return buffer.getDouble(16);
+    }
+
+    /**
+     * @return la longitude minimale des positions, 0 si le tracé est vide
+     */
+    public double getMinLongitude() {
+        return buffer.getDouble(24);
+    }
+
+    /**
+     * @return la latitude maximale des positions, 0 si le tracé est vide
+     */
+    public double getMaxLatitude() {
+        return buffer.getDouble(32);
+    }
+
+    /**
+     * @return la longitude maximale des positions, 0 si le tracé est vide
+     */
+    public double getMaxLongitude() {
+        return buffer.getDouble(40);
+    }
+
+    /**
+     * Calcule l'adresse d'une position dans le fichier.
+     * @param index indice de la position
+     */
+    private int offset(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+        return HEADER_SIZE + index * RECORD_SIZE;
+    }
+}
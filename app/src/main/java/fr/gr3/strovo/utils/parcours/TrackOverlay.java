@@ -0,0 +1,125 @@
+package fr.gr3.strovo.utils.parcours;
+
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.Path;
+import android.graphics.Point;
+
+import org.osmdroid.util.BoundingBox;
+import org.osmdroid.util.GeoPoint;
+import org.osmdroid.views.Projection;
+import org.osmdroid.views.overlay.Overlay;
+
+/**
+ * Affiche un tracé sur la carte en lisant ses positions à chaque dessin.
+ * Contrairement à une Polyline, aucune liste de GeoPoint n'est construite : le point et
+ * le chemin sont réutilisés, et les positions confondues à l'écran ne sont pas tracées.
+ */
+public class TrackOverlay extends Overlay {
+
+    /** Tracé affiché */
+    private Track track = new TrackBuffer(0);
+
+    /** Rectangle englobant le tracé, null si le tracé est vide */
+    private BoundingBox boundingBox;
+
+    /** Style du tracé */
+    private final Paint paint = new Paint(Paint.ANTI_ALIAS_FLAG);
+
+    /** Chemin réutilisé à chaque dessin */
+    private final Path path = new Path();
+
+    /** Position réutilisée pour la projection */
+    private final GeoPoint geoPoint = new GeoPoint(0.0, 0.0);
+
+    /** Point réutilisé pour la projection */
+    private final Point pixel = new Point();
+
+    /**
+     * Construit le calque.
+     * @param color couleur du tracé
+     * @param width épaisseur du tracé en pixels
+     */
+    public TrackOverlay(int color, float width) {
+        paint.setColor(color);
+        paint.setStrokeWidth(width);
+        paint.setStyle(Paint.Style.STROKE);
+        paint.setStrokeJoin(Paint.Join.ROUND);
+        paint.setStrokeCap(Paint.Cap.ROUND);
+    }
+
+    /**
+     * Change le tracé affiché.
+     * @param track tracé à afficher
+     */
+    public void setTrack(Track track) {
+        this.track = track;
+        if (track instanceof TrackFile) {
+            // Le rectangle englobant est lu dans l'en-tête du fichier
+            TrackFile file = (TrackFile) track;
+            boundingBox = track.isEmpty() ? null : new BoundingBox(file.getMaxLatitude(),
+                    file.getMaxLongitude(), file.getMinLatitude(), file.getMinLongitude());
+        } else {
+            boundingBox = computeBoundingBox(track);
+        }
+    }
+
+    /**
+     * @return le rectangle englobant le tracé, null si le tracé est vide
+     */
+    public BoundingBox getBoundingBox() {
+        return boundingBox;
+    }
+
+    @Override
+    public void draw(Canvas canvas, Projection projection) {
+        if (boundingBox == null || !isVisible(projection.getBoundingBox())) {
+            return;
+        }
+        path.rewind();
+        int lastX = 0;
+        int lastY = 0;
+        for (int i = 0; i < track.size(); i++) {
+            geoPoint.setCoords(track.getLatitude(i), track.getLongitude(i));
+            projection.toPixels(geoPoint, pixel);
+            if (i == 0) {
+                path.moveTo(pixel.x, pixel.y);
+            } else if (pixel.x != lastX || pixel.y != lastY || i == track.size() - 1) {
+                path.lineTo(pixel.x, pixel.y);
+            } else {
+                continue;
+            }
+            lastX = pixel.x;
+            lastY = pixel.y;
+        }
+        canvas.drawPath(path, paint);
+    }
+
+    /**
+     * @return true si le tracé croise la zone affichée
+     */
+    private boolean isVisible(BoundingBox screen) {
+        return boundingBox.getLatSouth() <= screen.getLatNorth()
+                && boundingBox.getLatNorth() >= screen.getLatSouth()
+                && boundingBox.getLonWest() <= screen.getLonEast()
+                && boundingBox.getLonEast() >= screen.getLonWest();
+    }
+
+    /**
+     * Calcule le rectangle englobant d'un tracé.
+     */
+    private static BoundingBox computeBoundingBox(Track track) {
+        if (track.isEmpty()) {
+            return null;
+        }
+        double north = track.getLatitude(0), south = north;
+        double east = track.getLongitude(0), west = east;
+        for (int i = 1; i < track.size(); i++) {
+            north = Math.max(north, track.getLatitude(i));
+            south = Math.min(south, track.getLatitude(i));
+            east = Math.max(east, track.getLongitude(i));
+            west = Math.min(west, track.getLongitude(i));
+        }
+        return new BoundingBox(north, east, south, west);
+    }
+}
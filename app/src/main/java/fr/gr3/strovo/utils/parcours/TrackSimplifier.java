@@ -0,0 +1,167 @@
+package fr.gr3.strovo.utils.parcours;
+
+/**
+ * Simplification en continu d'un tracé (Douglas-Peucker sur fenêtre glissante bornée).
+ * Chaque position reçue prolonge la fenêtre ouverte depuis la dernière position conservée.
+ * Tant que toutes les positions de la fenêtre restent à moins de la tolérance du segment
+ * reliant la position conservée à la nouvelle position, aucune n'est émise ; dans le cas
+ * contraire, la position précédente est conservée et devient le nouveau point de départ.
+ * Le coût par position est borné par la taille de la fenêtre et aucune allocation n'est faite.
+ */
+public class TrackSimplifier {
+
+    /** Tolérance par défaut en mètres */
+    public static final double DEFAULT_TOLERANCE = 3;
+
+    /** Taille maximale par défaut de la fenêtre */
+    public static final int DEFAULT_WINDOW = 64;
+
+    /** Nombre de mètres par degré de latitude */
+    private static final double METERS_PER_DEGREE = Math.PI * GeoUtils.EARTH_RADIUS / 180;
+
+    /** Tolérance en mètres */
+    private final double tolerance;
+
+    /** Taille maximale de la fenêtre */
+    private final int windowSize;
+
+    /** Positions conservées */
+    private final TrackBuffer output;
+
+    /** Positions en attente depuis la dernière position conservée */
+    private final TrackBuffer window;
+
+    /** Nombre de positions reçues */
+    private int inputCount;
+
+    /**
+     * Construit un simplificateur avec la tolérance et la fenêtre par défaut.
+     * @param output tampon recevant les positions conservées
+     */
+    public TrackSimplifier(TrackBuffer output) {
+        this(output, DEFAULT_TOLERANCE, DEFAULT_WINDOW);
+    }
+
+    /**
+     * Construit un simplificateur.
+     * @param output tampon recevant les positions conservées
+     * @param tolerance écart maximal toléré entre le tracé et le tracé simplifié, en mètres
+     * @param windowSize nombre maximal de positions en attente
+     */
+    public TrackSimplifier(TrackBuffer output, double tolerance, int windowSize) {
+        if (windowSize < 2) {
+            throw new IllegalArgumentException("Fenêtre trop petite : " + windowSize);
+        }
+        this.output = output;
+        this.tolerance = tolerance;
+        this.windowSize = windowSize;
+        this.window = new TrackBuffer(windowSize);
+    }
+
+    /**
+     * Ajoute une position au tracé.
+     * @param latitude latitude en degrés
+     * @param longitude longitude en degrés
+     * @param altitude altitude en mètres
+     * @param time date en millisecondes
+     * @param accuracy précision en mètres
+     */
+    public void add(double latitude, double longitude, double altitude, long time, float accuracy) {
+        inputCount++;
+
+        // La première position est toujours conservée
+        if (output.isEmpty()) {
+            output.add(latitude, longitude, altitude, time, accuracy);
+            return;
+        }
+
+        if (!window.isEmpty() && !fitsSegment(latitude, longitude)) {
+            // La position précédente est conservée et la fenêtre repart d'elle
+            emitWindowLast();
+            window.clear();
+        } else if (window.size() == windowSize) {
+            // Fenêtre pleine, la position précédente est conservée pour borner le coût
+            emitWindowLast();
+            window.clear();
+        }
+        window.add(latitude, longitude, altitude, time, accuracy);
+    }
+
+    /**
+     * Conserve la dernière position en attente, à appeler à la fin de l'enregistrement.
+     */
+    public void flush() {
+        if (!window.isEmpty()) {
+            emitWindowLast();
+            window.clear();
+        }
+    }
+
+    /**
+     * Vérifie que toutes les positions de la fenêtre restent proches du segment reliant
+     * la dernière position conservée à la nouvelle position.
+     * @param latitude latitude de la nouvelle position
+     * @param longitude longitude de la nouvelle position
+     * @return true si toutes les positions sont à moins de la tolérance, false sinon
+     */
+    private boolean fitsSegment(double latitude, double longitude) {
+        int anchor = output.size() - 1;
+        double anchorLatitude = output.getLatitude(anchor);
+        double anchorLongitude = output.getLongitude(anchor);
+        // Projection équirectangulaire locale autour de la dernière position conservée
+        double lonScale = Math.cos(Math.toRadians(anchorLatitude)) * METERS_PER_DEGREE;
+        double endX = (longitude - anchorLongitude) * lonScale;
+        double endY = (latitude - anchorLatitude) * METERS_PER_DEGREE;
+        double lengthSquared = endX * endX + endY * endY;
+
+        for (int i = 0; i < window.size(); i++) {
+            double x = (window.getLongitude(i) - anchorLongitude) * lonScale;
+            double y = (window.getLatitude(i) - anchorLatitude) * METERS_PER_DEGREE;
+            double distance;
+            if (lengthSquared == 0) {
+                distance = Math.sqrt(x * x + y * y);
+            } else {
+                double t = Math.max(0, Math.min(1, (x * endX + y * endY) / lengthSquared));
+                double dx = x - t * endX;
+                double dy = y - t * endY;
+                distance = Math.sqrt(dx * dx + dy * dy);
+            }
+            if (distance > tolerance) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Conserve la dernière position de la fenêtre.
+     */
+    private void emitWindowLast() {
+        int last = window.size() - 1;
+        output.add(window.getLatitude(last), window.getLongitude(last), window.getAltitude(last),
+                window.getTime(last), window.getAccuracy(last));
+    }
+
+    /**
+     * @return le nombre de positions reçues
+     */
+    public int getInputCount() {
+        return inputCount;
+    }
+
+    /**
+     * @return le nombre de positions conservées, en comptant la position en attente
+     *         qui sera conservée à la fin de l'enregistrement
+     */
+    public int getOutputCount() {
+        return output.size() + (window.isEmpty() ? 0 : 1);
+    }
+
+    /**
+     * @return le taux de compression (positions reçues / positions conservées), 1 si aucune position
+     */
+    public double getCompressionRatio() {
+        int outputCount = getOutputCount();
+        return outputCount == 0 ? 1 : (double) inputCount / outputCount;
+    }
+}
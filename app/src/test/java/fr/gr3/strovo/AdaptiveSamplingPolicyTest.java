@@ -0,0 +1,74 @@
+package fr.gr3.strovo;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import fr.gr3.strovo.utils.parcours.AdaptiveSamplingPolicy;
+import fr.gr3.strovo.utils.parcours.GeoUtils;
+
+/** Tests de la classe {@link AdaptiveSamplingPolicy} */
+public class AdaptiveSamplingPolicyTest {
+
+    /** Différence d'angle correspondant à un mètre sur un méridien */
+    private static final double ONE_METER = 1 / (Math.PI * GeoUtils.EARTH_RADIUS / 180);
+
+    @Test
+    public void stationaryTest() {
+        AdaptiveSamplingPolicy policy = new AdaptiveSamplingPolicy();
+        boolean changed = false;
+        for (int i = 0; i < 10; i++) {
+            changed |= policy.update(44.35, 2.57, i * 3000L);
+        }
+
+        Assert.assertTrue(changed);
+        Assert.assertEquals(AdaptiveSamplingPolicy.STATIONARY, policy.getLevel());
+        Assert.assertEquals(10000, policy.getInterval());
+    }
+
+    @Test
+    public void straightLineTest() {
+        AdaptiveSamplingPolicy policy = new AdaptiveSamplingPolicy();
+        // 4 m/s vers le nord
+        for (int i = 0; i < 10; i++) {
+            policy.update(44.35 + i * 12 * ONE_METER, 2.57, i * 3000L);
+        }
+
+        Assert.assertEquals(AdaptiveSamplingPolicy.STRAIGHT, policy.getLevel());
+        Assert.assertEquals(5000, policy.getInterval());
+    }
+
+    @Test
+    public void fastTurnTest() {
+        AdaptiveSamplingPolicy policy = new AdaptiveSamplingPolicy();
+        double latitude = 44.35;
+        double longitude = 2.57;
+        // Zigzag à environ 4 m/s
+        for (int i = 0; i < 6; i++) {
+            latitude += 12 * ONE_METER;
+            longitude += (i % 2 == 0 ? 1 : -1) * 12 * ONE_METER;
+            policy.update(latitude, longitude, i * 3000L);
+        }
+
+        Assert.assertEquals(AdaptiveSamplingPolicy.FAST_TURN, policy.getLevel());
+        Assert.assertEquals(1000, policy.getInterval());
+        Assert.assertEquals(1, policy.getMinDistance(), 0);
+    }
+
+    @Test
+    public void relaxNeedsConfirmationTest() {
+        AdaptiveSamplingPolicy policy = new AdaptiveSamplingPolicy();
+        double latitude = 44.35;
+        double longitude = 2.57;
+        long time = 0;
+        for (int i = 0; i < 6; i++) {
+            latitude += 12 * ONE_METER;
+            longitude += (i % 2 == 0 ? 1 : -1) * 12 * ONE_METER;
+            policy.update(latitude, longitude, time += 3000);
+        }
+        Assert.assertEquals(AdaptiveSamplingPolicy.FAST_TURN, policy.getLevel());
+
+        // Une seule position immobile ne suffit pas à relâcher l'échantillonnage
+        Assert.assertFalse(policy.update(latitude, longitude, time += 3000));
+        Assert.assertEquals(AdaptiveSamplingPolicy.FAST_TURN, policy.getLevel());
+    }
+}
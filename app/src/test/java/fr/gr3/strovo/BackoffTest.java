@@ -0,0 +1,55 @@
+package fr.gr3.strovo;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Random;
+
+import fr.gr3.strovo.api.outbox.Backoff;
+
+/** Tests de la classe {@link Backoff} */
+public class BackoffTest {
+
+    @Test
+    public void exponentialTest() {
+        Backoff backoff = new Backoff(1000, 60000, new Random(3));
+
+        for (int failures = 1; failures <= 6; failures++) {
+            long expected = Math.min(1000L << (failures - 1), 60000);
+            for (int i = 0; i < 100; i++) {
+                long delay = backoff.nextDelay(failures);
+                Assert.assertTrue("Délai " + delay, delay >= expected / 2 && delay <= expected);
+            }
+        }
+    }
+
+    @Test
+    public void maxDelayTest() {
+        Backoff backoff = new Backoff(1000, 60000, new Random(3));
+
+        for (int failures : new int[] {7, 20, 64, 1000, Integer.MAX_VALUE}) {
+            long delay = backoff.nextDelay(failures);
+            Assert.assertTrue("Délai " + delay, delay >= 30000 && delay <= 60000);
+        }
+    }
+
+    @Test
+    public void jitterTest() {
+        Backoff backoff = new Backoff(1000, 60000, new Random(3));
+
+        // Des envois en échec au même moment sont retentés à des dates différentes
+        long min = Long.MAX_VALUE;
+        long max = Long.MIN_VALUE;
+        for (int i = 0; i < 50; i++) {
+            long delay = backoff.nextDelay(5);
+            min = Math.min(min, delay);
+            max = Math.max(max, delay);
+        }
+        Assert.assertTrue(max - min > 4000);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void invalidDelaysTest() {
+        new Backoff(1000, 500, new Random());
+    }
+}
@@ -0,0 +1,182 @@
+package fr.gr3.strovo;
+
+import com.sun.net.httpserver.HttpServer;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import fr.gr3.strovo.api.HttpCompression;
+
+/**
+ * Tests de la classe {@link HttpCompression}, avec un serveur local jouant le rôle de l'API.
+ */
+public class HttpCompressionTest {
+
+    /** Serveur local remplaçant l'API */
+    private HttpServer server;
+
+    /** Corps du dernier parcours reçu par le serveur, décompressé */
+    private byte[] receivedBody;
+
+    /** Nombre d'octets du dernier corps reçu par le serveur */
+    private int receivedBytes;
+
+    /** Parcours renvoyé par le serveur */
+    private byte[] parcoursJson;
+
+    @Before
+    public void startServer() throws IOException {
+        parcoursJson = parcoursJson(5000).getBytes(StandardCharsets.UTF_8);
+
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/parcours", exchange -> {
+            byte[] body = readAll(exchange.getRequestBody());
+            receivedBytes = body.length;
+            boolean compressed = HttpCompression.GZIP.equals(
+                    exchange.getRequestHeaders().getFirst(HttpCompression.CONTENT_ENCODING));
+            receivedBody = compressed ? HttpCompression.gunzip(body) : body;
+
+            byte[] response = parcoursJson;
+            String acceptEncoding = exchange.getRequestHeaders().getFirst(HttpCompression.ACCEPT_ENCODING);
+            if (acceptEncoding != null && acceptEncoding.contains(HttpCompression.GZIP)) {
+                response = HttpCompression.gzip(response);
+                exchange.getResponseHeaders().add(HttpCompression.CONTENT_ENCODING, HttpCompression.GZIP);
+            }
+            exchange.sendResponseHeaders(200, response.length);
+            try (OutputStream output = exchange.getResponseBody()) {
+                output.write(response);
+            }
+        });
+        server.start();
+    }
+
+    @After
+    public void stopServer() {
+        server.stop(0);
+    }
+
+    @Test
+    public void uploadSavingsTest() throws IOException {
+        byte[] body = parcoursJson(5000).getBytes(StandardCharsets.UTF_8);
+
+        Exchange exchange = send(body, true);
+
+        Assert.assertTrue(Arrays.equals(body, receivedBody));
+        Assert.assertTrue("Envoyé " + receivedBytes + " / " + body.length, receivedBytes < body.length / 2);
+        Assert.assertTrue(Arrays.equals(parcoursJson, exchange.body));
+        Assert.assertTrue("Reçu " + exchange.transferred + " / " + parcoursJson.length,
+                exchange.transferred < parcoursJson.length / 2);
+    }
+
+    @Test
+    public void uncompressedResponseTest() throws IOException {
+        Exchange exchange = send(new byte[0], false);
+
+        Assert.assertEquals(parcoursJson.length, exchange.transferred);
+        Assert.assertTrue(Arrays.equals(parcoursJson, exchange.body));
+    }
+
+    @Test
+    public void alreadyDecodedTest() throws IOException {
+        // Corps annoncé compressé mais déjà décompressé par la couche HTTP
+        byte[] body = "[]".getBytes(StandardCharsets.UTF_8);
+        Map<String, String> headers = Collections.singletonMap("content-encoding", "gzip");
+
+        Assert.assertSame(body, HttpCompression.decode(body, headers));
+        Assert.assertSame(body, HttpCompression.decode(body, null));
+    }
+
+    /**
+     * Envoie un corps au serveur comme le ferait une GzipRequest.
+     * @param body corps non compressé, vide si la requête n'a pas de corps
+     * @param acceptGzip true pour accepter une réponse compressée
+     * @return la réponse reçue
+     */
+    private Exchange send(byte[] body, boolean acceptGzip) throws IOException {
+        URL url = new URL("http://127.0.0.1:" + server.getAddress().getPort() + "/parcours");
+        HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+        connection.setRequestMethod("POST");
+        connection.setDoOutput(true);
+        if (acceptGzip) {
+            connection.setRequestProperty(HttpCompression.ACCEPT_ENCODING, HttpCompression.GZIP);
+        }
+        byte[] sent = body;
+        if (body.length > 0) {
+            sent = HttpCompression.gzip(body);
+            connection.setRequestProperty(HttpCompression.CONTENT_ENCODING, HttpCompression.GZIP);
+        }
+        try (OutputStream output = connection.getOutputStream()) {
+            output.write(sent);
+        }
+
+        Exchange exchange = new Exchange();
+        byte[] raw = readAll(connection.getInputStream());
+        exchange.transferred = raw.length;
+        Map<String, String> headers = new HashMap<>();
+        String encoding = connection.getHeaderField(HttpCompression.CONTENT_ENCODING);
+        if (encoding != null) {
+            headers.put(HttpCompression.CONTENT_ENCODING, encoding);
+        }
+        exchange.body = HttpCompression.decode(raw, headers);
+        connection.disconnect();
+        return exchange;
+    }
+
+    /**
+     * Construit le JSON d'un parcours réaliste : marche bruitée avec coordonnées en pleine précision.
+     * @param size nombre de positions
+     */
+    private static String parcoursJson(int size) {
+        StringBuilder json = new StringBuilder(size * 40);
+        json.append("{\"name\":\"Sortie longue\",\"description\":\"Boucle du lac\",")
+                .append("\"date\":\"2024-03-02T09:12:44.120\",\"time\":5400000,\"speed\":9.8,")
+                .append("\"distance\":14700.5,\"elevation\":312.0,\"interestPoints\":[],\"coordinates\":[");
+        java.util.Random random = new java.util.Random(7);
+        double latitude = 44.350213;
+        double longitude = 2.571148;
+        for (int i = 0; i < size; i++) {
+            latitude += 0.000012 + random.nextGaussian() * 0.000004;
+            longitude += 0.000009 + random.nextGaussian() * 0.000004;
+            if (i > 0) {
+                json.append(',');
+            }
+            json.append('[').append(latitude).append(',').append(longitude).append(']');
+        }
+        return json.append("]}").toString();
+    }
+
+    private static byte[] readAll(InputStream input) throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int read;
+        while ((read = input.read(buffer)) != -1) {
+            output.write(buffer, 0, read);
+        }
+        return output.toByteArray();
+    }
+
+    /** Réponse reçue du serveur */
+    private static class Exchange {
+
+        /** Nombre d'octets transférés */
+        int transferred;
+
+        /** Corps décompressé */
+        byte[] body;
+    }
+}
@@ -0,0 +1,164 @@
+package fr.gr3.strovo;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+
+import fr.gr3.strovo.api.outbox.OutboxEntry;
+import fr.gr3.strovo.api.outbox.OutboxStore;
+
+/** Tests de la classe {@link OutboxStore} */
+public class OutboxStoreTest {
+
+    /** Répertoire temporaire de la file */
+    private File directory;
+
+    @Before
+    public void createDirectory() throws IOException {
+        directory = Files.createTempDirectory("outbox").toFile();
+    }
+
+    @After
+    public void deleteDirectory() {
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        directory.delete();
+    }
+
+    @Test
+    public void addAndReloadTest() throws IOException {
+        OutboxStore store = new OutboxStore(directory);
+        OutboxEntry first = store.add(null, body("{\"name\":\"a\"}"), 1000);
+        OutboxEntry second = store.add(null, body("{\"name\":\"b\"}"), 2000);
+        Assert.assertNotEquals(first.getKey(), second.getKey());
+
+        // Nouvelle instance, comme après un redémarrage de l'application
+        List<OutboxEntry> entries = new OutboxStore(directory).list();
+
+        Assert.assertEquals(2, entries.size());
+        Assert.assertEquals(first.getKey(), entries.get(0).getKey());
+        Assert.assertEquals(second.getKey(), entries.get(1).getKey());
+        Assert.assertEquals("{\"name\":\"b\"}", read(store.bodyFile(entries.get(1))));
+        Assert.assertTrue(entries.get(0).isDue(1000));
+    }
+
+    @Test
+    public void failureStateTest() throws IOException {
+        OutboxStore store = new OutboxStore(directory);
+        OutboxEntry entry = store.add(null, body("{}"), 1000);
+
+        entry.recordFailure(5000, 30000);
+        entry.recordFailure(40000, 60000);
+        store.update(entry);
+
+        OutboxEntry reloaded = new OutboxStore(directory).list().get(0);
+        Assert.assertEquals(2, reloaded.getFailures());
+        Assert.assertEquals(100000, reloaded.getNextAttempt());
+        Assert.assertEquals(1000, reloaded.getCreatedAt());
+        Assert.assertFalse(reloaded.isDue(99999));
+        Assert.assertTrue(reloaded.isDue(100000));
+    }
+
+    @Test
+    public void accountTest() throws IOException {
+        OutboxStore store = new OutboxStore(directory);
+        store.add("parcours-1", "a@strovo.fr", bytes("{}"), 1000);
+        OutboxEntry entry = store.add("parcours-2", null, bytes("{}"), 2000);
+        entry.recordFailure(5000, 30000);
+        store.update(entry);
+
+        // Le compte est conservé après un redémarrage et une mise à jour de l'état
+        List<OutboxEntry> entries = new OutboxStore(directory).list();
+        Assert.assertEquals("a@strovo.fr", entries.get(0).getAccount());
+        Assert.assertNull(entries.get(1).getAccount());
+        Assert.assertEquals(1, entries.get(1).getFailures());
+    }
+
+    @Test
+    public void removeTest() throws IOException {
+        OutboxStore store = new OutboxStore(directory);
+        OutboxEntry entry = store.add(null, body("{}"), 1000);
+
+        store.remove(entry);
+
+        Assert.assertTrue(store.list().isEmpty());
+        Assert.assertEquals(0, directory.listFiles().length);
+    }
+
+    @Test
+    public void rejectTest() throws IOException {
+        OutboxStore store = new OutboxStore(directory);
+        OutboxEntry entry = store.add("parcours-1", null, bytes("{\"v\":1}"), 1000);
+        store.update(entry);
+
+        store.reject(entry);
+
+        // Le corps est conservé mais l'envoi n'est plus tenté
+        Assert.assertTrue(store.list().isEmpty());
+        Assert.assertEquals("{\"v\":1}", read(new File(directory, "parcours-1.rejected")));
+        Assert.assertEquals(1, directory.listFiles().length);
+    }
+
+    @Test
+    public void sameKeyTest() throws IOException {
+        OutboxStore store = new OutboxStore(directory);
+
+        // Une migration recommencée après un arrêt brutal réécrit le même envoi
+        store.add("parcours-1", null, bytes("{\"v\":1}"), 1000);
+        store.add("parcours-1", null, bytes("{\"v\":2}"), 2000);
+
+        List<OutboxEntry> entries = store.list();
+        Assert.assertEquals(1, entries.size());
+        Assert.assertEquals("{\"v\":2}", read(store.bodyFile(entries.get(0))));
+    }
+
+    @Test
+    public void crashLeftoversTest() throws IOException {
+        OutboxStore store = new OutboxStore(directory);
+        OutboxEntry entry = store.add(null, body("{}"), 1000);
+
+        // Ecriture interrompue, état sans corps d'un envoi terminé, corps sans état
+        write(new File(directory, "interrompu.body.tmp"), "{\"na");
+        write(new File(directory, "termine.state"), "");
+        write(new File(directory, "nouveau.body"), "{}");
+
+        List<OutboxEntry> entries = store.list();
+
+        Assert.assertEquals(2, entries.size());
+        Assert.assertFalse(new File(directory, "interrompu.body.tmp").exists());
+        Assert.assertFalse(new File(directory, "termine.state").exists());
+        OutboxEntry recovered = entries.get(0).getKey().equals(entry.getKey()) ? entries.get(1) : entries.get(0);
+        Assert.assertEquals("nouveau", recovered.getKey());
+        Assert.assertEquals(0, recovered.getFailures());
+    }
+
+    private static OutboxStore.BodyWriter body(String text) {
+        return output -> output.write(bytes(text));
+    }
+
+    private static byte[] bytes(String text) {
+        return text.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static String read(File file) throws IOException {
+        return new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+    }
+
+    private static void write(File file, String text) throws IOException {
+        try (FileOutputStream output = new FileOutputStream(file)) {
+            output.write(bytes(text));
+        }
+    }
+}
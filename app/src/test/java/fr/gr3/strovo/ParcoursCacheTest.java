@@ -0,0 +1,108 @@
+package fr.gr3.strovo;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Date;
+
+import fr.gr3.strovo.api.ParcoursCache;
+import fr.gr3.strovo.api.model.Parcours;
+import fr.gr3.strovo.utils.parcours.TrackBuffer;
+
+/** Tests de la classe {@link ParcoursCache} */
+public class ParcoursCacheTest {
+
+    @Test
+    public void getTest() {
+        ParcoursCache cache = new ParcoursCache(1000);
+        Parcours parcours = parcours(100);
+
+        cache.put("1", parcours);
+
+        Assert.assertSame(parcours, cache.get("1"));
+        Assert.assertNull(cache.get("2"));
+        Assert.assertEquals(100, cache.getPoints());
+    }
+
+    @Test
+    public void evictionByPointsTest() {
+        ParcoursCache cache = new ParcoursCache(1000);
+        cache.put("1", parcours(400));
+        cache.put("2", parcours(400));
+        // Consulter le premier parcours en fait le plus récent
+        cache.get("1");
+
+        cache.put("3", parcours(400));
+
+        Assert.assertNotNull(cache.get("1"));
+        Assert.assertNull(cache.get("2"));
+        Assert.assertNotNull(cache.get("3"));
+        Assert.assertEquals(800, cache.getPoints());
+    }
+
+    @Test
+    public void manySmallParcoursTest() {
+        ParcoursCache cache = new ParcoursCache(1000);
+        cache.put("long", parcours(901));
+        for (int i = 0; i < 10; i++) {
+            cache.put(String.valueOf(i), parcours(10));
+        }
+
+        // Le long parcours est retiré, les petits parcours tiennent ensemble
+        Assert.assertNull(cache.get("long"));
+        Assert.assertEquals(10, cache.size());
+        Assert.assertEquals(100, cache.getPoints());
+    }
+
+    @Test
+    public void tooLargeParcoursTest() {
+        ParcoursCache cache = new ParcoursCache(1000);
+        cache.put("1", parcours(10));
+
+        cache.put("2", parcours(1001));
+
+        Assert.assertNull(cache.get("2"));
+        Assert.assertNotNull(cache.get("1"));
+    }
+
+    @Test
+    public void capacityWeightTest() {
+        ParcoursCache cache = new ParcoursCache(1000);
+        Parcours parcours = parcours(10);
+        parcours.getTrack().ensureCapacity(600);
+
+        cache.put("1", parcours);
+        cache.put("2", parcours(500));
+
+        // Le tampon de 600 positions compte pour sa capacité, pas pour ses 10 positions
+        Assert.assertNull(cache.get("1"));
+        Assert.assertEquals(500, cache.getPoints());
+    }
+
+    @Test
+    public void replaceAndRemoveTest() {
+        ParcoursCache cache = new ParcoursCache(1000);
+        cache.put("1", parcours(300));
+        Parcours updated = parcours(200);
+
+        cache.put("1", updated);
+        Assert.assertSame(updated, cache.get("1"));
+        Assert.assertEquals(200, cache.getPoints());
+
+        cache.remove("1");
+        Assert.assertNull(cache.get("1"));
+        Assert.assertEquals(0, cache.getPoints());
+    }
+
+    /**
+     * Crée un parcours dont le tracé contient le nombre de positions donné.
+     */
+    private static Parcours parcours(int points) {
+        TrackBuffer track = new TrackBuffer(points);
+        for (int i = 0; i < points; i++) {
+            track.add(44.35 + i * 1e-5, 2.57);
+        }
+        return new Parcours("Parcours", "", new Date(), 0, 0, 0, 0, new ArrayList<>(), track);
+    }
+}
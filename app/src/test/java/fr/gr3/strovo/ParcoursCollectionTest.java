@@ -0,0 +1,188 @@
+package fr.gr3.strovo;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+import fr.gr3.strovo.api.model.Parcours;
+import fr.gr3.strovo.utils.parcours.ParcoursCollection;
+import fr.gr3.strovo.utils.parcours.ParcoursQuery;
+
+/** Tests de la classe {@link ParcoursCollection} */
+public class ParcoursCollectionTest {
+
+    @Test
+    public void pagesTest() {
+        ParcoursCollection collection = new ParcoursCollection();
+
+        collection.mergePage(0, range(100, ParcoursCollection.PAGE_SIZE));
+        Assert.assertEquals(ParcoursCollection.PAGE_SIZE, collection.size());
+        Assert.assertEquals(1, collection.getNextPage());
+        Assert.assertFalse(collection.isComplete());
+
+        collection.mergePage(1, range(100 - ParcoursCollection.PAGE_SIZE, 10));
+        Assert.assertEquals(ParcoursCollection.PAGE_SIZE + 10, collection.size());
+        Assert.assertEquals(2, collection.getNextPage());
+        Assert.assertTrue(collection.isComplete());
+        assertNewestFirst(collection);
+    }
+
+    @Test
+    public void shiftedPageTest() {
+        ParcoursCollection collection = new ParcoursCollection();
+        collection.mergePage(0, range(100, ParcoursCollection.PAGE_SIZE));
+
+        // Deux parcours ajoutés entre temps décalent la page suivante
+        collection.mergePage(1, range(102 - ParcoursCollection.PAGE_SIZE, ParcoursCollection.PAGE_SIZE));
+
+        Assert.assertEquals(ParcoursCollection.PAGE_SIZE + 28, collection.size());
+        assertNewestFirst(collection);
+    }
+
+    @Test
+    public void firstPageRemovesDeletedTest() {
+        ParcoursCollection collection = new ParcoursCollection();
+        collection.mergePage(0, range(100, ParcoursCollection.PAGE_SIZE));
+
+        // Parcours 95 supprimé ailleurs : la page revalidée ne le contient plus
+        List<Parcours> page = range(101, ParcoursCollection.PAGE_SIZE + 1);
+        page.remove(6);
+        List<String> removed = collection.mergePage(0, page);
+
+        Assert.assertEquals(Collections.singletonList("95"), removed);
+        Assert.assertEquals(ParcoursCollection.PAGE_SIZE, collection.size());
+        for (Parcours parcours : collection.getParcours()) {
+            Assert.assertNotEquals("95", parcours.getId());
+        }
+        Assert.assertEquals("101", collection.getParcours().get(0).getId());
+    }
+
+    @Test
+    public void ignoredPaginationTest() {
+        ParcoursCollection collection = new ParcoursCollection();
+        List<Parcours> all = range(100, 50);
+
+        // L'API renvoie tous les parcours quelle que soit la page demandée
+        collection.mergePage(0, all);
+        collection.mergePage(1, all);
+
+        Assert.assertEquals(50, collection.size());
+        Assert.assertTrue(collection.isComplete());
+    }
+
+    @Test
+    public void databaseThenPagesTest() {
+        ParcoursCollection collection = new ParcoursCollection();
+
+        // Parcours enregistrés dans la base locale lors d'un lancement précédent
+        collection.applyChanges(range(100, 2 * ParcoursCollection.PAGE_SIZE), Collections.emptyList());
+
+        collection.mergePage(0, range(100, ParcoursCollection.PAGE_SIZE));
+        collection.mergePage(1, range(100 - ParcoursCollection.PAGE_SIZE, ParcoursCollection.PAGE_SIZE));
+
+        // Les pages ne contiennent que des parcours déjà connus, mais les plus anciens restent à charger
+        Assert.assertFalse(collection.isComplete());
+        Assert.assertEquals(2, collection.getNextPage());
+        Assert.assertEquals(2 * ParcoursCollection.PAGE_SIZE, collection.size());
+    }
+
+    @Test
+    public void changesTest() {
+        ParcoursCollection collection = new ParcoursCollection();
+        collection.mergePage(0, range(10, 10));
+
+        Parcours renamed = parcours(5);
+        renamed.setName("Renommé");
+        collection.applyChanges(Arrays.asList(renamed, parcours(11)), Arrays.asList("3", "42"));
+
+        Assert.assertEquals(10, collection.size());
+        Assert.assertEquals("11", collection.getParcours().get(0).getId());
+        Assert.assertSame(renamed, collection.getParcours().get(6));
+        Assert.assertFalse(collection.remove("3"));
+        Assert.assertTrue(collection.remove("5"));
+        assertNewestFirst(collection);
+    }
+
+    @Test
+    public void emptyFirstPageTest() {
+        ParcoursCollection collection = new ParcoursCollection();
+        collection.mergePage(0, range(10, 10));
+
+        collection.mergePage(0, Collections.emptyList());
+
+        Assert.assertEquals(0, collection.size());
+        Assert.assertTrue(collection.isComplete());
+    }
+
+    @Test
+    public void searchTest() {
+        ParcoursCollection collection = new ParcoursCollection();
+        collection.mergePage(0, range(10, 10));
+
+        Parcours renamed = parcours(5);
+        renamed.setName("Renommé");
+        collection.applyChanges(Collections.singletonList(renamed), Collections.singletonList("3"));
+
+        // Le mot « 1 » commence aussi « 10 »
+        Assert.assertEquals(2, collection.query(new ParcoursQuery().withName("parcours 1")).size());
+        Assert.assertTrue(collection.query(new ParcoursQuery().withName("parcours 3")).isEmpty());
+        Assert.assertTrue(collection.query(new ParcoursQuery().withName("parcours 5")).isEmpty());
+        Assert.assertSame(renamed, collection.query(new ParcoursQuery().withName("renomme")).get(0));
+
+        // Parcours retirés par une page qui ne les contient plus
+        collection.mergePage(0, range(10, 3));
+        Assert.assertTrue(collection.query(new ParcoursQuery().withName("renomme")).isEmpty());
+        Assert.assertEquals(3, collection.query(new ParcoursQuery().withName("")).size());
+    }
+
+    @Test
+    public void queryTest() {
+        ParcoursCollection collection = new ParcoursCollection();
+        collection.mergePage(0, range(20, 20));
+        collection.remove("15");
+
+        ParcoursQuery query = new ParcoursQuery().withDate(12 * 3600000L, 16 * 3600000L);
+        List<Parcours> inRange = collection.query(query);
+        Assert.assertEquals(4, inRange.size());
+        Assert.assertEquals("16", inRange.get(0).getId());
+        Assert.assertEquals("12", inRange.get(3).getId());
+
+        // « 1 » commence 1 et 10 à 19, seuls 12, 13, 14 et 16 sont dans l'intervalle
+        Assert.assertEquals(4, collection.query(query.withName("parcours 1")).size());
+        Assert.assertEquals(1, collection.query(new ParcoursQuery().withName("parcours 1")
+                .withDate(Long.MIN_VALUE, 9 * 3600000L)).size());
+        Assert.assertEquals(19, collection.query(new ParcoursQuery().withName(" ")).size());
+    }
+
+    /**
+     * Construit des parcours du plus récent au plus ancien, comme une page de l'API.
+     * @param newest numéro du parcours le plus récent
+     * @param count nombre de parcours
+     */
+    private static List<Parcours> range(int newest, int count) {
+        List<Parcours> parcours = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            parcours.add(parcours(newest - i));
+        }
+        return parcours;
+    }
+
+    /**
+     * Construit le parcours numéro n, enregistré n heures après l'origine.
+     */
+    private static Parcours parcours(int n) {
+        return new Parcours(String.valueOf(n), "Parcours " + n, "", new Date(n * 3600000L));
+    }
+
+    private static void assertNewestFirst(ParcoursCollection collection) {
+        List<Parcours> parcours = collection.getParcours();
+        for (int i = 1; i < parcours.size(); i++) {
+            Assert.assertTrue(parcours.get(i - 1).getDate().after(parcours.get(i).getDate()));
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package fr.gr3.strovo;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+import fr.gr3.strovo.api.model.Parcours;
+import fr.gr3.strovo.utils.parcours.ParcoursQuery;
+import fr.gr3.strovo.utils.parcours.ParcoursQueryEngine;
+import fr.gr3.strovo.utils.parcours.ParcoursSearchIndex;
+
+/** Tests de la classe {@link ParcoursQueryEngine} */
+public class ParcoursQueryEngineTest {
+
+    @Test
+    public void dateRangeTest() {
+        ParcoursQueryEngine engine = new ParcoursQueryEngine();
+        ParcoursSearchIndex searchIndex = new ParcoursSearchIndex();
+        engine.update(newestFirst(100, 10, 10, 20, 30));
+
+        List<Parcours> result = engine.execute(new ParcoursQuery().withDate(20, 100), searchIndex);
+        Assert.assertEquals(3, result.size());
+        Assert.assertEquals(100, result.get(0).getDate().getTime());
+        Assert.assertEquals(20, result.get(2).getDate().getTime());
+
+        // Bornes comprises, dates égales regroupées
+        Assert.assertEquals(2, engine.execute(new ParcoursQuery().withDate(10, 10), searchIndex).size());
+        Assert.assertEquals(3, engine.execute(new ParcoursQuery().withDate(0, 20), searchIndex).size());
+        Assert.assertTrue(engine.execute(new ParcoursQuery().withDate(40, 90), searchIndex).isEmpty());
+        Assert.assertTrue(engine.execute(new ParcoursQuery().withDate(101, 200), searchIndex).isEmpty());
+        Assert.assertTrue(engine.execute(new ParcoursQuery().withDate(30, 20), searchIndex).isEmpty());
+        Assert.assertEquals(3, engine.execute(new ParcoursQuery().withDate(Long.MIN_VALUE, 20), searchIndex).size());
+        Assert.assertEquals(2, engine.execute(new ParcoursQuery().withDate(30, Long.MAX_VALUE), searchIndex).size());
+    }
+
+    @Test
+    public void emptyQueryTest() {
+        ParcoursQueryEngine engine = new ParcoursQueryEngine();
+        ParcoursSearchIndex searchIndex = new ParcoursSearchIndex();
+        Assert.assertTrue(engine.execute(new ParcoursQuery(), searchIndex).isEmpty());
+
+        engine.update(newestFirst(5, 4, 3, 2, 1));
+        Assert.assertEquals(5, engine.execute(new ParcoursQuery(), searchIndex).size());
+        Assert.assertTrue(new ParcoursQuery().withDate(Long.MIN_VALUE, Long.MAX_VALUE).hasNoRange());
+    }
+
+    @Test
+    public void combinedTest() {
+        List<Parcours> parcours = new ArrayList<>();
+        ParcoursSearchIndex searchIndex = new ParcoursSearchIndex();
+        for (int i = 0; i < 1000; i++) {
+            // Parcours i : i km en i * 5 min, i m de dénivelé, vitesse 12 km/h
+            Parcours p = new Parcours(String.valueOf(i), i % 10 == 0 ? "Tour du lac" : "Footing",
+                    "", new Date(i * 60000L));
+            p.setDistance(i * 1000);
+            p.setTime(i * 300000L);
+            p.setElevation(i);
+            p.setSpeed(i % 2 == 0 ? 12 : 8);
+            parcours.add(p);
+            searchIndex.add(p);
+        }
+        Collections.reverse(parcours);
+        ParcoursQueryEngine engine = new ParcoursQueryEngine();
+        engine.update(parcours);
+
+        ParcoursQuery query = new ParcoursQuery()
+                .withRange(ParcoursQuery.Field.DISTANCE, 100000, 500000)
+                .withRange(ParcoursQuery.Field.ELEVATION, Double.NEGATIVE_INFINITY, 300)
+                .withRange(ParcoursQuery.Field.SPEED, 10, Double.POSITIVE_INFINITY);
+        List<Parcours> result = engine.execute(query, searchIndex);
+        Assert.assertEquals(101, result.size());
+        Assert.assertEquals("300", result.get(0).getId());
+        Assert.assertEquals("100", result.get(100).getId());
+
+        // Le nom et la durée restreignent les mêmes résultats
+        result = engine.execute(query.withName("lac")
+                .withRange(ParcoursQuery.Field.DURATION, 0, 150 * 300000L), searchIndex);
+        Assert.assertEquals(6, result.size());
+        for (Parcours p : result) {
+            Assert.assertEquals("Tour du lac", p.getName());
+        }
+        Assert.assertEquals("150", result.get(0).getId());
+
+        // Un intervalle remplace celui du même champ
+        query = query.withRange(ParcoursQuery.Field.ELEVATION, 900, Double.POSITIVE_INFINITY);
+        Assert.assertTrue(engine.execute(query, searchIndex).isEmpty());
+        Assert.assertTrue(engine.execute(new ParcoursQuery().withName("velo"), searchIndex).isEmpty());
+    }
+
+    @Test
+    public void updateTest() {
+        ParcoursQueryEngine engine = new ParcoursQueryEngine();
+        ParcoursSearchIndex searchIndex = new ParcoursSearchIndex();
+        engine.update(newestFirst(3, 2, 1));
+        List<Parcours> before = engine.execute(new ParcoursQuery().withDate(1, 3), searchIndex);
+
+        // Un résultat déjà renvoyé n'est pas modifié par la reconstruction
+        engine.update(newestFirst(2));
+        Assert.assertEquals(3, before.size());
+        Assert.assertEquals(1, engine.execute(new ParcoursQuery().withDate(1, 3), searchIndex).size());
+        Assert.assertEquals(1, engine.size());
+
+        // Seule la dernière liste transmise avant une requête est indexée
+        engine.update(newestFirst(5, 4));
+        engine.update(newestFirst(9, 8, 7));
+        Assert.assertEquals(3, engine.size());
+        Assert.assertEquals(9, engine.execute(new ParcoursQuery(), searchIndex).get(0).getDate().getTime());
+    }
+
+    /**
+     * Construit des parcours aux dates données, du plus récent au plus ancien.
+     */
+    private static List<Parcours> newestFirst(long... dates) {
+        List<Parcours> parcours = new ArrayList<>();
+        for (int i = 0; i < dates.length; i++) {
+            parcours.add(new Parcours(String.valueOf(i), "Parcours " + i, "", new Date(dates[i])));
+        }
+        Collections.sort(parcours, (p1, p2) -> p2.getDate().compareTo(p1.getDate()));
+        return parcours;
+    }
+}
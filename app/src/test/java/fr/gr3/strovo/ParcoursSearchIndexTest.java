@@ -0,0 +1,94 @@
+package fr.gr3.strovo;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.Set;
+
+import fr.gr3.strovo.api.model.Parcours;
+import fr.gr3.strovo.utils.parcours.ParcoursSearchIndex;
+
+/** Tests de la classe {@link ParcoursSearchIndex} */
+public class ParcoursSearchIndexTest {
+
+    @Test
+    public void accentAndCaseTest() {
+        ParcoursSearchIndex index = new ParcoursSearchIndex();
+        index.add(parcours("1", "Randonnée à Élancourt", 1));
+
+        Assert.assertEquals(ids("1"), index.searchIds("rando"));
+        Assert.assertEquals(ids("1"), index.searchIds("ELAN"));
+        Assert.assertEquals(ids("1"), index.searchIds("randonnée"));
+        Assert.assertEquals(ids("1"), index.searchIds("a"));
+        Assert.assertTrue(index.searchIds("donnee").isEmpty());
+    }
+
+    @Test
+    public void allWordsTest() {
+        ParcoursSearchIndex index = new ParcoursSearchIndex();
+        index.add(parcours("1", "Tour du lac", 1));
+        index.add(parcours("2", "Tour de la ville", 2));
+        index.add(parcours("3", "Lac de montagne", 3));
+
+        Assert.assertEquals(ids("1"), index.searchIds("tour lac"));
+        Assert.assertEquals(ids("2", "1"), index.searchIds("tour"));
+        Assert.assertEquals(ids("3", "2"), index.searchIds("de"));
+        Assert.assertTrue(index.searchIds("tour montagne").isEmpty());
+    }
+
+    @Test
+    public void emptyQueryTest() {
+        ParcoursSearchIndex index = new ParcoursSearchIndex();
+        index.add(parcours("1", "Footing", 1));
+
+        // Aucun mot : pas de critère sur le nom
+        Assert.assertNull(index.searchIds(""));
+        Assert.assertNull(index.searchIds(" - "));
+        Assert.assertNull(index.searchIds(null));
+    }
+
+    @Test
+    public void updateAndRemoveTest() {
+        ParcoursSearchIndex index = new ParcoursSearchIndex();
+        index.add(parcours("1", "Footing du matin", 1));
+        index.add(parcours("2", "Footing du soir", 2));
+
+        index.add(parcours("1", "Sortie vélo", 1));
+        Assert.assertEquals(ids("2"), index.searchIds("footing"));
+        Assert.assertEquals(ids("1"), index.searchIds("velo"));
+        Assert.assertTrue(index.searchIds("matin").isEmpty());
+
+        index.remove("2");
+        Assert.assertTrue(index.searchIds("footing").isEmpty());
+        Assert.assertEquals(1, index.size());
+    }
+
+    @Test
+    public void largeIndexTest() {
+        ParcoursSearchIndex index = new ParcoursSearchIndex();
+        for (int i = 0; i < 10000; i++) {
+            index.add(parcours(String.valueOf(i), "Parcours " + i + (i % 100 == 0 ? " lac" : ""), i));
+        }
+
+        Set<String> result = index.searchIds("parc la");
+        Assert.assertEquals(100, result.size());
+        Assert.assertTrue(result.contains("9900"));
+    }
+
+    /**
+     * Crée un parcours.
+     */
+    private static Parcours parcours(String id, String name, long date) {
+        return new Parcours(id, name, "", new Date(date));
+    }
+
+    /**
+     * @return l'ensemble des identifiants
+     */
+    private static Set<String> ids(String... ids) {
+        return new HashSet<>(Arrays.asList(ids));
+    }
+}
@@ -0,0 +1,68 @@
+package fr.gr3.strovo;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import fr.gr3.strovo.utils.parcours.GeoUtils;
+import fr.gr3.strovo.utils.parcours.ParcoursStatistics;
+
+/** Tests de la classe {@link ParcoursStatistics} */
+public class ParcoursStatisticsTest {
+
+    /** Différence de latitude correspondant à environ 10 mètres */
+    private static final double TEN_METERS = 10 / (Math.PI * GeoUtils.EARTH_RADIUS / 180);
+
+    @Test
+    public void distanceTest() {
+        ParcoursStatistics statistics = new ParcoursStatistics();
+        for (int i = 0; i <= 100; i++) {
+            statistics.add(44.35 + i * TEN_METERS, 2.57, 600, i * 5000L);
+        }
+
+        Assert.assertEquals(1000, statistics.getDistance(), 0.1);
+        Assert.assertEquals(500000L, statistics.getElapsedTime());
+        Assert.assertEquals(500000L, statistics.getMovingTime());
+        Assert.assertEquals(2, statistics.getMaxSpeed(), 0.01);
+        Assert.assertEquals(2, statistics.getCurrentSpeed(), 0.01);
+        Assert.assertEquals(500, statistics.getCurrentPace(), 1);
+    }
+
+    @Test
+    public void movingTimeTest() {
+        ParcoursStatistics statistics = new ParcoursStatistics();
+        statistics.add(44.35, 2.57, 600, 0);
+        statistics.add(44.35 + TEN_METERS, 2.57, 600, 5000L);
+        // L'utilisateur reste immobile pendant une minute
+        statistics.add(44.35 + TEN_METERS, 2.57, 600, 65000L);
+
+        Assert.assertEquals(65000L, statistics.getElapsedTime());
+        Assert.assertEquals(5000L, statistics.getMovingTime());
+    }
+
+    @Test
+    public void elevationTest() {
+        ParcoursStatistics statistics = new ParcoursStatistics();
+        double[] altitudes = {600, 601, 599, 610, 620, 615, 600, 605};
+        for (int i = 0; i < altitudes.length; i++) {
+            statistics.add(44.35 + i * TEN_METERS, 2.57, altitudes[i], i * 5000L);
+        }
+
+        // Les variations inférieures au seuil sont ignorées
+        Assert.assertEquals(25, statistics.getElevationGain(), 0.001);
+        Assert.assertEquals(20, statistics.getElevationLoss(), 0.001);
+    }
+
+    @Test
+    public void resetTest() {
+        ParcoursStatistics statistics = new ParcoursStatistics();
+        statistics.add(44.35, 2.57, 600, 0);
+        statistics.add(44.35 + TEN_METERS, 2.57, 650, 5000L);
+
+        statistics.reset();
+
+        Assert.assertEquals(0, statistics.getCount());
+        Assert.assertEquals(0, statistics.getDistance(), 0);
+        Assert.assertEquals(0, statistics.getElevationGain(), 0);
+        Assert.assertEquals(0L, statistics.getElapsedTime());
+    }
+}
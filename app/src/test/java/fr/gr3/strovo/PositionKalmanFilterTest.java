@@ -0,0 +1,126 @@
+package fr.gr3.strovo;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import fr.gr3.strovo.utils.parcours.GeoUtils;
+import fr.gr3.strovo.utils.parcours.PositionKalmanFilter;
+
+/** Tests de la classe {@link PositionKalmanFilter} */
+public class PositionKalmanFilterTest {
+
+    /** Marche enregistrée avec positions réelles et positions bruitées */
+    private static final String FIXTURE = "/fixtures/marche_bruitee.csv";
+
+    /** Lignes de la marche : date, latitude et longitude réelles, latitude et longitude mesurées, précision */
+    private List<double[]> fixes;
+
+    @Before
+    public void loadFixture() throws IOException {
+        fixes = new ArrayList<>();
+        InputStream input = getClass().getResourceAsStream(FIXTURE);
+        Assert.assertNotNull(input);
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(input, "UTF-8"))) {
+            String line = reader.readLine();
+            while ((line = reader.readLine()) != null) {
+                String[] values = line.split(",");
+                double[] fix = new double[values.length];
+                for (int i = 0; i < values.length; i++) {
+                    fix[i] = Double.parseDouble(values[i]);
+                }
+                fixes.add(fix);
+            }
+        }
+    }
+
+    @Test
+    public void firstFixTest() {
+        PositionKalmanFilter filter = new PositionKalmanFilter();
+        filter.update(44.35, 2.57, 1000, 5);
+
+        Assert.assertEquals(44.35, filter.getLatitude(), 1e-12);
+        Assert.assertEquals(2.57, filter.getLongitude(), 1e-12);
+        Assert.assertEquals(5, filter.getAccuracy(), 1e-9);
+    }
+
+    @Test
+    public void positionErrorTest() {
+        PositionKalmanFilter filter = new PositionKalmanFilter();
+        double rawError = 0;
+        double filteredError = 0;
+        for (double[] fix : fixes) {
+            filter.update(fix[3], fix[4], (long) fix[0], (float) fix[5]);
+            rawError += square(GeoUtils.distance(fix[1], fix[2], fix[3], fix[4]));
+            filteredError += square(GeoUtils.distance(fix[1], fix[2],
+                    filter.getLatitude(), filter.getLongitude()));
+        }
+        rawError = Math.sqrt(rawError / fixes.size());
+        filteredError = Math.sqrt(filteredError / fixes.size());
+
+        Assert.assertTrue("Ecart filtré " + filteredError + " / brut " + rawError,
+                filteredError < rawError * 0.6);
+    }
+
+    @Test
+    public void distanceTest() {
+        PositionKalmanFilter filter = new PositionKalmanFilter();
+        double trueDistance = 0;
+        double rawDistance = 0;
+        double filteredDistance = 0;
+        double lastLatitude = 0;
+        double lastLongitude = 0;
+        for (int i = 0; i < fixes.size(); i++) {
+            double[] fix = fixes.get(i);
+            filter.update(fix[3], fix[4], (long) fix[0], (float) fix[5]);
+            if (i > 0) {
+                double[] previous = fixes.get(i - 1);
+                trueDistance += GeoUtils.distance(previous[1], previous[2], fix[1], fix[2]);
+                rawDistance += GeoUtils.distance(previous[3], previous[4], fix[3], fix[4]);
+                filteredDistance += GeoUtils.distance(lastLatitude, lastLongitude,
+                        filter.getLatitude(), filter.getLongitude());
+            }
+            lastLatitude = filter.getLatitude();
+            lastLongitude = filter.getLongitude();
+        }
+
+        // Le bruit gonfle fortement la distance brute, bien moins la distance filtrée
+        Assert.assertTrue(rawDistance > trueDistance * 1.5);
+        Assert.assertTrue("Distance filtrée " + filteredDistance + " / réelle " + trueDistance,
+                filteredDistance - trueDistance < (rawDistance - trueDistance) / 3);
+    }
+
+    @Test
+    public void speedTest() {
+        PositionKalmanFilter filter = new PositionKalmanFilter();
+        for (double[] fix : fixes) {
+            filter.update(fix[3], fix[4], (long) fix[0], (float) fix[5]);
+        }
+
+        // La marche est enregistrée à 1,4 m/s
+        Assert.assertEquals(1.4, filter.getSpeed(), 0.3);
+    }
+
+    @Test
+    public void gapResetTest() {
+        PositionKalmanFilter filter = new PositionKalmanFilter();
+        filter.update(44.35, 2.57, 0, 5);
+        filter.update(44.35, 2.57, 1000, 5);
+
+        // Après une longue interruption, la nouvelle position est reprise telle quelle
+        filter.update(44.36, 2.58, 120000, 5);
+        Assert.assertEquals(44.36, filter.getLatitude(), 1e-12);
+        Assert.assertEquals(2.58, filter.getLongitude(), 1e-12);
+    }
+
+    private static double square(double value) {
+        return value * value;
+    }
+}
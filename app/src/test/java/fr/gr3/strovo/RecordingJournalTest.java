@@ -0,0 +1,143 @@
+package fr.gr3.strovo;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.osmdroid.util.GeoPoint;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Date;
+
+import fr.gr3.strovo.api.model.InterestPoint;
+import fr.gr3.strovo.api.model.Parcours;
+import fr.gr3.strovo.utils.parcours.GeoUtils;
+import fr.gr3.strovo.utils.parcours.RecordingJournal;
+
+/** Tests de la classe {@link RecordingJournal} */
+public class RecordingJournalTest {
+
+    /** Différence de latitude correspondant à un mètre */
+    private static final double ONE_METER = 1 / (Math.PI * GeoUtils.EARTH_RADIUS / 180);
+
+    /** Date de début du parcours */
+    private static final long START = 1700000000000L;
+
+    /** Compte de l'utilisateur */
+    private static final String ACCOUNT = "a@strovo.fr";
+
+    /** Fichier du journal */
+    private File file;
+
+    @Before
+    public void createFile() throws IOException {
+        file = File.createTempFile("journal", ".bin");
+    }
+
+    @After
+    public void deleteFile() {
+        file.delete();
+    }
+
+    @Test
+    public void recoverTest() throws IOException {
+        RecordingJournal journal = RecordingJournal.create(file, ACCOUNT, "Footing", "Bord du lac", new Date(START));
+        appendFixes(journal, 0, 100);
+        journal.appendInterestPoint(new InterestPoint(new GeoPoint(44.351, 2.571), "Pont", "Vue"));
+        journal.close();
+
+        RecordingJournal.Recovery recovery = RecordingJournal.recover(file);
+        Assert.assertEquals(ACCOUNT, recovery.getAccount());
+        Parcours parcours = recovery.getParcours();
+        Assert.assertEquals("Footing", parcours.getName());
+        Assert.assertEquals("Bord du lac", parcours.getDescription());
+        Assert.assertEquals(START, parcours.getDate().getTime());
+        Assert.assertEquals(99000L, parcours.getTime());
+        Assert.assertEquals(495, parcours.getDistance(), 5);
+        Assert.assertFalse(parcours.getTrack().isEmpty());
+        Assert.assertEquals(1, parcours.getInterestPoints().size());
+        Assert.assertEquals("Pont", parcours.getInterestPoints().get(0).getName());
+    }
+
+    @Test
+    public void truncatedBlockTest() throws IOException {
+        RecordingJournal journal = RecordingJournal.create(file, ACCOUNT, "Footing", "", new Date(START), 32, 60000);
+        appendFixes(journal, 0, 64);
+        journal.close();
+
+        // Arrêt brutal au milieu de l'écriture du second bloc
+        try (RandomAccessFile raw = new RandomAccessFile(file, "rw")) {
+            raw.setLength(raw.length() - 100);
+        }
+
+        Parcours parcours = RecordingJournal.recover(file).getParcours();
+        Assert.assertEquals(31000L, parcours.getTime());
+    }
+
+    @Test
+    public void corruptedBlockTest() throws IOException {
+        RecordingJournal journal = RecordingJournal.create(file, ACCOUNT, "Footing", "", new Date(START), 32, 60000);
+        appendFixes(journal, 0, 64);
+        journal.close();
+
+        // Altère une position du second bloc
+        try (RandomAccessFile raw = new RandomAccessFile(file, "rw")) {
+            raw.seek(raw.length() - 50);
+            raw.write(0x7F);
+        }
+
+        Parcours parcours = RecordingJournal.recover(file).getParcours();
+        Assert.assertEquals(31000L, parcours.getTime());
+    }
+
+    @Test
+    public void syncIntervalTest() throws IOException {
+        RecordingJournal journal = RecordingJournal.create(file, ACCOUNT, "Footing", "", new Date(START), 100, 10000);
+        long headerLength = file.length();
+
+        appendFixes(journal, 0, 10);
+        Assert.assertEquals(headerLength, file.length());
+
+        // La onzième position dépasse l'intervalle de synchronisation
+        appendFixes(journal, 10, 11);
+        Assert.assertTrue(file.length() > headerLength);
+        journal.close();
+    }
+
+    @Test
+    public void recordingInProgressTest() throws IOException {
+        RecordingJournal journal = RecordingJournal.create(file, ACCOUNT, "Footing", "", new Date(START));
+        appendFixes(journal, 0, 10);
+
+        // Le journal en cours d'écriture n'est pas repris
+        Assert.assertNull(RecordingJournal.recover(file));
+        journal.close();
+        Assert.assertNotNull(RecordingJournal.recover(file));
+    }
+
+    @Test
+    public void unknownAccountTest() throws IOException {
+        RecordingJournal.create(file, null, "Footing", "", new Date(START)).close();
+
+        Assert.assertNull(RecordingJournal.recover(file).getAccount());
+    }
+
+    @Test(expected = IOException.class)
+    public void invalidFileTest() throws IOException {
+        try (RandomAccessFile raw = new RandomAccessFile(file, "rw")) {
+            raw.writeInt(42);
+        }
+        RecordingJournal.recover(file);
+    }
+
+    /**
+     * Ajoute des positions espacées de 5 mètres et d'une seconde vers le nord.
+     */
+    private void appendFixes(RecordingJournal journal, int from, int to) throws IOException {
+        for (int i = from; i < to; i++) {
+            journal.appendFix(44.35 + i * 5 * ONE_METER, 2.57, 600, START + i * 1000L, 3);
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package fr.gr3.strovo;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import fr.gr3.strovo.utils.parcours.TrackBuffer;
+
+/** Tests de la classe {@link TrackBuffer} */
+public class TrackBufferTest {
+
+    @Test
+    public void addTest() {
+        TrackBuffer track = new TrackBuffer();
+        Assert.assertTrue(track.isEmpty());
+
+        track.add(44.35, 2.57, 600.5, 1000L, 4.5f);
+        track.add(44.36, 2.58);
+
+        Assert.assertEquals(2, track.size());
+        Assert.assertEquals(44.35, track.getLatitude(0), 0);
+        Assert.assertEquals(2.57, track.getLongitude(0), 0);
+        Assert.assertEquals(600.5, track.getAltitude(0), 0);
+        Assert.assertEquals(1000L, track.getTime(0));
+        Assert.assertEquals(4.5f, track.getAccuracy(0), 0);
+        Assert.assertEquals(44.36, track.getLatitude(1), 0);
+        Assert.assertEquals(2.58, track.getLongitude(1), 0);
+    }
+
+    @Test
+    public void growTest() {
+        TrackBuffer track = new TrackBuffer(0);
+        for (int i = 0; i < 10000; i++) {
+            track.add(i, -i, i * 2, i * 1000L, i % 10);
+        }
+
+        Assert.assertEquals(10000, track.size());
+        Assert.assertTrue(track.capacity() >= 10000);
+        // Les positions sont conservées après les agrandissements successifs
+        for (int i = 0; i < 10000; i++) {
+            Assert.assertEquals(i, track.getLatitude(i), 0);
+            Assert.assertEquals(-i, track.getLongitude(i), 0);
+            Assert.assertEquals(i * 1000L, track.getTime(i));
+        }
+    }
+
+    @Test
+    public void clearTest() {
+        TrackBuffer track = new TrackBuffer(4);
+        track.add(1, 1);
+        track.add(2, 2);
+        int capacity = track.capacity();
+
+        track.clear();
+
+        Assert.assertTrue(track.isEmpty());
+        Assert.assertEquals(capacity, track.capacity());
+    }
+
+    @Test
+    public void trimToSizeTest() {
+        TrackBuffer track = new TrackBuffer();
+        track.add(1, 2, 3, 4L, 5f);
+        track.add(6, 7);
+
+        track.trimToSize();
+
+        Assert.assertEquals(2, track.capacity());
+        Assert.assertEquals(1, track.getLatitude(0), 0);
+        Assert.assertEquals(4L, track.getTime(0));
+        Assert.assertEquals(7, track.getLongitude(1), 0);
+        track.add(8, 9);
+        Assert.assertEquals(3, track.size());
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void indexOutOfBoundsTest() {
+        TrackBuffer track = new TrackBuffer(4);
+        track.add(1, 1);
+        track.getLatitude(1);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void negativeCapacityTest() {
+        new TrackBuffer(-1);
+    }
+}
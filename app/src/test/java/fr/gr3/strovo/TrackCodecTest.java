@@ -0,0 +1,93 @@
+package fr.gr3.strovo;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import fr.gr3.strovo.utils.parcours.GeoUtils;
+import fr.gr3.strovo.utils.parcours.TrackBuffer;
+import fr.gr3.strovo.utils.parcours.TrackCodec;
+
+/** Tests de la classe {@link TrackCodec} */
+public class TrackCodecTest {
+
+    /** Différence de latitude correspondant à un mètre */
+    private static final double ONE_METER = 1 / (Math.PI * GeoUtils.EARTH_RADIUS / 180);
+
+    @Test
+    public void roundTripTest() {
+        TrackBuffer track = walk(2000);
+
+        TrackBuffer decoded = TrackCodec.decodePolyline(
+                TrackCodec.encodePolyline(track, TrackCodec.POLYLINE_PRECISION), TrackCodec.POLYLINE_PRECISION);
+
+        Assert.assertEquals(track.size(), decoded.size());
+        for (int i = 0; i < track.size(); i++) {
+            Assert.assertEquals(track.getLatitude(i), decoded.getLatitude(i), 0.6e-6);
+            Assert.assertEquals(track.getLongitude(i), decoded.getLongitude(i), 0.6e-6);
+        }
+    }
+
+    @Test
+    public void sizeTest() {
+        TrackBuffer track = walk(2000);
+
+        // Environ 40 octets par position dans le tableau JSON de coordonnées
+        String encoded = TrackCodec.encodePolyline(track, TrackCodec.POLYLINE_PRECISION);
+        Assert.assertTrue("Taille " + encoded.length(), encoded.length() < track.size() * 40 / 5);
+    }
+
+    @Test
+    public void negativeCoordinatesTest() {
+        TrackBuffer track = new TrackBuffer();
+        track.add(-33.868820, 151.209296);
+        track.add(40.712776, -74.005974);
+        track.add(-89.999999, -179.999999);
+
+        TrackBuffer decoded = TrackCodec.decodePolyline(
+                TrackCodec.encodePolyline(track, TrackCodec.POLYLINE_PRECISION), TrackCodec.POLYLINE_PRECISION);
+        Assert.assertEquals(-33.868820, decoded.getLatitude(0), 1e-9);
+        Assert.assertEquals(151.209296, decoded.getLongitude(0), 1e-9);
+        Assert.assertEquals(-74.005974, decoded.getLongitude(1), 1e-9);
+        Assert.assertEquals(-89.999999, decoded.getLatitude(2), 1e-9);
+        Assert.assertEquals(-179.999999, decoded.getLongitude(2), 1e-9);
+    }
+
+    @Test
+    public void emptyTrackTest() {
+        Assert.assertEquals("", TrackCodec.encodePolyline(new TrackBuffer(0), 5));
+        Assert.assertEquals(0, TrackCodec.decodePolyline("", 5).size());
+    }
+
+    @Test
+    public void googlePolylineTest() {
+        // Exemple de la documentation de l'algorithme
+        TrackBuffer track = new TrackBuffer();
+        track.add(38.5, -120.2);
+        track.add(40.7, -120.95);
+        track.add(43.252, -126.453);
+
+        Assert.assertEquals("_p~iF~ps|U_ulLnnqC_mqNvxq`@", TrackCodec.encodePolyline(track, 5));
+
+        TrackBuffer decoded = TrackCodec.decodePolyline("_p~iF~ps|U_ulLnnqC_mqNvxq`@", 5);
+        Assert.assertEquals(3, decoded.size());
+        Assert.assertEquals(43.252, decoded.getLatitude(2), 1e-9);
+        Assert.assertEquals(-126.453, decoded.getLongitude(2), 1e-9);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void truncatedPolylineTest() {
+        TrackCodec.decodePolyline("_p~iF~ps|U_ulL", 5);
+    }
+
+    /**
+     * Construit une marche d'environ 1,5 m entre deux positions.
+     */
+    private TrackBuffer walk(int size) {
+        TrackBuffer track = new TrackBuffer(size);
+        for (int i = 0; i < size; i++) {
+            track.add(44.35 + i * 1.2 * ONE_METER + Math.sin(i / 20.0) * ONE_METER,
+                    2.57 + i * 0.9 * ONE_METER);
+        }
+        return track;
+    }
+}
@@ -0,0 +1,117 @@
+package fr.gr3.strovo;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+import fr.gr3.strovo.utils.parcours.ParcoursStatistics;
+import fr.gr3.strovo.utils.parcours.TrackBuffer;
+import fr.gr3.strovo.utils.parcours.TrackFile;
+
+/** Tests de la classe {@link TrackFile} */
+public class TrackFileTest {
+
+    /** Fichier de tracé temporaire */
+    private File file;
+
+    @Before
+    public void createFile() throws IOException {
+        file = File.createTempFile("track", ".trk");
+    }
+
+    @After
+    public void deleteFile() {
+        file.delete();
+    }
+
+    @Test
+    public void roundTripTest() throws IOException {
+        TrackBuffer track = new TrackBuffer();
+        for (int i = 0; i < 50000; i++) {
+            track.add(44.35 + i * 1e-5, 2.57 - i * 1e-5, 600 + i % 7, i * 1000L, 4.5f);
+        }
+
+        TrackFile.write(file, track);
+        TrackFile read = TrackFile.open(file);
+
+        Assert.assertEquals(TrackFile.HEADER_SIZE + 50000L * TrackFile.RECORD_SIZE, file.length());
+        Assert.assertEquals(50000, read.size());
+        for (int i = 0; i < track.size(); i += 997) {
+            Assert.assertEquals(track.getLatitude(i), read.getLatitude(i), 0);
+            Assert.assertEquals(track.getLongitude(i), read.getLongitude(i), 0);
+            Assert.assertEquals(track.getAltitude(i), read.getAltitude(i), 0);
+            Assert.assertEquals(track.getTime(i), read.getTime(i));
+            Assert.assertEquals(track.getAccuracy(i), read.getAccuracy(i), 0);
+        }
+        Assert.assertEquals(track.getTime(49999), read.getTime(49999));
+    }
+
+    @Test
+    public void boundingBoxTest() throws IOException {
+        TrackBuffer track = new TrackBuffer();
+        track.add(44.35, 2.57);
+        track.add(44.40, 2.50);
+        track.add(44.30, 2.60);
+
+        TrackFile.write(file, track);
+        TrackFile read = TrackFile.open(file);
+
+        Assert.assertEquals(44.30, read.getMinLatitude(), 0);
+        Assert.assertEquals(44.40, read.getMaxLatitude(), 0);
+        Assert.assertEquals(2.50, read.getMinLongitude(), 0);
+        Assert.assertEquals(2.60, read.getMaxLongitude(), 0);
+    }
+
+    @Test
+    public void statisticsTest() throws IOException {
+        TrackBuffer track = new TrackBuffer();
+        for (int i = 0; i <= 100; i++) {
+            track.add(44.35 + i * 1e-4, 2.57, 600 + i, i * 5000L, 3);
+        }
+
+        TrackFile.write(file, track);
+        ParcoursStatistics expected = ParcoursStatistics.of(track);
+        ParcoursStatistics statistics = ParcoursStatistics.of(TrackFile.open(file));
+
+        Assert.assertEquals(expected.getDistance(), statistics.getDistance(), 0);
+        Assert.assertEquals(expected.getElevationGain(), statistics.getElevationGain(), 0);
+        Assert.assertEquals(expected.getMovingTime(), statistics.getMovingTime());
+    }
+
+    @Test
+    public void emptyTrackTest() throws IOException {
+        TrackFile.write(file, new TrackBuffer(0));
+
+        TrackFile read = TrackFile.open(file);
+
+        Assert.assertTrue(read.isEmpty());
+        Assert.assertEquals(TrackFile.HEADER_SIZE, file.length());
+    }
+
+    @Test(expected = IOException.class)
+    public void truncatedFileTest() throws IOException {
+        TrackBuffer track = new TrackBuffer();
+        track.add(44.35, 2.57);
+        track.add(44.36, 2.58);
+        TrackFile.write(file, track);
+        try (RandomAccessFile output = new RandomAccessFile(file, "rw")) {
+            output.setLength(file.length() - 1);
+        }
+
+        TrackFile.open(file);
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void indexOutOfBoundsTest() throws IOException {
+        TrackBuffer track = new TrackBuffer();
+        track.add(44.35, 2.57);
+        TrackFile.write(file, track);
+
+        TrackFile.open(file).getLatitude(1);
+    }
+}
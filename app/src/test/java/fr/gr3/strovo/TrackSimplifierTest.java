@@ -0,0 +1,105 @@
+package fr.gr3.strovo;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import fr.gr3.strovo.utils.parcours.GeoUtils;
+import fr.gr3.strovo.utils.parcours.TrackBuffer;
+import fr.gr3.strovo.utils.parcours.TrackSimplifier;
+
+/** Tests de la classe {@link TrackSimplifier} */
+public class TrackSimplifierTest {
+
+    /** Différence de latitude correspondant à un mètre */
+    private static final double ONE_METER = 1 / (Math.PI * GeoUtils.EARTH_RADIUS / 180);
+
+    @Test
+    public void straightLineTest() {
+        TrackBuffer output = new TrackBuffer();
+        TrackSimplifier simplifier = new TrackSimplifier(output, 3, 1000);
+        for (int i = 0; i < 500; i++) {
+            simplifier.add(44.35 + i * 5 * ONE_METER, 2.57, 600, i * 1000L, 5);
+        }
+        simplifier.flush();
+
+        // Seules les extrémités sont conservées
+        Assert.assertEquals(2, output.size());
+        Assert.assertEquals(44.35, output.getLatitude(0), 0);
+        Assert.assertEquals(499000L, output.getTime(1));
+        Assert.assertEquals(250, simplifier.getCompressionRatio(), 0.001);
+    }
+
+    @Test
+    public void cornerTest() {
+        TrackBuffer output = new TrackBuffer();
+        TrackSimplifier simplifier = new TrackSimplifier(output);
+        // Vers le nord puis vers l'est
+        for (int i = 0; i <= 50; i++) {
+            simplifier.add(44.35 + i * 5 * ONE_METER, 2.57, 0, i, 0);
+        }
+        double cornerLatitude = 44.35 + 250 * ONE_METER;
+        for (int i = 1; i <= 50; i++) {
+            simplifier.add(cornerLatitude, 2.57 + i * 7 * ONE_METER, 0, 50 + i, 0);
+        }
+        simplifier.flush();
+
+        Assert.assertEquals(3, output.size());
+        Assert.assertEquals(cornerLatitude, output.getLatitude(1), 1e-9);
+        Assert.assertEquals(50L, output.getTime(1));
+    }
+
+    @Test
+    public void toleranceTest() {
+        TrackBuffer raw = new TrackBuffer();
+        TrackBuffer output = new TrackBuffer();
+        TrackSimplifier simplifier = new TrackSimplifier(output, 3, 64);
+        // Sinusoïde de 20 m d'amplitude
+        for (int i = 0; i < 400; i++) {
+            double latitude = 44.35 + i * 4 * ONE_METER;
+            double longitude = 2.57 + 20 * ONE_METER * Math.sin(i / 15.0);
+            raw.add(latitude, longitude);
+            simplifier.add(latitude, longitude, 0, i, 0);
+        }
+        simplifier.flush();
+
+        Assert.assertTrue(output.size() < raw.size() / 2);
+        // Chaque position d'origine reste proche du tracé simplifié
+        for (int i = 0; i < raw.size(); i++) {
+            double best = Double.MAX_VALUE;
+            for (int j = 0; j < output.size() - 1; j++) {
+                best = Math.min(best, distanceToSegment(raw, i, output, j));
+            }
+            Assert.assertTrue("Ecart " + best, best <= 3.5);
+        }
+    }
+
+    @Test
+    public void windowBoundTest() {
+        TrackBuffer output = new TrackBuffer();
+        TrackSimplifier simplifier = new TrackSimplifier(output, 3, 10);
+        for (int i = 0; i < 100; i++) {
+            simplifier.add(44.35 + i * 5 * ONE_METER, 2.57, 0, i, 0);
+        }
+        simplifier.flush();
+
+        // La fenêtre bornée force la conservation d'une position toutes les 10
+        Assert.assertEquals(11, output.size());
+    }
+
+    /**
+     * Calcule la distance approximative en mètres entre une position et un segment.
+     */
+    private double distanceToSegment(TrackBuffer raw, int i, TrackBuffer output, int j) {
+        double scale = Math.cos(Math.toRadians(44.35));
+        double x = raw.getLongitude(i) * scale / ONE_METER;
+        double y = raw.getLatitude(i) / ONE_METER;
+        double x1 = output.getLongitude(j) * scale / ONE_METER;
+        double y1 = output.getLatitude(j) / ONE_METER;
+        double x2 = output.getLongitude(j + 1) * scale / ONE_METER;
+        double y2 = output.getLatitude(j + 1) / ONE_METER;
+        double dx = x2 - x1;
+        double dy = y2 - y1;
+        double t = Math.max(0, Math.min(1, ((x - x1) * dx + (y - y1) * dy) / (dx * dx + dy * dy)));
+        return Math.hypot(x - x1 - t * dx, y - y1 - t * dy);
+    }
+}